@@ -6,6 +6,11 @@ import UploadModal from './components/UploadModal.jsx';
 import VoiceRecorder from './components/VoiceRecorder.jsx';
 import Whiteboard from './components/Whiteboard.jsx';
 
+// Files above the single-request limit use the resumable chunked upload API
+const SINGLE_UPLOAD_MAX_BYTES = 5 * 1024 * 1024;
+const CHUNK_PARALLELISM = 3;
+const MAX_CHUNK_ATTEMPTS = 5;
+
 export default function App() {
   const [messages, setMessages] = useState([]);
   const [username, setUsername] = useState('');
@@ -21,6 +26,8 @@ export default function App() {
   const [selectedFile, setSelectedFile] = useState(null);
   const [uploadMessage, setUploadMessage] = useState('');
   const [isUploading, setIsUploading] = useState(false);
+  const [hasOlder, setHasOlder] = useState(false);
+  const [isLoadingOlder, setIsLoadingOlder] = useState(false);
 
   const ws = useRef(null);
   const messagesEndRef = useRef(null);
@@ -28,6 +35,9 @@ export default function App() {
   const shouldReconnect = useRef(false);
   const typingTimeoutRef = useRef(null);
   const fileInputRef = useRef(null);
+  const lastSequenceRef = useRef(0);
+  const oldestSequenceRef = useRef(0); // cursor for GET /history (scroll-back)
+  const userListVersionRef = useRef(0);
   const maxReconnectAttempts = 6;
 
   const getWebSocketUrl = () => {
@@ -52,6 +62,7 @@ export default function App() {
 
     try {
       ws.current = new WebSocket(wsUrl);
+      ws.current.binaryType = 'arraybuffer';
     } catch (err) {
       setError(`Failed to connect: ${err.message}`);
       return;
@@ -68,7 +79,7 @@ export default function App() {
         ws.current.send(
           JSON.stringify({
             type: 'JOIN',
-            payload: { username: name },
+            payload: { username: name, since: lastSequenceRef.current },
           })
         );
       } catch (err) {
@@ -78,6 +89,9 @@ export default function App() {
     };
 
     ws.current.onmessage = (event) => {
+      // Binary frames are whiteboard stroke batches (handled by the Whiteboard)
+      if (typeof event.data !== 'string') return;
+
       let msg = null;
       try {
         msg = JSON.parse(event.data);
@@ -86,11 +100,53 @@ export default function App() {
         return;
       }
 
+      if (msg.sequence) {
+        lastSequenceRef.current = Math.max(lastSequenceRef.current, msg.sequence);
+        if (oldestSequenceRef.current === 0) {
+          oldestSequenceRef.current = msg.sequence;
+          setHasOlder(msg.sequence > 1);
+        }
+      }
+
       switch (msg.type) {
+        case 'HISTORY_BATCH': {
+          const history = Array.isArray(msg.payload?.messages) ? msg.payload.messages : [];
+          if (history.length > 0) {
+            lastSequenceRef.current = Math.max(lastSequenceRef.current, msg.payload.lastSequence || 0);
+            const first = msg.payload.firstSequence || 0;
+            if (first > 0 && (oldestSequenceRef.current === 0 || first < oldestSequenceRef.current)) {
+              oldestSequenceRef.current = first;
+              setHasOlder(first > 1);
+            }
+            setMessages((prev) => [...prev, ...history]);
+          }
+          break;
+        }
+
         case 'USER_LIST_UPDATE':
+          userListVersionRef.current = msg.payload?.version || 0;
           setUsers(Array.isArray(msg.payload?.users) ? msg.payload.users : []);
           break;
 
+        case 'USER_JOINED':
+        case 'USER_LEFT': {
+          const version = msg.payload?.version || 0;
+          if (version <= userListVersionRef.current) break; // already in the snapshot
+          if (version !== userListVersionRef.current + 1) {
+            // Missed a delta: ask for a fresh snapshot instead
+            ws.current.send(JSON.stringify({ type: 'USER_LIST_REQUEST', payload: {} }));
+            break;
+          }
+          userListVersionRef.current = version;
+          const changed = Array.isArray(msg.payload?.users) ? msg.payload.users : [];
+          setUsers((prev) =>
+            msg.type === 'USER_JOINED'
+              ? [...prev, ...changed.filter((u) => !prev.includes(u))]
+              : prev.filter((u) => !changed.includes(u))
+          );
+          break;
+        }
+
         case 'TYPING':
           handleTypingIndicator(msg.payload?.username, true);
           break;
@@ -99,6 +155,12 @@ export default function App() {
           handleTypingIndicator(msg.payload?.username, false);
           break;
 
+        case 'TYPING_USERS': {
+          const typers = Array.isArray(msg.payload?.users) ? msg.payload.users : [];
+          setTypingUsers(typers.filter((u) => u !== username));
+          break;
+        }
+
         case 'ERROR':
           setError(msg.payload?.text || 'An error occurred');
           break;
@@ -136,6 +198,27 @@ export default function App() {
           ]);
           break;
 
+        case 'FILE_UPDATE': {
+          // Processing results for an upload announced earlier (same url)
+          const { url, mimeType, thumbnail, duration } = msg.payload || {};
+          setMessages((prev) =>
+            prev.map((m) =>
+              (m.type === 'FILE_UPLOAD' || m.type === 'VOICE_MESSAGE') && m.payload?.url === url
+                ? {
+                    ...m,
+                    payload: {
+                      ...m.payload,
+                      mimeType,
+                      thumbnail,
+                      duration: duration || m.payload.duration,
+                    },
+                  }
+                : m
+            )
+          );
+          break;
+        }
+
         default:
           setMessages((prev) => [...prev, msg]);
           break;
@@ -261,6 +344,9 @@ export default function App() {
     }
     setIsConnected(false);
     setMessages([]);
+    lastSequenceRef.current = 0;
+    oldestSequenceRef.current = 0;
+    setHasOlder(false);
     setUsers([]);
     setTypingUsers([]);
   };
@@ -295,6 +381,88 @@ export default function App() {
     }
   };
 
+  // Scroll-back: fetch the page before the oldest loaded message (ETag makes re-fetches cheap)
+  const loadOlderMessages = async () => {
+    if (isLoadingOlder || oldestSequenceRef.current <= 1) return;
+
+    setIsLoadingOlder(true);
+    try {
+      const protocol = useSSL ? 'https' : 'http';
+      const port = useSSL ? '7443' : '7070';
+      const response = await fetch(
+        `${protocol}://localhost:${port}/history?room=general&before=${oldestSequenceRef.current}&limit=50`
+      );
+      if (!response.ok) throw new Error(`HTTP ${response.status}`);
+
+      const page = await response.json();
+      const older = Array.isArray(page.messages) ? page.messages : [];
+      if (older.length > 0) {
+        setMessages((prev) => [...older, ...prev]);
+      }
+      if (page.nextBefore) {
+        oldestSequenceRef.current = page.nextBefore;
+      }
+      setHasOlder(Boolean(page.nextBefore));
+    } catch (err) {
+      console.error('Failed to load older messages:', err);
+      setError('Could not load earlier messages');
+    } finally {
+      setIsLoadingOlder(false);
+    }
+  };
+
+  // Resumable upload for large files: chunks are sent in parallel and retried individually,
+  // so a dropped connection only costs the chunks in flight
+  const uploadInChunks = async (baseUrl, file) => {
+    const init = await fetch(`${baseUrl}/uploads`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ filename: file.name, size: file.size, username }),
+    });
+    if (!init.ok) return init;
+    const { uploadId, chunkSize, chunks } = await init.json();
+
+    const pending = Array.from({ length: chunks }, (_, i) => i);
+    let sent = 0;
+    const sendChunk = async (index) => {
+      for (let attempt = 1; ; attempt++) {
+        try {
+          const response = await fetch(`${baseUrl}/uploads/${uploadId}/chunks/${index}`, {
+            method: 'PUT',
+            body: file.slice(index * chunkSize, Math.min(file.size, (index + 1) * chunkSize)),
+          });
+          if (response.ok) return;
+          if (response.status < 500) throw new Error(await response.text());
+        } catch (err) {
+          if (attempt >= MAX_CHUNK_ATTEMPTS) throw err;
+        }
+        await new Promise((resolve) => setTimeout(resolve, 1000 * attempt));
+      }
+    };
+    const worker = async () => {
+      while (pending.length > 0) {
+        await sendChunk(pending.shift());
+        sent++;
+        setUploadMessage(`Uploading... ${Math.round((sent * 100) / chunks)}%`);
+      }
+    };
+    await Promise.all(Array.from({ length: CHUNK_PARALLELISM }, worker));
+
+    const complete = await fetch(`${baseUrl}/uploads/${uploadId}/complete`, { method: 'POST' });
+    if (complete.status !== 202) return complete;
+
+    // 202: the server is storing the file; wait for the outcome
+    setUploadMessage('Finishing upload...');
+    for (;;) {
+      await new Promise((resolve) => setTimeout(resolve, 1000));
+      const status = await fetch(`${baseUrl}/uploads/${uploadId}`);
+      if (!status.ok) return status;
+      const result = await status.json();
+      if (result.state === 'stored') return new Response(JSON.stringify(result), { status: 200 });
+      if (result.state === 'failed') return new Response(result.error || result.message, { status: 500 });
+    }
+  };
+
   const handleFileUpload = async () => {
     if (!selectedFile) {
       setUploadMessage('Please select a file!');
@@ -309,10 +477,14 @@ export default function App() {
     try {
       const protocol = useSSL ? 'https' : 'http';
       const port = useSSL ? '7443' : '7070';
-      const response = await fetch(`${protocol}://localhost:${port}/upload`, {
-        method: 'POST',
-        body: formData,
-      });
+      const baseUrl = `${protocol}://localhost:${port}`;
+      const response =
+        selectedFile.size > SINGLE_UPLOAD_MAX_BYTES
+          ? await uploadInChunks(baseUrl, selectedFile)
+          : await fetch(`${baseUrl}/upload`, {
+              method: 'POST',
+              body: formData,
+            });
 
       if (response.ok) {
         const data = await response.json();
@@ -345,9 +517,11 @@ export default function App() {
     };
   }, []);
 
+  // Scroll to the newest message only (not when older pages are prepended)
+  const newestMessage = messages[messages.length - 1];
   useEffect(() => {
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
-  }, [messages]);
+  }, [newestMessage]);
 
   if (!isConnected) {
     return (
@@ -409,6 +583,9 @@ export default function App() {
             typingUsers={typingUsers}
             currentUsername={username}
             messagesEndRef={messagesEndRef}
+            hasOlder={hasOlder}
+            isLoadingOlder={isLoadingOlder}
+            onLoadOlder={loadOlderMessages}
           />
 
           <MessageInput
@@ -23,6 +23,7 @@ function MessageBubble({ message, currentUsername }) {
   const filesize = message.payload?.filesize || '—';
   const fileUrl = message.payload?.url || '#';
   const duration = message.payload?.duration || '0:00';
+  const thumbnail = message.payload?.thumbnail;
   const extension = filename.split('.').pop()?.toUpperCase() || 'FILE';
 
   // --- Base bubble styles ---
@@ -65,7 +66,15 @@ function MessageBubble({ message, currentUsername }) {
               isOwnMessage ? 'bg-green-900/30' : 'bg-gray-900/50'
             }`}
           >
-            <File className="text-white w-8 h-8" />
+            {thumbnail ? (
+              <img
+                src={thumbnail}
+                alt={filename}
+                className="w-16 h-16 object-cover rounded-lg"
+              />
+            ) : (
+              <File className="text-white w-8 h-8" />
+            )}
 
             {/* File info */}
             <div className="flex-1 mr-10">
@@ -175,12 +184,26 @@ export default function MessagesPanel({
   typingUsers,
   currentUsername,
   messagesEndRef,
+  hasOlder,
+  isLoadingOlder,
+  onLoadOlder,
 }) {
   return (
     <div className="flex-1 overflow-y-auto p-4 space-y-3 bg-gray-900">
+      {hasOlder && (
+        <div className="flex justify-center">
+          <button
+            onClick={onLoadOlder}
+            disabled={isLoadingOlder}
+            className="px-3 py-1 text-xs text-gray-300 bg-gray-800 border border-gray-600 rounded-lg hover:bg-gray-700 disabled:opacity-50"
+          >
+            {isLoadingOlder ? 'Loading...' : 'Load earlier messages'}
+          </button>
+        </div>
+      )}
       {messages.map((msg, i) => (
         <MessageBubble
-          key={i}
+          key={msg.sequence ? `seq-${msg.sequence}` : `local-${i}`}
           message={msg}
           currentUsername={currentUsername}
         />
@@ -82,10 +82,11 @@ export default function VoiceRecorder({ onSendVoice, onClose, username }) {
   const sendVoiceMessage = async () => {
     if (!audioBlob) return;
 
+    // Small fields first: the server streams the file part straight to disk
     const formData = new FormData();
-    formData.append('file', audioBlob, 'voice-message.webm');
     formData.append('username', username);
     formData.append('duration', formatTime(recordingTime));
+    formData.append('file', audioBlob, 'voice-message.webm');
 
     try {
       const response = await fetch('http://localhost:7070/upload-voice', {
@@ -1,6 +1,93 @@
 import { useEffect, useRef, useState } from 'react';
 import { Eraser, Trash2, Download, Palette, X } from 'lucide-react';
 
+// Binary stroke protocol (see StrokeBatcher on the server)
+const KIND_STROKE = 1;
+const KIND_STROKE_BATCH = 2;
+const KIND_CANVAS = 3; // whole canvas (snapshot + tail ops), sent on join / WHITEBOARD_SYNC
+const MAX_STROKE_POINTS = 8000;
+
+const encodeStroke = (points, color, lineWidth, tool) => {
+  const count = Math.min(points.length, MAX_STROKE_POINTS);
+  const view = new DataView(new ArrayBuffer(2 + 7 + 8 + (count - 1) * 4));
+  const rgb = parseInt(color.slice(1), 16);
+  let o = 0;
+  view.setUint8(o++, KIND_STROKE);
+  view.setUint8(o++, 0); // connection's default room
+  view.setUint8(o++, tool === 'eraser' ? 1 : 0);
+  view.setUint8(o++, Math.min(255, lineWidth));
+  view.setUint8(o++, (rgb >> 16) & 255);
+  view.setUint8(o++, (rgb >> 8) & 255);
+  view.setUint8(o++, rgb & 255);
+  view.setUint16(o, count);
+  view.setFloat32(o + 2, points[0].x);
+  view.setFloat32(o + 6, points[0].y);
+  o += 10;
+
+  // Deltas in 1/8 px, measured from the reconstructed point so rounding never drifts
+  let x = points[0].x;
+  let y = points[0].y;
+  for (let i = 1; i < count; i++) {
+    const dx = Math.max(-32768, Math.min(32767, Math.round((points[i].x - x) * 8)));
+    const dy = Math.max(-32768, Math.min(32767, Math.round((points[i].y - y) * 8)));
+    view.setInt16(o, dx);
+    view.setInt16(o + 2, dy);
+    o += 4;
+    x += dx / 8;
+    y += dy / 8;
+  }
+  return view.buffer;
+};
+
+const decodeStrokeBatch = (buffer) => {
+  const view = new DataView(buffer);
+  if (view.byteLength < 3) return [];
+
+  // Batches carry a u16 stroke count, canvas frames a u32
+  const kind = view.getUint8(0);
+  let count;
+  let o;
+  if (kind === KIND_STROKE_BATCH) {
+    count = view.getUint16(1);
+    o = 3;
+  } else if (kind === KIND_CANVAS && view.byteLength >= 5) {
+    count = view.getUint32(1);
+    o = 5;
+  } else {
+    return [];
+  }
+
+  const decoder = new TextDecoder();
+  const strokes = [];
+  for (let s = 0; s < count; s++) {
+    const nameLength = view.getUint8(o);
+    const username = decoder.decode(new Uint8Array(buffer, o + 1, nameLength));
+    o += 1 + nameLength;
+    const bodyLength = view.getUint32(o);
+    const body = o + 4;
+    o = body + bodyLength;
+
+    const tool = view.getUint8(body) === 1 ? 'eraser' : 'pen';
+    const lineWidth = view.getUint8(body + 1);
+    const color =
+      '#' +
+      [view.getUint8(body + 2), view.getUint8(body + 3), view.getUint8(body + 4)]
+        .map((c) => c.toString(16).padStart(2, '0'))
+        .join('');
+    const pointCount = view.getUint16(body + 5);
+    let x = view.getFloat32(body + 7);
+    let y = view.getFloat32(body + 11);
+    const points = [{ x, y }];
+    for (let i = 1, p = body + 15; i < pointCount; i++, p += 4) {
+      x += view.getInt16(p) / 8;
+      y += view.getInt16(p + 2) / 8;
+      points.push({ x, y });
+    }
+    strokes.push({ username, drawData: { points, color, lineWidth, tool } });
+  }
+  return strokes;
+};
+
 export default function Whiteboard({ show, onClose, ws, username }) {
   const canvasRef = useRef(null);
   const [isDrawing, setIsDrawing] = useState(false);
@@ -50,6 +137,16 @@ export default function Whiteboard({ show, onClose, ws, username }) {
 
     const handleWhiteboardMessage = (event) => {
       try {
+        if (event.data instanceof ArrayBuffer) {
+          // A canvas frame replaces the board, including our own earlier strokes
+          const isCanvas = new DataView(event.data).getUint8(0) === KIND_CANVAS;
+          if (isCanvas) clearCanvas();
+          for (const stroke of decodeStrokeBatch(event.data)) {
+            if (isCanvas || stroke.username !== username) drawSmoothPath(stroke.drawData);
+          }
+          return;
+        }
+
         const msg = JSON.parse(event.data);
 
         if (msg.type === 'WHITEBOARD_DRAW') {
@@ -67,10 +164,15 @@ export default function Whiteboard({ show, onClose, ws, username }) {
 
     ws.addEventListener('message', handleWhiteboardMessage);
 
+    // Load the room's current canvas
+    if (ws.readyState === WebSocket.OPEN) {
+      ws.send(JSON.stringify({ type: 'WHITEBOARD_SYNC', payload: {} }));
+    }
+
     return () => {
       ws.removeEventListener('message', handleWhiteboardMessage);
     };
-  }, [ws, show]);
+  }, [ws, show, username]);
 
   const drawSmoothPath = (drawData) => {
     const canvas = canvasRef.current;
@@ -172,22 +274,9 @@ export default function Whiteboard({ show, onClose, ws, username }) {
 
     setIsDrawing(false);
 
-    // Send the complete smooth path to other clients
+    // Send the complete smooth path to other clients (compact binary stroke)
     if (ws && ws.readyState === WebSocket.OPEN && pathRef.current.length > 1) {
-      ws.send(
-        JSON.stringify({
-          type: 'WHITEBOARD_DRAW',
-          payload: {
-            username,
-            drawData: {
-              points: pathRef.current,
-              color,
-              lineWidth,
-              tool,
-            },
-          },
-        })
-      );
+      ws.send(encodeStroke(pathRef.current, color, lineWidth, tool));
     }
 
     pathRef.current = [];
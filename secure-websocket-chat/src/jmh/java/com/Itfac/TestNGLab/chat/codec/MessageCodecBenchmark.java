@@ -0,0 +1,109 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import com.Itfac.TestNGLab.chat.models.Message;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageCodec vs the previous gson.fromJson / gson.toJson path, on a chat message
+ * and a whiteboard stroke, plus the header-only scan used for relayed types and the
+ * MessagePack wire format.
+ * Run with -prof gc to compare allocation rates.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+    private static final String CHAT_JSON =
+            "{\"type\":\"MESSAGE\",\"payload\":{\"username\":\"alice\",\"room\":\"general\","
+                    + "\"text\":\"Hello everyone, the build is green again \\u2705\"},"
+                    + "\"timestamp\":\"12:34:56\",\"sequence\":1234}";
+
+    private final Gson gson = new Gson();
+    private String drawJson;
+    private Message chat;
+    private byte[] chatMsgPack;
+
+    @Setup
+    public void setup() {
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            if (i > 0)
+                points.append(',');
+            points.append("{\"x\":").append(100 + i * 1.5).append(",\"y\":").append(200 - i * 0.75).append('}');
+        }
+        drawJson = "{\"type\":\"WHITEBOARD_DRAW\",\"payload\":{\"username\":\"alice\",\"drawData\":{\"points\":["
+                + points + "],\"color\":\"#3B82F6\",\"lineWidth\":3,\"tool\":\"pen\"}}}";
+        chat = MessageCodec.decode(CHAT_JSON);
+        ByteBuffer encoded = MsgPackCodec.encode(chat);
+        chatMsgPack = new byte[encoded.remaining()];
+        encoded.get(chatMsgPack);
+    }
+
+    @Benchmark
+    public Message decodeChatGson() {
+        return gson.fromJson(CHAT_JSON, Message.class);
+    }
+
+    @Benchmark
+    public Message decodeChatCodec() {
+        return MessageCodec.decode(CHAT_JSON);
+    }
+
+    @Benchmark
+    public Message decodeDrawGson() {
+        return gson.fromJson(drawJson, Message.class);
+    }
+
+    @Benchmark
+    public Message decodeDrawCodec() {
+        return MessageCodec.decode(drawJson);
+    }
+
+    // Relay path: only type and payload.room are read
+    @Benchmark
+    public MessageCodec.Header scanDrawHeader() {
+        return MessageCodec.scanHeader(drawJson);
+    }
+
+    // Both encoders produce the shareable UTF-8 frame the fan-out engine sends
+
+    @Benchmark
+    public ByteBuffer encodeChatGson() {
+        return StandardCharsets.UTF_8.encode(gson.toJson(chat)).asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeChatCodec() {
+        return MessageCodec.encode(chat);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeChatMsgPack() {
+        return MsgPackCodec.encode(chat);
+    }
+
+    @Benchmark
+    public Message decodeChatMsgPack() {
+        return MsgPackCodec.decode(chatMsgPack, 0, chatMsgPack.length);
+    }
+}
@@ -1,34 +1,123 @@
 package com.Itfac.TestNGLab.chat;
 
 import io.javalin.Javalin;
-import io.javalin.http.UploadedFile;
+import io.javalin.http.Context;
+import org.eclipse.jetty.server.HttpOutput;
 
 import java.io.*;
 import java.lang.management.ManagementFactory;
-import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.Itfac.TestNGLab.chat.compression.FrameDeflater;
+import com.Itfac.TestNGLab.chat.download.ByteRanges;
+import com.Itfac.TestNGLab.chat.download.DownloadCache;
+import com.Itfac.TestNGLab.chat.history.HistoryPages;
 import com.Itfac.TestNGLab.chat.models.Message;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.Itfac.TestNGLab.chat.rooms.RoomRegistry;
+import com.Itfac.TestNGLab.chat.upload.ChunkedUpload;
+import com.Itfac.TestNGLab.chat.upload.ChunkedUploads;
+import com.Itfac.TestNGLab.chat.upload.ContentStore;
+import com.Itfac.TestNGLab.chat.upload.StreamingUpload;
+import com.Itfac.TestNGLab.chat.upload.UploadJanitor;
+import com.Itfac.TestNGLab.chat.upload.UploadProcessor;
 
 public class ApiController {
-    // In-memory map: unique filename → original filename
-    private static final Map<String, String> fileNameMap = new ConcurrentHashMap<>();
+    // Uploads are streamed into this directory; the limit is enforced from Content-Length and while streaming
+    private static final String UPLOAD_DIR = "uploads/";
+    private static final long MAX_UPLOAD_BYTES = Long.getLong("upload.maxBytes", 5L * 1024L * 1024L); // 5 MB
+
+    // Content-addressed store: each distinct file is kept once, under its SHA-256 digest; its metadata
+    // (original name, uploader, type, ...) is journaled on disk, with recently used entries in memory
+    private static final ContentStore contentStore = new ContentStore(Paths.get(UPLOAD_DIR),
+            Integer.getInteger("upload.metadataCacheEntries", 10000),
+            Long.getLong("upload.metadataFsyncMs", 200L));
+
+    // Downloads: more byte ranges than this in one request are answered with the whole file
+    private static final int MAX_RANGES = Integer.getInteger("download.maxRanges", 16);
+
+    // Hot-file cache: metadata per download name, memory-mapped contents within a byte budget
+    private static final DownloadCache downloadCache = new DownloadCache(
+            Integer.getInteger("download.cacheFiles", 4096),
+            Long.getLong("download.cacheMB", 256L) * 1024L * 1024L,
+            Long.getLong("download.cacheMaxFileMB", 16L) * 1024L * 1024L);
+
+    static {
+        // A removed name stops being served at once, whoever removed it (cleanup, thumbnails, ...)
+        contentStore.addListener(new ContentStore.Listener() {
+            @Override
+            public void removed(ContentStore.Entry entry) {
+                downloadCache.invalidate(entry.getId());
+            }
+        });
+    }
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Resumable uploads: partial files live in uploads/.partial until every chunk has arrived
+    private static final int MAX_LISTED_CHUNKS = 1000;
+    private static final ChunkedUploads chunkedUploads = new ChunkedUploads(Paths.get(UPLOAD_DIR, ".partial"),
+            Long.getLong("upload.resumable.maxBytes", 2L * 1024L * 1024L * 1024L), // 2 GB
+            Integer.getInteger("upload.resumable.chunkBytes", 8 * 1024 * 1024),
+            Integer.getInteger("upload.resumable.maxActive", 64),
+            Integer.getInteger("upload.resumable.maxActivePerUser", 4),
+            Long.getLong("upload.resumable.userReservedMB", 4096L) * 1024L * 1024L);
+
+    // Completed resumable uploads (up to 2 GB) are hashed into the store off the request threads;
+    // the outcome of the most recent ones is kept for clients polling GET /uploads/{id}
+    private static final int MAX_FINISHED_UPLOADS = 1000;
+    private static final ExecutorService uploadFinisher = Executors.newFixedThreadPool(
+            Integer.getInteger("upload.resumable.finishThreads", 2), r -> {
+                Thread thread = new Thread(r, "upload-finisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final Map<String, Map<String, Object>> finishedUploads = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+                    return size() > MAX_FINISHED_UPLOADS;
+                }
+            });
+
+    // Cleanup: retention by age, a total disk budget and a per-user quota, enforced in rate-limited batches
+    private static final UploadJanitor uploadJanitor = new UploadJanitor(contentStore, chunkedUploads,
+            Paths.get(UPLOAD_DIR),
+            TimeUnit.DAYS.toMillis(Long.getLong("upload.retentionDays", 30L)),
+            Long.getLong("upload.maxTotalMB", 10240L) * 1024L * 1024L,
+            Long.getLong("upload.userQuotaMB", 1024L) * 1024L * 1024L,
+            TimeUnit.HOURS.toMillis(Long.getLong("upload.resumable.idleHours", 24L)),
+            TimeUnit.SECONDS.toMillis(Long.getLong("upload.cleanup.intervalSeconds", 300L)),
+            Integer.getInteger("upload.cleanup.batchSize", 100),
+            Integer.getInteger("upload.cleanup.deletesPerSecond", 20),
+            downloadCache::invalidate);
+
+    // Post-processing after the response (type detection, audio length, thumbnails): a bounded queue
+    // in front of a fixed worker pool; uploads arriving while it is full are not processed
+    private static final UploadProcessor uploadProcessor = new UploadProcessor(contentStore,
+            Integer.getInteger("upload.processing.workers", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+            Integer.getInteger("upload.processing.queueSize", 256),
+            Long.getLong("upload.processing.maxImageMB", 20L) * 1024L * 1024L,
+            Long.getLong("upload.processing.maxProbeMB", 64L) * 1024L * 1024L,
+            Integer.getInteger("upload.processing.thumbnailSize", 256),
+            downloadCache::invalidate);
 
     // Register REST endpoints to existing Javalin app
     public static void registerRoutes(Javalin app) {
@@ -49,233 +138,344 @@ public class ApiController {
             ctx.json(Map.of(
                     "connectedUsers", WebSocketHandler.getConnectedUsersCount(),
                     "messageHistorySize", WebSocketHandler.getMessageHistorySize(),
+                    "rooms", WebSocketHandler.getRoomStats(),
+                    "outboundQueues", WebSocketHandler.getOutboundQueueStats(),
+                    "compression", FrameDeflater.stats(),
+                    "search", WebSocketHandler.getSearchStats(),
+                    "uploads", uploadStats(),
+                    "downloads", downloadCache.stats(),
                     "uptime", ManagementFactory.getRuntimeMXBean().getUptime(),
                     "timestamp", System.currentTimeMillis()));
         });
 
-        // 3. File Upload API (Performance Engineer Version using NIO)
-        app.post("/upload", ctx -> {
-            // Step 1: Retrieve uploaded file and username
-            List<UploadedFile> files = ctx.uploadedFiles("file");
-            String username = ctx.formParam("username");
-
-            if (files.isEmpty()) {
-                ctx.status(400).result("No file uploaded!");
+        /* ---- 2.5. Paged History API (cursor = sequence number, ETag for cheap re-fetches) ---- */
+        app.get("/history", ctx -> {
+            String room = RoomRegistry.normalize(ctx.queryParam("room"));
+            if (room == null) {
+                ctx.status(400).result("Invalid room");
                 return;
             }
 
-            if (username == null || username.trim().isEmpty()) {
-                ctx.status(400).result("Username is required and cannot be empty.");
+            Long before;
+            int limit;
+            try {
+                String beforeParam = ctx.queryParam("before");
+                String limitParam = ctx.queryParam("limit");
+                before = beforeParam == null || beforeParam.isBlank() ? null : Long.parseLong(beforeParam.trim());
+                limit = limitParam == null || limitParam.isBlank() ? 50 : Integer.parseInt(limitParam.trim());
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("before and limit must be numbers");
+                return;
+            }
+            if ((before != null && before < 1) || limit < 1) {
+                ctx.status(400).result("before and limit must be positive");
                 return;
             }
 
-            UploadedFile file = files.get(0);
-            String uploadDir = "uploads/";
-            final long MAX_FILE_SIZE = 5L * 1024L * 1024L; // 5 MB
-
-            try {
-                // Step 2: Ensure upload directory exists
-                Files.createDirectories(Paths.get(uploadDir));
-
-                // Step 3: Sanitize and prepare file name
-                String originalName = file.filename();
-                String safeName = (originalName == null)
-                        ? "file"
-                        : Paths.get(originalName).getFileName().toString();
-                safeName = safeName.replaceAll("[^A-Za-z0-9._-]", "_");
-                if (safeName.length() > 100)
-                    safeName = safeName.substring(0, 100);
-
-                // Step 4: Construct final destination path
-                String uniqueName = System.currentTimeMillis() + "_" + safeName;
-                Path destPath = Paths.get(uploadDir + uniqueName);
-
-                // Step 5: Use NIO Channels and Buffers for efficient I/O
-                try (
-                        ReadableByteChannel sourceChannel = Channels.newChannel(file.content());
-                        FileChannel destChannel = FileChannel.open(
-                                destPath,
-                                StandardOpenOption.CREATE,
-                                StandardOpenOption.WRITE)) {
-                    // Allocate a ByteBuffer (data transfer unit)
-                    ByteBuffer buffer = ByteBuffer.allocate(8192); // 8 KB chunks
-                    long totalBytes = 0L;
-                    int bytesRead;
-
-                    // Step 6: Read from sourceChannel and write to destChannel in chunks
-                    while ((bytesRead = sourceChannel.read(buffer)) != -1) {
-                        buffer.flip(); // Switch buffer from read mode → write mode
-                        destChannel.write(buffer); // Write data to disk
-
-                        totalBytes += bytesRead; // Track uploaded size
-                        buffer.clear(); // Prepare buffer for next read
-
-                        // Step 7: Enforce file size limit
-                        if (totalBytes > MAX_FILE_SIZE) {
-                            destChannel.close();
-                            Files.deleteIfExists(destPath);
-                            ctx.status(413).result("File too large (max 5MB)");
-                            return;
-                        }
-                    }
-                }
-
-                // Store the original filename mapping
-                fileNameMap.put(uniqueName, originalName);
-
-                // Step 8: Send confirmation response
-                System.out.println("File uploaded by " + username + ": " + originalName);
-
-                ctx.status(200).json(Map.of(
-                        "message", "File uploaded successfully",
-                        "filename", originalName));
+            HistoryPages.Page page = WebSocketHandler.getHistoryPage(room, before, limit);
+            if (page == null) {
+                ctx.status(404).result("Room not found");
+                return;
+            }
 
-                // Step 9: Notify all connected WebSocket clients
-                String fileUrl = ctx.scheme() + "://" + ctx.host() + "/download/" + uniqueName;
+            // Pages are immutable for a given ETag: clients revalidate and usually get an empty 304
+            ctx.header("ETag", page.getEtag());
+            ctx.header("Cache-Control", "private, no-cache");
+            if (matchesEtag(ctx.header("If-None-Match"), page.getEtag())) {
+                ctx.status(304);
+                return;
+            }
+            ctx.contentType("application/json").result(page.getBody());
+        });
 
-                long sizeInBytes = Files.size(destPath);
-                String readableSize = getReadableFileSize(sizeInBytes);
+        /* ---- 2.6. Message Search API (in-process inverted index, newest first) ---- */
+        app.get("/search", ctx -> {
+            String query = ctx.queryParam("q");
+            if (query == null || query.isBlank()) {
+                ctx.status(400).result("Query parameter q is required");
+                return;
+            }
 
-                String timestamp = java.time.LocalTime.now().withNano(0).toString();
+            String roomParam = ctx.queryParam("room");
+            String room = roomParam == null || roomParam.isBlank() ? null : RoomRegistry.normalize(roomParam);
+            if (roomParam != null && !roomParam.isBlank() && room == null) {
+                ctx.status(400).result("Invalid room");
+                return;
+            }
 
-                // Create payload object
-                Message.Payload payload = new Message.Payload();
-                payload.setUsername(username);
-                payload.setFilename(originalName);
-                payload.setFilesize(readableSize);
-                payload.setUrl(fileUrl);
+            int limit;
+            try {
+                String limitParam = ctx.queryParam("limit");
+                limit = limitParam == null || limitParam.isBlank() ? 20 : Integer.parseInt(limitParam.trim());
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("limit must be a number");
+                return;
+            }
 
-                // Create message wrapper
-                Message message = new Message("FILE_UPLOAD", payload);
-                message.setTimestamp(timestamp);
+            ctx.contentType("application/json").result(WebSocketHandler.search(query, room, limit));
+        });
 
-                // Convert to JSON using Jackson's ObjectMapper
-                String jsonMessage = objectMapper.writeValueAsString(message);
+        // 3. File Upload API (Performance Engineer Version: streamed straight to disk, stored by digest)
+        app.post("/upload", ctx -> {
+            // Step 1: Stream the multipart body into the store (size checked and digest computed while reading)
+            StreamingUpload upload;
+            try {
+                upload = StreamingUpload.receive(ctx.req().getInputStream(), ctx.header("Content-Type"),
+                        ctx.req().getContentLengthLong(), "file", MAX_UPLOAD_BYTES,
+                        originalName -> contentStore.tempFile());
+            } catch (StreamingUpload.RejectedException e) {
+                ctx.status(e.getStatus()).result(e.getStatus() == 413
+                        ? "File too large (max " + getReadableFileSize(MAX_UPLOAD_BYTES) + ")"
+                        : e.getMessage());
+                return;
+            } catch (IOException e) {
+                // File system or network I/O error
+                ctx.status(500).json(Map.of("error", "File upload failed due to I/O error: " + e.getMessage()));
+                return;
+            }
 
-                // Broadcast the message to all clients
-                WebSocketHandler.broadcast(jsonMessage, null);
+            // Step 2: Validate the form (fields may arrive after the file)
+            String username = upload.field("username");
+            if (upload.getFile() == null) {
+                ctx.status(400).result("No file uploaded!");
+                return;
+            }
+            if (username == null || username.trim().isEmpty()) {
+                upload.discard();
+                ctx.status(400).result("Username is required and cannot be empty.");
+                return;
+            }
 
-            } catch (JsonProcessingException e) {
-                // Specific JSON serialization error
-                ctx.status(500).json(Map.of("error", "Failed to serialize broadcast message: " + e.getMessage()));
+            // Step 3: Keep the file once per digest (a duplicate is dropped, the stored copy is shared)
+            // Stored, broadcast and sent back in Content-Disposition: never a client-supplied path
+            String originalName = baseName(upload.getFilename());
+            if (originalName.isBlank())
+                originalName = "file";
+            ContentStore.Entry entry;
+            try {
+                entry = contentStore.add(upload.getFile(), upload.getDigest(), upload.getSize(), originalName, username);
             } catch (IOException e) {
-                // File system or network I/O error
+                upload.discard();
                 ctx.status(500).json(Map.of("error", "File upload failed due to I/O error: " + e.getMessage()));
+                return;
             }
+
+            // Step 4: Send confirmation response
+            System.out.println("File uploaded by " + username + ": " + originalName);
+
+            ctx.status(200).json(Map.of(
+                    "message", "File uploaded successfully",
+                    "filename", originalName));
+
+            // Step 5: Notify all connected WebSocket clients
+            announceUpload(ctx, "FILE_UPLOAD", username, entry, null);
         });
 
         // 3.5. Voice Message Upload API
         app.post("/upload-voice", ctx -> {
-            // Step 1: Retrieve uploaded voice file, username, and duration
-            List<UploadedFile> files = ctx.uploadedFiles("file");
-            String username = ctx.formParam("username");
-            String duration = ctx.formParam("duration");
+            // Step 1: Stream the voice file into the store (type checked from the part's file name)
+            StreamingUpload upload;
+            try {
+                upload = StreamingUpload.receive(ctx.req().getInputStream(), ctx.header("Content-Type"),
+                        ctx.req().getContentLengthLong(), "file", MAX_UPLOAD_BYTES, originalName -> {
+                            String name = (originalName == null || originalName.isBlank())
+                                    ? "voice-message.webm"
+                                    : baseName(originalName);
+
+                            // Ensure it's a supported audio format
+                            String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+                            if (!extension.matches("(webm|mp3|ogg|wav|m4a|aac)"))
+                                throw new StreamingUpload.RejectedException(400,
+                                        "Invalid audio format. Supported: webm, mp3, ogg, wav, m4a, aac");
+                            return contentStore.tempFile();
+                        });
+            } catch (StreamingUpload.RejectedException e) {
+                ctx.status(e.getStatus()).result(e.getStatus() == 413
+                        ? "Voice file too large (max " + getReadableFileSize(MAX_UPLOAD_BYTES) + ")"
+                        : e.getMessage());
+                return;
+            } catch (IOException e) {
+                ctx.status(500).json(Map.of("error", "Voice upload failed due to I/O error: " + e.getMessage()));
+                return;
+            }
 
-            if (files.isEmpty()) {
+            // Step 2: Validate the form (the recorder sends the file before the other fields)
+            String username = upload.field("username");
+            String duration = upload.field("duration");
+            if (upload.getFile() == null) {
                 ctx.status(400).result("No voice file uploaded!");
                 return;
             }
-
             if (username == null || username.trim().isEmpty()) {
+                upload.discard();
                 ctx.status(400).result("Username is required and cannot be empty.");
                 return;
             }
 
-            UploadedFile file = files.get(0);
-            String uploadDir = "uploads/";
-            final long MAX_FILE_SIZE = 5L * 1024L * 1024L; // 5 MB
-
+            // Step 3: Keep the file once per digest
+            String originalName = baseName(upload.getFilename());
+            if (originalName.isBlank())
+                originalName = "voice-message.webm";
+            ContentStore.Entry entry;
             try {
-                // Step 2: Ensure upload directory exists
-                Files.createDirectories(Paths.get(uploadDir));
-
-                // Step 3: Sanitize and prepare file name for voice message
-                String originalName = file.filename();
-                String safeName = (originalName == null)
-                        ? "voice-message.webm"
-                        : Paths.get(originalName).getFileName().toString();
-
-                // Ensure it's a supported audio format
-                String extension = safeName.substring(safeName.lastIndexOf('.') + 1).toLowerCase();
-                if (!extension.matches("(webm|mp3|ogg|wav|m4a|aac)")) {
-                    ctx.status(400).result("Invalid audio format. Supported: webm, mp3, ogg, wav, m4a, aac");
-                    return;
-                }
+                entry = contentStore.add(upload.getFile(), upload.getDigest(), upload.getSize(), originalName, username);
+            } catch (IOException e) {
+                upload.discard();
+                ctx.status(500).json(Map.of("error", "Voice upload failed due to I/O error: " + e.getMessage()));
+                return;
+            }
 
-                // Step 4: Construct final destination path
-                String uniqueName = System.currentTimeMillis() + "_voice_" + safeName;
-                Path destPath = Paths.get(uploadDir + uniqueName);
-
-                // Step 5: Use NIO Channels and Buffers for efficient I/O
-                try (
-                        ReadableByteChannel sourceChannel = Channels.newChannel(file.content());
-                        FileChannel destChannel = FileChannel.open(
-                                destPath,
-                                StandardOpenOption.CREATE,
-                                StandardOpenOption.WRITE)) {
-                    ByteBuffer buffer = ByteBuffer.allocate(8192);
-                    long totalBytes = 0L;
-                    int bytesRead;
-
-                    while ((bytesRead = sourceChannel.read(buffer)) != -1) {
-                        buffer.flip();
-                        destChannel.write(buffer);
-                        totalBytes += bytesRead;
-                        buffer.clear();
-
-                        if (totalBytes > MAX_FILE_SIZE) {
-                            destChannel.close();
-                            Files.deleteIfExists(destPath);
-                            ctx.status(413).result("Voice file too large (max 5MB)");
-                            return;
-                        }
-                    }
-                }
+            // Step 4: Send confirmation response
+            System.out.println("Voice message uploaded by " + username + " (reported duration: " + duration + ")");
 
-                // Store the original filename mapping
-                fileNameMap.put(uniqueName, originalName);
+            ctx.status(200).json(Map.of(
+                    "message", "Voice message uploaded successfully",
+                    "filename", originalName));
 
-                // Step 6: Send confirmation response
-                System.out.println("Voice message uploaded by " + username + " (duration: " + duration + ")");
+            // Step 5: Notify all connected WebSocket clients (the reported duration stands until it is measured)
+            announceUpload(ctx, "VOICE_MESSAGE", username, entry, duration != null ? duration : "0:00");
+        });
 
-                ctx.status(200).json(Map.of(
-                        "message", "Voice message uploaded successfully",
-                        "filename", originalName));
+        /* ---- 3.6. Resumable Upload API (initiate, PUT chunks in any order / in parallel, complete) ---- */
+        app.post("/uploads", ctx -> {
+            Map<?, ?> request;
+            try {
+                request = ctx.bodyAsClass(Map.class);
+            } catch (Exception e) {
+                ctx.status(400).result(
+                        "Expected a JSON body: {\"filename\", \"size\", \"username\", \"chunkSize\"?}");
+                return;
+            }
+            Object filename = request.get("filename");
+            Object username = request.get("username");
+            Object size = request.get("size");
+            Object chunkSize = request.get("chunkSize");
+            if (!(filename instanceof String) || baseName((String) filename).isBlank() || !(size instanceof Number)) {
+                ctx.status(400).result("filename and size are required");
+                return;
+            }
+            if (!(username instanceof String) || ((String) username).trim().isEmpty()) {
+                ctx.status(400).result("Username is required and cannot be empty.");
+                return;
+            }
 
-                // Step 7: Notify all connected WebSocket clients
-                String fileUrl = ctx.scheme() + "://" + ctx.host() + "/download/" + uniqueName;
+            try {
+                ChunkedUpload upload = chunkedUploads.create(baseName((String) filename), (String) username,
+                        ((Number) size).longValue(), chunkSize instanceof Number ? ((Number) chunkSize).intValue() : null);
+                ctx.header("Location", "/uploads/" + upload.getId());
+                ctx.status(201).json(uploadStatus(upload));
+            } catch (StreamingUpload.RejectedException e) {
+                ctx.status(e.getStatus()).result(e.getMessage());
+            }
+        });
 
-                long sizeInBytes = Files.size(destPath);
-                String readableSize = getReadableFileSize(sizeInBytes);
+        // Progress of an upload: the chunks still missing (used to resume), or once completed,
+        // whether it has been stored yet
+        app.get("/uploads/{id}", ctx -> {
+            ChunkedUpload upload = chunkedUploads.get(ctx.pathParam("id"));
+            if (upload == null) {
+                Map<String, Object> finished = finishedUploads.get(ctx.pathParam("id"));
+                if (finished == null) {
+                    ctx.status(404).result("Unknown upload");
+                } else {
+                    ctx.json(finished);
+                }
+                return;
+            }
+            ctx.json(uploadStatus(upload));
+        });
 
-                String timestamp = java.time.LocalTime.now().withNano(0).toString();
+        // One chunk, written at its offset straight from the request body
+        app.put("/uploads/{id}/chunks/{index}", ctx -> {
+            ChunkedUpload upload = chunkedUploads.get(ctx.pathParam("id"));
+            if (upload == null) {
+                ctx.status(404).result("Unknown upload");
+                return;
+            }
+            int index;
+            try {
+                index = Integer.parseInt(ctx.pathParam("index"));
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Invalid chunk index");
+                return;
+            }
 
-                // Create payload object for voice message
-                Message.Payload payload = new Message.Payload();
-                payload.setUsername(username);
-                payload.setFilename(originalName);
-                payload.setFilesize(readableSize);
-                payload.setUrl(fileUrl);
-                payload.setDuration(duration != null ? duration : "0:00");
+            try {
+                upload.writeChunk(index, ctx.req().getInputStream(), ctx.req().getContentLengthLong());
+                ctx.json(Map.of(
+                        "index", index,
+                        "receivedChunks", upload.getReceivedChunks(),
+                        "chunks", upload.getChunks(),
+                        "complete", upload.isComplete()));
+            } catch (StreamingUpload.RejectedException e) {
+                ctx.status(e.getStatus()).result(e.getMessage());
+            }
+        });
 
-                // Create message wrapper with VOICE_MESSAGE type
-                Message message = new Message("VOICE_MESSAGE", payload);
-                message.setTimestamp(timestamp);
+        // Completion: answered with 202 at once; the file is then hashed, moves into the store and is
+        // announced like a regular upload (poll GET /uploads/{id} for the outcome)
+        app.post("/uploads/{id}/complete", ctx -> {
+            ChunkedUpload upload = chunkedUploads.get(ctx.pathParam("id"));
+            if (upload == null) {
+                ctx.status(404).result("Unknown upload");
+                return;
+            }
+            if (!upload.isComplete()) {
+                ctx.status(409).json(uploadStatus(upload));
+                return;
+            }
 
-                // Convert to JSON using Jackson's ObjectMapper
-                String jsonMessage = objectMapper.writeValueAsString(message);
+            String id = upload.getId();
+            String originalName = upload.getFilename();
+            String username = upload.getUsername();
+            Path assembled = contentStore.tempFile();
+            try {
+                if (!chunkedUploads.complete(upload, assembled)) {
+                    deleteQuietly(assembled);
+                    ctx.status(409).result("Upload is not complete");
+                    return;
+                }
+            } catch (IOException e) {
+                chunkedUploads.abort(upload);
+                deleteQuietly(assembled);
+                ctx.status(500).json(Map.of("error",
+                        "Upload could not be completed due to I/O error: " + e.getMessage()));
+                return;
+            }
 
-                // Broadcast the message to all clients
-                WebSocketHandler.broadcast(jsonMessage, null);
+            String baseUrl = baseUrl(ctx);
+            finishedUploads.put(id, finishStatus(id, originalName, "storing", null));
+            uploadFinisher.execute(() -> {
+                ContentStore.Entry entry;
+                try {
+                    entry = contentStore.addFile(assembled, originalName, username); // deletes the file on failure
+                } catch (IOException e) {
+                    System.err.println("Resumable upload " + id + " could not be stored: " + e.getMessage());
+                    finishedUploads.put(id, finishStatus(id, originalName, "failed",
+                            "File upload failed due to I/O error: " + e.getMessage()));
+                    return;
+                }
+                System.out.println("File uploaded by " + username + " (resumable, "
+                        + upload.getChunks() + " chunks): " + originalName);
+                finishedUploads.put(id, finishStatus(id, originalName, "stored", null));
+                announceUpload(baseUrl, "FILE_UPLOAD", username, entry, null);
+            });
+
+            ctx.header("Location", "/uploads/" + id);
+            ctx.status(202).json(finishStatus(id, originalName, "storing", null));
+        });
 
-            } catch (JsonProcessingException e) {
-                ctx.status(500).json(Map.of("error", "Failed to serialize broadcast message: " + e.getMessage()));
-            } catch (IOException e) {
-                ctx.status(500).json(Map.of("error", "Voice upload failed due to I/O error: " + e.getMessage()));
+        app.delete("/uploads/{id}", ctx -> {
+            ChunkedUpload upload = chunkedUploads.get(ctx.pathParam("id"));
+            if (upload == null) {
+                ctx.status(404).result("Unknown upload");
+                return;
             }
+            chunkedUploads.abort(upload);
+            ctx.status(204);
         });
 
-        /* ---- 4. File Download API (Using NIO) ---- */
+        /* ---- 4. File Download API (Using NIO: byte ranges, conditional GET) ---- */
         app.get("/download/{filename}", ctx -> {
             String uniqueName = ctx.pathParam("filename");
 
@@ -285,47 +485,115 @@ public class ApiController {
                 return;
             }
 
-            // Define your uploads directory
-            Path uploadsDir = Paths.get("uploads").toAbsolutePath().normalize();
-            Path requestedFile = uploadsDir.resolve(uniqueName).normalize();
+            // Hot path: metadata from the cache (no stat, no content type probe)
+            DownloadCache.CachedFile file = downloadCache.get(uniqueName);
+            if (file == null) {
+                // Store names ({digest}_{name}) are served only while their entry exists (never by
+                // digest alone: a removed name stays removed); other names are files uploaded
+                // directly into uploads/ by earlier versions
+                String digest = ContentStore.digestOf(uniqueName);
+                if (digest != null) {
+                    ContentStore.Entry entry = contentStore.get(uniqueName);
+                    if (entry == null) {
+                        ctx.status(404).result("File not found");
+                        return;
+                    }
+                    // Everything comes from the metadata index (no stat, no content type probe)
+                    file = downloadCache.add(uniqueName, contentStore.object(digest), entry.getOriginalName(),
+                            "\"" + digest + "\"", entry.getSize(), entry.getCreatedAt() / 1000,
+                            entry.getContentType(), true);
+                } else {
+                    // Define your uploads directory
+                    Path uploadsDir = Paths.get("uploads").toAbsolutePath().normalize();
+                    Path requestedFile = uploadsDir.resolve(uniqueName).normalize();
+
+                    // Prevent path traversal
+                    if (!requestedFile.startsWith(uploadsDir)) {
+                        ctx.status(403).result("Access denied: invalid file path");
+                        return;
+                    }
 
-            // Prevent path traversal
-            if (!requestedFile.startsWith(uploadsDir)) {
-                ctx.status(403).result("Access denied: invalid file path");
+                    // Check if file exists (one stat for existence, size and modification time)
+                    file = downloadCache.load(uniqueName, requestedFile, uniqueName, null);
+                    if (file == null) {
+                        ctx.status(404).result("File not found");
+                        return;
+                    }
+                }
+            }
+            long fileSize = file.getSize();
+
+            // Validators (content-addressed URLs can be cached for good)
+            ctx.header("ETag", file.getEtag());
+            ctx.header("Last-Modified", file.getLastModified());
+            ctx.header("Accept-Ranges", "bytes");
+            if (file.isImmutable())
+                ctx.header("Cache-Control", "public, max-age=31536000, immutable");
+
+            String ifNoneMatch = ctx.header("If-None-Match");
+            if (ifNoneMatch != null ? matchesEtag(ifNoneMatch, file.getEtag())
+                    : notModifiedSince(ctx.header("If-Modified-Since"), file.getModifiedSeconds())) {
+                ctx.status(304);
                 return;
             }
 
-            // Check if file exists
-            if (!Files.exists(requestedFile) || Files.isDirectory(requestedFile)) {
-                ctx.status(404).result("File not found");
+            // Ranges apply only if If-Range (when sent) still matches this version of the file
+            List<ByteRanges.Range> ranges = ByteRanges.parse(ctx.header("Range"), ctx.header("If-Range"),
+                    file.getEtag(), file.getLastModified(), fileSize, MAX_RANGES);
+            if (ranges != null && ranges.isEmpty()) {
+                ctx.header("Content-Range", "bytes */" + fileSize);
+                ctx.status(416);
                 return;
             }
 
-            // Retrieve original filename from in-memory map
-            String originalName = fileNameMap.getOrDefault(uniqueName, uniqueName);
-
-            // Encode safely for header
-            String encodedName = URLEncoder.encode(originalName, StandardCharsets.UTF_8)
-                    .replace("+", "%20");
-
-            long fileSize = Files.size(requestedFile);
-
-            // Set headers
-            ctx.header("Content-Type", Files.probeContentType(requestedFile));
-            ctx.header("Content-Length", String.valueOf(fileSize));
-            ctx.header("Content-Disposition",
-                    "attachment; filename=\"" + originalName.replaceAll("[\\r\\n\"]", "_") +
-                            "\"; filename*=UTF-8''" + encodedName);
-
-            // Stream file efficiently using NIO
-            try (FileChannel fileChannel = FileChannel.open(requestedFile, StandardOpenOption.READ);
-                    WritableByteChannel outputChannel = Channels.newChannel(ctx.res().getOutputStream())) {
-
-                long transferred = 0;
-                while (transferred < fileSize) {
-                    transferred += fileChannel.transferTo(transferred, fileSize - transferred, outputChannel);
+            String contentType = file.getContentType();
+            ctx.header("Content-Disposition", file.getContentDisposition());
+
+            // Send the body: hot files straight from their mapping, others with zero-copy transferTo
+            ByteBuffer mapped = downloadCache.contents(file);
+            try (FileChannel fileChannel = mapped == null ? FileChannel.open(file.getPath(), StandardOpenOption.READ)
+                    : null; OutputStream out = ctx.res().getOutputStream()) {
+                if (ranges == null) {
+                    ctx.header("Content-Type", contentType);
+                    ctx.header("Content-Length", String.valueOf(fileSize));
+                    send(out, mapped, fileChannel, 0, fileSize);
+                } else if (ranges.size() == 1) {
+                    ByteRanges.Range range = ranges.get(0);
+                    ctx.status(206);
+                    ctx.header("Content-Type", contentType);
+                    ctx.header("Content-Range", range.contentRange(fileSize));
+                    ctx.header("Content-Length", String.valueOf(range.length()));
+                    send(out, mapped, fileChannel, range.getStart(), range.length());
+                } else {
+                    // multipart/byteranges: part headers are small buffers, part bodies are sent as above
+                    String boundary = "range_" + Long.toHexString(System.nanoTime());
+                    List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+                    long length = 0;
+                    for (ByteRanges.Range range : ranges) {
+                        byte[] header = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType
+                                + "\r\nContent-Range: " + range.contentRange(fileSize) + "\r\n\r\n")
+                                .getBytes(StandardCharsets.ISO_8859_1);
+                        partHeaders.add(header);
+                        length += header.length + range.length();
+                    }
+                    byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                    length += closing.length;
+
+                    ctx.status(206);
+                    ctx.header("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                    ctx.header("Content-Length", String.valueOf(length));
+                    for (int i = 0; i < ranges.size(); i++) {
+                        out.write(partHeaders.get(i));
+                        send(out, mapped, fileChannel, ranges.get(i).getStart(), ranges.get(i).length());
+                    }
+                    out.write(closing);
                 }
 
+            } catch (NoSuchFileException e) {
+                // Deleted since its metadata was cached
+                downloadCache.invalidate(uniqueName);
+                ctx.res().reset();
+                ctx.status(404).result("File not found");
             } catch (IOException e) {
                 System.err.println("File transfer failed: " + e.getMessage());
                 e.printStackTrace();
@@ -341,6 +609,154 @@ public class ApiController {
         });
     }
 
+    /* ---- Helper: Announce a stored upload to all WebSocket clients, then queue its processing ---- */
+    private static void announceUpload(Context ctx, String type, String username, ContentStore.Entry entry,
+            String duration) {
+        announceUpload(baseUrl(ctx), type, username, entry, duration);
+    }
+
+    private static void announceUpload(String baseUrl, String type, String username, ContentStore.Entry entry,
+            String duration) {
+        // Create payload object
+        Message.Payload payload = new Message.Payload();
+        payload.setUsername(username);
+        payload.setFilename(entry.getOriginalName());
+        payload.setFilesize(getReadableFileSize(entry.getSize()));
+        payload.setUrl(baseUrl + "/download/" + entry.getId());
+        if (duration != null)
+            payload.setDuration(duration);
+
+        // Create message wrapper
+        Message message = new Message(type, payload);
+        message.setTimestamp(java.time.LocalTime.now().withNano(0).toString());
+
+        // Broadcast the message to all clients (encoded once by the message codec)
+        WebSocketHandler.broadcast(message, null);
+
+        // Details found by processing follow as a FILE_UPDATE (never delays this request)
+        uploadProcessor.submit(entry, "VOICE_MESSAGE".equals(type),
+                result -> announceProcessed(baseUrl, username, result));
+    }
+
+    /* ---- Helper: Send what processing found out (FILE_UPDATE, matched to the upload by its url) ---- */
+    private static void announceProcessed(String baseUrl, String username, UploadProcessor.Result result) {
+        Message.Payload payload = new Message.Payload();
+        payload.setUsername(username);
+        payload.setFilename(result.getEntry().getOriginalName());
+        payload.setUrl(baseUrl + "/download/" + result.getEntry().getId());
+        payload.setMimeType(result.getMimeType());
+        if (result.getThumbnail() != null)
+            payload.setThumbnail(baseUrl + "/download/" + result.getThumbnail().getId());
+        if (result.getDurationSeconds() >= 0) {
+            long seconds = Math.round(result.getDurationSeconds());
+            payload.setDuration(seconds / 60 + ":" + String.format("%02d", seconds % 60));
+        }
+
+        Message message = new Message("FILE_UPDATE", payload);
+        message.setTimestamp(java.time.LocalTime.now().withNano(0).toString());
+        WebSocketHandler.broadcast(message, null);
+    }
+
+    /* ---- Helper: Upload statistics (store, cleanup and processing) ---- */
+    private static Map<String, Object> uploadStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(contentStore.stats());
+        stats.put("cleanup", uploadJanitor.stats());
+        stats.put("processing", uploadProcessor.stats());
+        return stats;
+    }
+
+    /* ---- Helper: Scheme and host the client used (for download URLs) ---- */
+    private static String baseUrl(Context ctx) {
+        return ctx.scheme() + "://" + ctx.host();
+    }
+
+    /* ---- Helper: Outcome of a completed resumable upload ---- */
+    private static Map<String, Object> finishStatus(String id, String filename, String state, String error) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("uploadId", id);
+        status.put("filename", filename);
+        status.put("state", state); // storing, stored or failed
+        status.put("message", "stored".equals(state) ? "File uploaded successfully"
+                : "failed".equals(state) ? "File upload failed" : "File received, storing");
+        if (error != null)
+            status.put("error", error);
+        return status;
+    }
+
+    /* ---- Helper: Delete a temp file, logging (not throwing) a failure ---- */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    /* ---- Helper: Resumable upload progress ---- */
+    private static Map<String, Object> uploadStatus(ChunkedUpload upload) {
+        return Map.of(
+                "uploadId", upload.getId(),
+                "filename", upload.getFilename(),
+                "size", upload.getSize(),
+                "chunkSize", upload.getChunkSize(),
+                "chunks", upload.getChunks(),
+                "receivedChunks", upload.getReceivedChunks(),
+                "missingChunks", upload.missingChunks(MAX_LISTED_CHUNKS));
+    }
+
+    /* ---- Helper: Last path segment of a client-supplied file name (no Path parsing: any charset) ---- */
+    private static String baseName(String filename) {
+        return filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1);
+    }
+
+    /* ---- Helper: Send part of a file, from its mapping or with FileChannel.transferTo ---- */
+    private static void send(OutputStream out, ByteBuffer mapped, FileChannel file, long position, long count)
+            throws IOException {
+        if (mapped != null) {
+            ByteBuffer slice = mapped.duplicate();
+            slice.limit((int) (position + count)).position((int) position);
+            if (out instanceof HttpOutput) {
+                ((HttpOutput) out).write(slice); // Jetty writes direct buffers without a heap copy
+            } else {
+                WritableByteChannel channel = Channels.newChannel(out);
+                while (slice.hasRemaining())
+                    channel.write(slice);
+            }
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(out);
+        long transferred = 0;
+        while (transferred < count) {
+            transferred += file.transferTo(position + transferred, count - transferred, channel);
+        }
+    }
+
+    /* ---- Helper: If-Modified-Since check (an unparsable date is ignored) ---- */
+    private static boolean notModifiedSince(String ifModifiedSince, long modifiedSeconds) {
+        if (ifModifiedSince == null)
+            return false;
+        try {
+            return modifiedSeconds <= ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /* ---- Helper: If-None-Match check (list of tags or "*"; weak comparison) ---- */
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
     /* ---- Helper: Convert bytes to human-readable size ---- */
     private static String getReadableFileSize(long size) {
         // Avoid invalid or undefined logarithmic calculations
@@ -7,11 +7,16 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.websocket.core.server.WebSocketServerComponents;
 
+import com.Itfac.TestNGLab.chat.compression.FrameDeflater;
+import com.Itfac.TestNGLab.chat.compression.SharedDeflateExtension;
 import com.Itfac.TestNGLab.chat.security.SSLUtils;
 
 import io.javalin.Javalin;
+import io.javalin.config.JavalinConfig;
 import io.javalin.json.JavalinJackson;
 
 /**
@@ -29,6 +34,9 @@ public class ChatServer {
             System.getProperty("ssl.enabled", "false"));
 
     public static void main(String[] args) {
+        // Upload thumbnails are drawn off-screen; never look for a display
+        System.setProperty("java.awt.headless", System.getProperty("java.awt.headless", "true"));
+
         int port;
 
         if (args.length > 0) {
@@ -64,6 +72,7 @@ public class ChatServer {
                     // Configure Javalin to use Jackson for JSON serialization and deserialization,
                     // ensuring proper handling of JSON requests and responses
                     config.jsonMapper(new JavalinJackson());
+                    configureCompression(config);
                 }).start();
             } else {
                 System.out.println("SSL/TLS Mode DISABLED (development mode)");
@@ -75,13 +84,16 @@ public class ChatServer {
                     });
 
                     config.jsonMapper(new JavalinJackson());
+                    configureCompression(config);
                 }).start(port);
             }
 
-            // WebSocket endpoint
+            // Restore persisted chat history, then open the WebSocket endpoint
+            WebSocketHandler.initialize();
             app.ws("/chat", ws -> {
                 ws.onConnect(WebSocketHandler::onConnect);
                 ws.onMessage(WebSocketHandler::onMessage);
+                ws.onBinaryMessage(WebSocketHandler::onBinaryMessage);
                 ws.onClose(WebSocketHandler::onClose);
                 // Javalin 5.x: onError uses WsErrorContext
                 ws.onError(ctx -> WebSocketHandler.onError(ctx, ctx.error()));
@@ -100,6 +112,20 @@ public class ChatServer {
         }
     }
 
+    /**
+     * Installs the WebSocket compression extension (see compression.properties).
+     * The extension registry only exists once the servlet context has started,
+     * so the extension is registered when the WebSocket servlet is configured.
+     *
+     * @param config Javalin configuration being built
+     */
+    private static void configureCompression(JavalinConfig config) {
+        ServletContextHandler[] context = new ServletContextHandler[1];
+        config.jetty.contextHandlerConfig(handler -> context[0] = handler);
+        config.jetty.wsFactoryConfig(factory -> SharedDeflateExtension.install(
+                WebSocketServerComponents.getWebSocketComponents(context[0].getServletContext())));
+    }
+
     /**
      * Creates a Jetty server with SSL/TLS support.
      * 
@@ -191,6 +217,8 @@ public class ChatServer {
         System.out.println("    File Upload:  " + protocol + "://localhost:" + port + "/upload");
         System.out.println("    Server Status:" + protocol + "://localhost:" + port + "/status");
         System.out.println();
+        System.out.println("WebSocket compression: " + FrameDeflater.settings());
+        System.out.println();
 
         if (sslEnabled) {
             System.out.println("Security: SSL/TLS ENABLED");
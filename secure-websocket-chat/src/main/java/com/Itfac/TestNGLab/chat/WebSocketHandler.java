@@ -1,19 +1,49 @@
 package com.Itfac.TestNGLab.chat;
 
+import com.Itfac.TestNGLab.chat.broadcast.FanOutEngine;
+import com.Itfac.TestNGLab.chat.broadcast.OutboundQueue;
+import com.Itfac.TestNGLab.chat.codec.EncodedFrame;
+import com.Itfac.TestNGLab.chat.codec.JsonReader;
+import com.Itfac.TestNGLab.chat.codec.MessageCodec;
+import com.Itfac.TestNGLab.chat.codec.MsgPackCodec;
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+import com.Itfac.TestNGLab.chat.history.HistoryPages;
+import com.Itfac.TestNGLab.chat.history.HistoryReplay;
+import com.Itfac.TestNGLab.chat.history.HistoryRing;
 import com.Itfac.TestNGLab.chat.models.Message;
-import com.google.gson.Gson;
+import com.Itfac.TestNGLab.chat.presence.TypingTracker;
+import com.Itfac.TestNGLab.chat.rooms.Room;
+import com.Itfac.TestNGLab.chat.rooms.RoomRegistry;
+import com.Itfac.TestNGLab.chat.search.SearchIndex;
+import com.Itfac.TestNGLab.chat.store.ChatLog;
+import com.Itfac.TestNGLab.chat.store.RoomLog;
+import com.Itfac.TestNGLab.chat.whiteboard.Canvas;
+import com.Itfac.TestNGLab.chat.whiteboard.StrokeBatcher;
+import io.javalin.websocket.WsBinaryMessageContext;
 import io.javalin.websocket.WsContext;
 import io.javalin.websocket.WsMessageContext;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Enhanced WebSocket Handler with additional features
- * - Message history
+ * - Rooms (channels), each with its own members and history
+ * - Message history, persisted in a per-room append-only log
  * - Typing indicators
+ * - Shared whiteboard with persistent per-room canvas
  * - User activity tracking
  * - Message timestamps
  * 
@@ -24,60 +54,146 @@ public class WebSocketHandler {
     // Thread-safe map: WsContext -> Username
     private static final Map<WsContext, String> connectedUsers = new ConcurrentHashMap<>();
 
-    // Message history (limited to last 100 messages)
-    private static final List<Message> messageHistory = Collections.synchronizedList(new ArrayList<>());
-    private static final int MAX_HISTORY_SIZE = 100;
+    // Reverse index: Username -> WsContext (O(1) uniqueness check, reserved atomically)
+    private static final Map<String, WsContext> usernameIndex = new ConcurrentHashMap<>();
 
-    // Typing indicators: WsContext -> timestamp
-    private static final Map<WsContext, Long> typingUsers = new ConcurrentHashMap<>();
+    // All joined sessions; owns each connection's outbound queue (server-wide broadcasts)
+    private static final FanOutEngine fanOut = new FanOutEngine();
+
+    // Durable history: per-room segmented logs, flushed by group commit (-Dchatlog.enabled=false to disable)
+    private static final boolean CHATLOG_SYNC_WAIT = Boolean.getBoolean("chatlog.syncWait");
+    private static final ChatLog chatLog = Boolean.parseBoolean(System.getProperty("chatlog.enabled", "true"))
+            ? new ChatLog(Paths.get(System.getProperty("chatlog.dir", "data/chatlog")),
+                    Integer.getInteger("chatlog.segmentBytes", 8 * 1024 * 1024),
+                    Integer.getInteger("chatlog.indexIntervalBytes", 4096),
+                    Long.getLong("chatlog.fsyncMs", 20L),
+                    Integer.getInteger("chatlog.maxSegments", 16),
+                    TimeUnit.HOURS.toMillis(Long.getLong("chatlog.retentionHours", 0L)))
+            : null;
+
+    // Rooms, each with a lock-free history ring of pre-serialized frames (refilled from the chat log)
+    private static final int HISTORY_REPLAY_SIZE = Integer.getInteger("history.replaySize", 100);
+    private static final int HISTORY_PAGE_MAX = Integer.getInteger("history.pageMax", 200);
+    private static final int SEARCH_MAX = Integer.getInteger("search.maxResults", 100);
+    private static final RoomRegistry rooms = new RoomRegistry(
+            Integer.getInteger("rooms.max", 1000),
+            Integer.getInteger("history.capacity", 1000),
+            Integer.getInteger("history.batchMaxBytes", 64 * 1024),
+            chatLog);
+
+    // Full-text search over message text, indexed as messages are sent (-Dsearch.enabled=false to disable)
+    private static final SearchIndex searchIndex = Boolean.parseBoolean(System.getProperty("search.enabled", "true"))
+            ? new SearchIndex(Integer.getInteger("search.segmentDocs", 4096),
+                    Integer.getInteger("search.maxSegments", 8),
+                    Long.getLong("search.maxMB", 64L) * 1024 * 1024)
+            : null;
+
+    // Room memberships: WsContext -> rooms joined (in join order; first = default for the connection)
+    private static final Map<WsContext, Set<Room>> memberships = new ConcurrentHashMap<>();
+
+    // Timers for presence, typing and whiteboard batching (single daemon thread)
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // User list deltas are coalesced per room within this window
+    private static final long PRESENCE_DEBOUNCE_MS = Long.getLong("presence.debounceMs", 100L);
+
+    // Binary whiteboard strokes are relayed in one batch per room per tick
+    private static final long WHITEBOARD_TICK_MS = Long.getLong("whiteboard.tickMs", 16L);
+
+    // Typing indicators: one sweeper expires entries and sends the aggregated TYPING_USERS list
+    private static final long TYPING_SWEEP_MS = Long.getLong("typing.sweepMs", 500L);
+
+    // Types the server interprets: decoded while their header is scanned (the rest are relayed as received)
+    private static final Set<String> DECODED_TYPES = Set.of("JOIN", "MESSAGE");
+
+    // Fields of JSON drawData, read straight into a binary stroke
+    private static final String[] DRAW_FIELDS = { "points", "color", "lineWidth", "tool" };
+    private static final String[] POINT_FIELDS = { "x", "y" };
+
+    static {
+        scheduler.scheduleAtFixedRate(WebSocketHandler::sweepTyping,
+                TYPING_SWEEP_MS, TYPING_SWEEP_MS, TimeUnit.MILLISECONDS);
+    }
 
-    private static final Gson gson = new Gson();
     private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
 
     /**
-     * Called when a client connects
+     * Load persisted history before the first connection (opens the chat log and the default room)
+     */
+    public static void initialize() {
+        if (chatLog != null) {
+            System.out.println("Chat log: " + chatLog.getDirectory().toAbsolutePath() + " ("
+                    + getMessageHistorySize() + " messages restored)");
+        } else {
+            System.out.println("Chat log: disabled, history is kept in memory only");
+        }
+
+        // Make the restored history searchable (older messages stay reachable through GET /history)
+        if (searchIndex != null) {
+            for (Room room : rooms.all()) {
+                for (HistoryRing.Entry entry : room.history().snapshot()) {
+                    if ("MESSAGE".equals(entry.getType()))
+                        indexMessage(room, entry);
+                }
+            }
+            System.out.println("Search index: " + searchIndex.stats().get("indexed") + " messages indexed");
+        }
+    }
+
+    private static void indexMessage(Room room, HistoryRing.Entry entry) {
+        try {
+            String json = StandardCharsets.UTF_8.decode(entry.getFrame().get(WireFormat.JSON).duplicate()).toString();
+            Message msg = MessageCodec.decode(json);
+            if (msg.getPayload() != null)
+                searchIndex.add(room.getId(), entry.getSequence(), msg.getPayload().getText());
+        } catch (RuntimeException e) {
+            System.err.println("Room " + room.getId() + ": could not index #" + entry.getSequence() + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Called when a client connects; the wire format is negotiated here (see {@link WireFormat})
      */
     public static void onConnect(WsContext ctx) {
         String connectionId = UUID.randomUUID().toString();
+        WireFormat format = WireFormat.negotiate(ctx.queryParam("format"), ctx.header("Sec-WebSocket-Protocol"));
         ctx.attribute("connectionId", connectionId);
-        System.out.println("New connection: " + connectionId + " from " + ctx.session.getRemoteAddress());
+        ctx.attribute("wireFormat", format);
+        System.out.println("New connection: " + connectionId + " from " + ctx.session.getRemoteAddress()
+                + " (" + format + ")");
     }
 
     /**
-     * Called when a client sends a message
+     * Called when a client sends a text (JSON) message.
+     * One pass reads type and payload.room, and the full Message just for the types the server
+     * interprets (JOIN, MESSAGE); relayed types are forwarded as received.
      */
     public static void onMessage(WsMessageContext ctx) {
         try {
             String messageJson = ctx.message();
-            Message msg = gson.fromJson(messageJson, Message.class);
-
-            if (msg == null || msg.getType() == null) {
+            MessageCodec.Header header;
+            try {
+                header = MessageCodec.scanHeader(messageJson, DECODED_TYPES);
+            } catch (IllegalArgumentException e) {
                 sendError(ctx, "Invalid message format");
                 return;
             }
 
-            switch (msg.getType()) {
-                case "JOIN":
-                    handleJoin(ctx, msg);
-                    break;
-                case "MESSAGE":
-                    handleMessage(ctx, msg);
-                    break;
-                case "TYPING":
-                    handleTyping(ctx, msg);
-                    break;
-                case "STOP_TYPING":
-                    handleStopTyping(ctx);
-                    break;
-                case "WHITEBOARD_DRAW":
-                    handleWhiteboardDraw(ctx, msg);
-                    break;
-                case "WHITEBOARD_CLEAR":
-                    handleWhiteboardClear(ctx, msg);
-                    break;
-                default:
-                    sendError(ctx, "Unknown message type: " + msg.getType());
+            if (header.getType() == null) {
+                sendError(ctx, "Invalid message format");
+                return;
             }
+
+            Message scanned = header.getMessage();
+            dispatch(ctx, header.getType(), header.getRoom(),
+                    () -> scanned != null ? scanned : MessageCodec.decode(messageJson),
+                    () -> EncodedFrame.ofJson(header.getType(), header.getRoom(), messageJson),
+                    () -> encodeDrawData(header.getDrawData()));
         } catch (Exception e) {
             System.err.println("Error handling message: " + e.getMessage());
             e.printStackTrace();
@@ -86,34 +202,220 @@ public class WebSocketHandler {
     }
 
     /**
-     * Handle user joining the chat
+     * Called when a client sends a binary frame: whiteboard strokes (see {@link StrokeBatcher}),
+     * or messages from a MessagePack connection
      */
-    private static void handleJoin(WsContext ctx, Message msg) {
-        String username = msg.getPayload().getUsername();
-        if (username == null || username.isBlank()) {
-            sendError(ctx, "Username cannot be empty");
+    public static void onBinaryMessage(WsBinaryMessageContext ctx) {
+        try {
+            byte[] data = ctx.data();
+            int offset = ctx.offset();
+            int length = ctx.length();
+            if (length >= 2 && data[offset] == StrokeBatcher.KIND_STROKE) {
+                handleStroke(ctx, data, offset, length);
+                return;
+            }
+            if (!formatOf(ctx).isBinary()) {
+                sendError(ctx, "Invalid binary message");
+                return;
+            }
+
+            Message msg;
+            try {
+                msg = MsgPackCodec.decode(data, offset, length);
+            } catch (IllegalArgumentException e) {
+                sendError(ctx, "Invalid message format");
+                return;
+            }
+            if (msg.getType() == null) {
+                sendError(ctx, "Invalid message format");
+                return;
+            }
+
+            // Keep a copy of the original bytes for relaying (Jetty may reuse its buffer)
+            ByteBuffer raw = ByteBuffer.wrap(Arrays.copyOfRange(data, offset, offset + length)).asReadOnlyBuffer();
+            String roomId = msg.getPayload() != null ? msg.getPayload().getRoom() : null;
+            dispatch(ctx, msg.getType(), roomId, () -> msg,
+                    () -> EncodedFrame.ofEncoded(msg.getType(), roomId, WireFormat.MSGPACK, raw),
+                    () -> msg.getPayload() != null ? encodeDrawData(msg.getPayload().getDrawData()) : null);
+        } catch (Exception e) {
+            System.err.println("Error handling binary message: " + e.getMessage());
+            e.printStackTrace();
+            sendError(ctx, "Server error processing message");
+        }
+    }
+
+    /**
+     * Route an inbound message by type. {@code decoded} yields the full Message (only called for
+     * types the server interprets); {@code raw} yields the frame as received, for relaying;
+     * {@code stroke} yields a whiteboard draw as a binary stroke body (null if it is not usable).
+     */
+    private static void dispatch(WsContext ctx, String type, String roomId,
+            Supplier<Message> decoded, Supplier<EncodedFrame> raw, Supplier<byte[]> stroke) {
+        switch (type) {
+            case "JOIN":
+                handleJoin(ctx, decoded.get());
+                break;
+            case "LEAVE":
+                handleLeave(ctx, roomId);
+                break;
+            case "MESSAGE":
+                handleMessage(ctx, decoded.get());
+                break;
+            case "USER_LIST_REQUEST":
+                handleUserListRequest(ctx, roomId);
+                break;
+            case "TYPING":
+                handleTyping(ctx, roomId);
+                break;
+            case "STOP_TYPING":
+                handleStopTyping(ctx, roomId);
+                break;
+            case "WHITEBOARD_DRAW":
+                handleWhiteboardDraw(ctx, roomId, stroke, raw.get());
+                break;
+            case "WHITEBOARD_CLEAR":
+                handleWhiteboardClear(ctx, roomId, raw.get());
+                break;
+            case "WHITEBOARD_SYNC":
+                handleWhiteboardSync(ctx, roomId);
+                break;
+            default:
+                sendError(ctx, "Unknown message type: " + type);
+        }
+    }
+
+    /**
+     * Handle a binary whiteboard stroke
+     */
+    private static void handleStroke(WsContext ctx, byte[] data, int offset, int length) {
+        String username = connectedUsers.get(ctx);
+        if (username == null) {
+            sendError(ctx, "Please join the chat first");
             return;
         }
 
-        // Check if username is already taken
-        if (connectedUsers.containsValue(username)) {
-            sendError(ctx, "Username '" + username + "' is already taken");
+        int roomLength = data[offset + 1] & 0xFF;
+        int bodyOffset = offset + 2 + roomLength;
+        int bodyLength = length - 2 - roomLength;
+        if (bodyLength <= 0 || bodyLength > StrokeBatcher.MAX_STROKE_BYTES) {
+            sendError(ctx, "Invalid stroke size");
+            return;
+        }
+
+        String roomId = roomLength == 0 ? null
+                : new String(data, offset + 2, roomLength, StandardCharsets.UTF_8);
+        Room room = resolveRoom(ctx, roomId);
+        if (room == null) {
+            sendError(ctx, "You are not in room '" + roomId + "'");
+            return;
+        }
+
+        // Record the stroke on the room's canvas for late joiners
+        room.canvas().append(username, data, bodyOffset, bodyLength, System.currentTimeMillis());
+
+        // Batch the stroke; a batch that filled up is sent immediately
+        StrokeBatcher strokes = room.strokes();
+        ByteBuffer full = strokes.add(username, data, bodyOffset, bodyLength);
+        if (full != null)
+            room.members().broadcastBinary(StrokeBatcher.TYPE, full, null);
+        if (strokes.scheduleFlush())
+            scheduler.schedule(() -> flushStrokes(room), WHITEBOARD_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send the strokes collected during a room's whiteboard tick as one binary frame
+     * (including the senders; clients skip their own strokes)
+     */
+    private static void flushStrokes(Room room) {
+        try {
+            ByteBuffer batch = room.strokes().drain();
+            if (batch != null)
+                room.members().broadcastBinary(StrokeBatcher.TYPE, batch, null);
+        } catch (Exception e) {
+            System.err.println("Error flushing whiteboard strokes for room " + room.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle user joining the chat (and a room; a joined user may JOIN further rooms)
+     */
+    private static void handleJoin(WsContext ctx, Message msg) {
+        String roomId = RoomRegistry.normalize(msg.getPayload().getRoom());
+        if (roomId == null) {
+            sendError(ctx, "Invalid room name");
             return;
         }
 
-        // Register user
-        connectedUsers.put(ctx, username);
-        System.out.println(username + " joined the chat (Total users: " + connectedUsers.size() + ")");
+        String username = connectedUsers.get(ctx);
+        if (username == null) {
+            username = msg.getPayload().getUsername();
+            if (username == null || username.isBlank()) {
+                sendError(ctx, "Username cannot be empty");
+                return;
+            }
+
+            // Reserve the username; putIfAbsent makes check-and-claim a single atomic step
+            if (usernameIndex.putIfAbsent(username, ctx) != null) {
+                sendError(ctx, "Username '" + username + "' is already taken");
+                return;
+            }
+
+            // Register user
+            connectedUsers.put(ctx, username);
+            memberships.put(ctx, new CopyOnWriteArraySet<>());
+            System.out.println(username + " joined the chat (Total users: " + connectedUsers.size() + ")");
+        }
+
+        Room room = rooms.getOrCreate(roomId);
+        if (room == null) {
+            sendError(ctx, "Room limit reached, cannot create '" + roomId + "'");
+            return;
+        }
+        if (!room.join(ctx, fanOut.add(ctx, formatOf(ctx)), username)) {
+            sendError(ctx, "Already in room '" + roomId + "'");
+            return;
+        }
+        memberships.get(ctx).add(room);
 
-        // Send message history to the new user
-        sendMessageHistory(ctx);
+        // Send the room's message history, a full user list snapshot and the whiteboard to the new member
+        sendMessageHistory(ctx, room, msg.getPayload().getSince());
+        sendUserList(ctx, room);
+        sendCanvas(ctx, room);
 
-        // Broadcast user list update
-        broadcastUserList();
+        // Everyone else learns about the join through the next USER_JOINED delta
+        schedulePresenceFlush(room, room.presence().joined(username));
 
         // Broadcast join notification
-        Message joinMsg = createSystemMessage(username + " joined the chat");
-        broadcastAndSave(joinMsg, null);
+        Message joinMsg = createSystemMessage(room, username + " joined the chat");
+        broadcastAndSave(room, joinMsg, null);
+    }
+
+    /**
+     * Handle user leaving a room (the connection stays open)
+     */
+    private static void handleLeave(WsContext ctx, String roomId) {
+        String username = connectedUsers.get(ctx);
+        Room room = resolveRoom(ctx, roomId);
+        if (username == null || room == null)
+            return;
+
+        if (room.leave(ctx)) {
+            memberships.get(ctx).remove(room);
+            schedulePresenceFlush(room, room.presence().left(username));
+            broadcastAndSave(room, createSystemMessage(room, username + " left the chat"), null);
+        }
+    }
+
+    /**
+     * Handle a client asking for a full user list snapshot (e.g. after a version gap)
+     */
+    private static void handleUserListRequest(WsContext ctx, String roomId) {
+        Room room = resolveRoom(ctx, roomId);
+        if (room == null) {
+            sendError(ctx, "Please join the chat first");
+            return;
+        }
+        sendUserList(ctx, room);
     }
 
     /**
@@ -126,77 +428,291 @@ public class WebSocketHandler {
             return;
         }
 
+        Room room = resolveRoom(ctx, msg);
+        if (room == null) {
+            sendError(ctx, "You are not in room '" + msg.getPayload().getRoom() + "'");
+            return;
+        }
+
         String text = msg.getPayload().getText();
         if (text == null || text.isBlank()) {
             return; // Ignore empty messages
         }
 
         // Create message with timestamp
-        Message broadcastMsg = new Message("MESSAGE",
-                new Message.Payload(username, text));
+        Message.Payload payload = new Message.Payload(username, text);
+        payload.setRoom(room.getId());
+        Message broadcastMsg = new Message("MESSAGE", payload);
         broadcastMsg.setTimestamp(LocalDateTime.now().format(timeFormatter));
 
-        broadcastAndSave(broadcastMsg, null);
+        broadcastAndSave(room, broadcastMsg, null);
+
+        if (searchIndex != null)
+            searchIndex.add(room.getId(), broadcastMsg.getSequence(), text);
     }
 
     /**
-     * Handle typing indicator
+     * Handle typing indicator (recorded only; the sweeper announces typers in aggregate)
      */
-    private static void handleTyping(WsContext ctx, Message msg) {
+    private static void handleTyping(WsContext ctx, String roomId) {
         String username = connectedUsers.get(ctx);
-        if (username == null)
+        Room room = resolveRoom(ctx, roomId);
+        if (username == null || room == null)
             return;
 
-        typingUsers.put(ctx, System.currentTimeMillis());
-
-        // Broadcast typing indicator
-        Message typingMsg = new Message("TYPING",
-                new Message.Payload(username, null));
-        broadcast(gson.toJson(typingMsg), ctx);
+        room.typing().typing(username, System.currentTimeMillis());
     }
 
     /**
      * Handle stop typing indicator
      */
-    private static void handleStopTyping(WsContext ctx) {
+    private static void handleStopTyping(WsContext ctx, String roomId) {
         String username = connectedUsers.get(ctx);
-        if (username == null)
+        Room room = resolveRoom(ctx, roomId);
+        if (username == null || room == null)
             return;
 
-        typingUsers.remove(ctx);
+        // Broadcast stop typing indicator (only if the user was actually typing)
+        if (room.typing().stop(username))
+            broadcastStopTyping(room, username, ctx);
+    }
 
-        // Broadcast stop typing indicator
-        Message stopTypingMsg = new Message("STOP_TYPING",
-                new Message.Payload(username, null));
-        broadcast(gson.toJson(stopTypingMsg), ctx);
+    /**
+     * Broadcast that a user stopped typing
+     */
+    private static void broadcastStopTyping(Room room, String username, WsContext exclude) {
+        Message.Payload payload = new Message.Payload(username, null);
+        payload.setRoom(room.getId());
+        broadcast(room, new Message("STOP_TYPING", payload), exclude);
     }
 
     /**
-     * Handle whiteboard drawing data
+     * Periodic typing sweep over all rooms: STOP_TYPING for expired entries and
+     * one aggregated TYPING_USERS frame per room whose typers changed
      */
-    private static void handleWhiteboardDraw(WsMessageContext ctx, Message msg) {
+    private static void sweepTyping() {
+        long now = System.currentTimeMillis();
+        for (Room room : rooms.all()) {
+            try {
+                TypingTracker.Sweep sweep = room.typing().sweep(now);
+                if (sweep == null)
+                    continue;
+
+                for (String username : sweep.getExpired()) {
+                    broadcastStopTyping(room, username, null);
+                }
+                if (sweep.getTyping() != null) {
+                    Message.Payload payload = new Message.Payload();
+                    payload.setRoom(room.getId());
+                    payload.setUsers(sweep.getTyping().toArray(new String[0]));
+                    broadcast(room, new Message("TYPING_USERS", payload), null);
+                }
+            } catch (Exception e) {
+                System.err.println("Error sweeping typing indicators for room " + room.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Handle whiteboard drawing data (relayed as received)
+     */
+    private static void handleWhiteboardDraw(WsContext ctx, String roomId, Supplier<byte[]> stroke,
+            EncodedFrame raw) {
         String username = connectedUsers.get(ctx);
         if (username == null) {
             sendError(ctx, "Please join the chat first");
             return;
         }
 
-        // Broadcast drawing data to all other clients
-        broadcast(gson.toJson(msg), ctx);
+        Room room = resolveRoom(ctx, roomId);
+        if (room == null) {
+            sendError(ctx, "You are not in room '" + roomId + "'");
+            return;
+        }
+
+        // Forward the original frame to all other clients in the room
+        room.members().broadcast(raw, ctx);
+
+        // Then record the stroke on the room's canvas (stored in the binary stroke format)
+        byte[] body = stroke.get();
+        if (body != null)
+            room.canvas().append(username, body, 0, body.length, System.currentTimeMillis());
+    }
+
+    /**
+     * Convert the JSON text of drawData to a binary stroke body, reading points straight into
+     * coordinate arrays (no maps or boxed numbers); same rules as {@link #encodeDrawData(Object)}
+     *
+     * @param json drawData as received (already validated by the header scan), or null
+     * @return The body, or null if the data is not a usable stroke
+     */
+    private static byte[] encodeDrawData(String json) {
+        if (json == null)
+            return null;
+        JsonReader reader = new JsonReader(json);
+        if (reader.peek() != '{')
+            return null;
+
+        double[] xs = null;
+        double[] ys = null;
+        int count = 0;
+        int rgb = 0;
+        int lineWidth = 1;
+        boolean eraser = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(DRAW_FIELDS)) {
+                case 0: // points
+                    if (reader.peek() != '[')
+                        return null;
+                    xs = new double[64];
+                    ys = new double[64];
+                    count = 0;
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() != '{')
+                            return null;
+                        double x = Double.NaN;
+                        double y = Double.NaN;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            int field = reader.nextName(POINT_FIELDS);
+                            if (field < 0) {
+                                reader.skipValue();
+                            } else if (!isNumber(reader.peek())) {
+                                return null;
+                            } else if (field == 0) {
+                                x = reader.nextDouble();
+                            } else {
+                                y = reader.nextDouble();
+                            }
+                        }
+                        if (Double.isNaN(x) || Double.isNaN(y))
+                            return null;
+                        if (count == xs.length) {
+                            xs = Arrays.copyOf(xs, count * 2);
+                            ys = Arrays.copyOf(ys, count * 2);
+                        }
+                        xs[count] = x;
+                        ys[count] = y;
+                        count++;
+                    }
+                    break;
+                case 1: // color
+                    rgb = 0;
+                    if (reader.peek() == '"') {
+                        String color = reader.nextString();
+                        if (color.matches("#[0-9a-fA-F]{6}"))
+                            rgb = Integer.parseInt(color.substring(1), 16);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case 2: // lineWidth
+                    if (isNumber(reader.peek())) {
+                        lineWidth = (int) reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                        lineWidth = 1;
+                    }
+                    break;
+                case 3: // tool
+                    if (reader.peek() == '"') {
+                        eraser = "eraser".equals(reader.nextString());
+                    } else {
+                        reader.skipValue();
+                        eraser = false;
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        if (xs == null)
+            return null;
+        return StrokeBatcher.encodeBody(eraser, lineWidth, rgb, Arrays.copyOf(xs, count), Arrays.copyOf(ys, count));
+    }
+
+    private static boolean isNumber(int c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Convert decoded drawData ({points: [{x, y}], color: "#rrggbb", lineWidth, tool}) to a binary
+     * stroke body (MessagePack connections)
+     *
+     * @return The body, or null if the data is not a usable stroke
+     */
+    private static byte[] encodeDrawData(Object drawData) {
+        if (!(drawData instanceof Map) || !(((Map<?, ?>) drawData).get("points") instanceof List))
+            return null;
+
+        Map<?, ?> data = (Map<?, ?>) drawData;
+        List<?> points = (List<?>) data.get("points");
+        double[] xs = new double[points.size()];
+        double[] ys = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            if (!(points.get(i) instanceof Map))
+                return null;
+            Map<?, ?> point = (Map<?, ?>) points.get(i);
+            if (!(point.get("x") instanceof Number) || !(point.get("y") instanceof Number))
+                return null;
+            xs[i] = ((Number) point.get("x")).doubleValue();
+            ys[i] = ((Number) point.get("y")).doubleValue();
+        }
+
+        int rgb = 0;
+        Object color = data.get("color");
+        if (color instanceof String && ((String) color).matches("#[0-9a-fA-F]{6}"))
+            rgb = Integer.parseInt(((String) color).substring(1), 16);
+        int lineWidth = data.get("lineWidth") instanceof Number ? ((Number) data.get("lineWidth")).intValue() : 1;
+
+        return StrokeBatcher.encodeBody("eraser".equals(data.get("tool")), lineWidth, rgb, xs, ys);
     }
 
     /**
      * Handle whiteboard clear request
      */
-    private static void handleWhiteboardClear(WsMessageContext ctx, Message msg) {
+    private static void handleWhiteboardClear(WsContext ctx, String roomId, EncodedFrame raw) {
         String username = connectedUsers.get(ctx);
         if (username == null) {
             sendError(ctx, "Please join the chat first");
             return;
         }
 
-        // Broadcast clear command to all clients
-        broadcast(gson.toJson(msg), null); // Include the sender
+        Room room = resolveRoom(ctx, roomId);
+        if (room == null) {
+            sendError(ctx, "You are not in room '" + roomId + "'");
+            return;
+        }
+
+        // Deliver strokes drawn before the clear first, then truncate the canvas
+        flushStrokes(room);
+        room.canvas().clear();
+
+        // Forward the clear command to all clients in the room
+        room.members().broadcast(raw, null); // Include the sender
+    }
+
+    /**
+     * Handle a client asking for the room's whiteboard (e.g. when it opens the board)
+     */
+    private static void handleWhiteboardSync(WsContext ctx, String roomId) {
+        Room room = resolveRoom(ctx, roomId);
+        if (room == null) {
+            sendError(ctx, "Please join the chat first");
+            return;
+        }
+        sendCanvas(ctx, room);
+    }
+
+    /**
+     * Send a room's whiteboard (compacted snapshot + tail ops) to a single client as one binary frame
+     */
+    private static void sendCanvas(WsContext ctx, Room room) {
+        ByteBuffer frame = room.canvas().encode();
+        if (frame != null)
+            fanOut.send(ctx, Canvas.TYPE, frame, true);
     }
 
     /**
@@ -204,93 +720,174 @@ public class WebSocketHandler {
      */
     public static void onClose(WsContext ctx) {
         String username = connectedUsers.remove(ctx);
-        typingUsers.remove(ctx);
+        if (username != null)
+            usernameIndex.remove(username, ctx);
+        Set<Room> joined = memberships.remove(ctx);
+        OutboundQueue queue = fanOut.remove(ctx);
+        if (queue != null)
+            queue.close();
 
         if (username != null) {
             System.out.println(username + " left the chat (Remaining: " + connectedUsers.size() + ")");
 
-            // Broadcast user list update
-            broadcastUserList();
+            for (Room room : joined != null ? joined : Collections.<Room>emptySet()) {
+                room.leave(ctx);
+                if (room.typing().stop(username))
+                    broadcastStopTyping(room, username, ctx);
 
-            // Broadcast leave notification
-            Message leaveMsg = createSystemMessage(username + " left the chat");
-            broadcastAndSave(leaveMsg, ctx);
+                // Queue a USER_LEFT delta
+                schedulePresenceFlush(room, room.presence().left(username));
+
+                // Broadcast leave notification
+                Message leaveMsg = createSystemMessage(room, username + " left the chat");
+                broadcastAndSave(room, leaveMsg, ctx);
+            }
         }
     }
 
     /**
-     * Broadcast message to all connected clients and save to history
+     * Resolve the room a message targets: payload.room if given, otherwise the
+     * first room the connection joined
+     *
+     * @return The room, or null if the connection is not a member of it
      */
-    private static void broadcastAndSave(Message message, WsContext exclude) {
-        // Save to history
-        saveToHistory(message);
+    private static Room resolveRoom(WsContext ctx, Message msg) {
+        return resolveRoom(ctx, msg.getPayload() != null ? msg.getPayload().getRoom() : null);
+    }
+
+    private static Room resolveRoom(WsContext ctx, String roomId) {
+        Set<Room> joined = memberships.get(ctx);
+        if (joined == null)
+            return null;
+
+        if (roomId == null) {
+            Iterator<Room> it = joined.iterator();
+            return it.hasNext() ? it.next() : null;
+        }
 
-        // Broadcast to all clients
-        broadcast(gson.toJson(message), exclude);
+        Room room = rooms.get(roomId);
+        return room != null && room.isMember(ctx) ? room : null;
     }
 
     /**
-     * Broadcast message to all connected clients
+     * Broadcast message to a room's members and save to the room's history
      */
-    public static void broadcast(String message, WsContext exclude) {
-        List<WsContext> clients = new ArrayList<>(connectedUsers.keySet());
-        for (WsContext client : clients) {
+    private static void broadcastAndSave(Room room, Message message, WsContext exclude) {
+        // Save to history; serialized and encoded once with its sequence number.
+        // The durable log is appended under the ring's lock, so both see the same order.
+        RoomLog log = room.log();
+        HistoryRing.Entry entry = room.history().append(message.getType(), sequence -> {
+            message.setSequence(sequence);
+            EncodedFrame frame = EncodedFrame.of(message);
+            ByteBuffer json = frame.get(WireFormat.JSON); // stored pre-serialized; other formats are encoded on first use
+            if (log != null)
+                log.append(sequence, json.duplicate());
+            return frame;
+        });
+
+        // Optionally hold the broadcast until the next group commit has made the message durable
+        if (CHATLOG_SYNC_WAIT && log != null) {
             try {
-                if (client != exclude && client.session.isOpen()) {
-                    client.send(message);
-                }
-            } catch (Exception e) {
-                System.err.println("Error sending to client: " + e.getMessage());
+                if (!log.awaitDurable(entry.getSequence(), 1000))
+                    System.err.println("Chat log " + room.getId() + ": #" + entry.getSequence() + " not yet durable");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
+
+        // Broadcast the same frame to the room
+        room.members().broadcast(entry.getFrame(), exclude);
     }
 
     /**
-     * Broadcast updated user list
+     * Broadcast message to all connected clients in every room (encoded once, sent asynchronously)
      */
-    private static void broadcastUserList() {
-        List<String> usernames = new ArrayList<>(connectedUsers.values());
+    public static void broadcast(String message, WsContext exclude) {
+        fanOut.broadcast(EncodedFrame.ofJson(null, message), exclude);
+    }
 
-        Message.Payload payload = new Message.Payload();
-        payload.setUsers(usernames.toArray(new String[0]));
+    /**
+     * Broadcast a message to all connected clients in every room (encoded once, sent asynchronously)
+     */
+    public static void broadcast(Message message, WsContext exclude) {
+        fanOut.broadcast(EncodedFrame.of(message), exclude);
+    }
 
-        Message userListMsg = new Message("USER_LIST_UPDATE", payload);
-        broadcast(gson.toJson(userListMsg), null);
+    /**
+     * Broadcast a message to a room; its type selects the slow-consumer policy of each client queue
+     */
+    private static void broadcast(Room room, Message message, WsContext exclude) {
+        room.members().broadcast(EncodedFrame.of(message), exclude);
     }
 
     /**
-     * Send message history to a specific client
+     * Send a room's full, versioned user list to a single client
      */
-    private static void sendMessageHistory(WsContext ctx) {
-        synchronized (messageHistory) {
-            for (Message msg : messageHistory) {
-                try {
-                    ctx.send(gson.toJson(msg));
-                } catch (Exception e) {
-                    System.err.println("Error sending history: " + e.getMessage());
-                }
+    private static void sendUserList(WsContext ctx, Room room) {
+        Message userListMsg = room.presence().snapshot(room.usernames());
+        fanOut.send(ctx, EncodedFrame.of(userListMsg));
+    }
+
+    /**
+     * Schedule the end of a room's presence debounce window (if this change opened it)
+     */
+    private static void schedulePresenceFlush(Room room, boolean windowOpened) {
+        if (windowOpened)
+            scheduler.schedule(() -> flushPresence(room), PRESENCE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Broadcast the USER_JOINED / USER_LEFT deltas collected in a room's debounce window
+     */
+    private static void flushPresence(Room room) {
+        try {
+            for (Message delta : room.presence().drain()) {
+                broadcast(room, delta, null);
             }
+        } catch (Exception e) {
+            System.err.println("Error flushing user list for room " + room.getId() + ": " + e.getMessage());
         }
     }
 
     /**
-     * Save message to history with size limit
+     * Send message history to a specific client (lock-free snapshot, pre-encoded frames).
+     * Clients that send "since" in JOIN get HISTORY_BATCH frames with only the gap
+     * after that sequence; others get the legacy one-frame-per-message replay.
+     * Anything older than the replay window is paged through GET /history.
      */
-    private static void saveToHistory(Message message) {
-        synchronized (messageHistory) {
-            messageHistory.add(message);
-            // Keep only last MAX_HISTORY_SIZE messages
-            while (messageHistory.size() > MAX_HISTORY_SIZE) {
-                messageHistory.remove(0);
+    private static void sendMessageHistory(WsContext ctx, Room room, Long since) {
+        long recent = Math.max(0, room.history().lastSequence() - HISTORY_REPLAY_SIZE);
+
+        if (since == null) {
+            for (HistoryRing.Entry entry : room.history().snapshotSince(recent)) {
+                fanOut.send(ctx, entry.getFrame());
             }
+            return;
         }
+
+        // since <= 0 means "no history yet": start from the recent window
+        long after = since > 0 ? since : recent;
+        WireFormat format = formatOf(ctx);
+        for (ByteBuffer frame : room.replay().framesSince(after, format)) {
+            fanOut.send(ctx, HistoryReplay.TYPE, frame, format.isBinary());
+        }
+    }
+
+    /**
+     * Wire format negotiated by a connection
+     */
+    private static WireFormat formatOf(WsContext ctx) {
+        WireFormat format = ctx.attribute("wireFormat");
+        return format != null ? format : WireFormat.JSON;
     }
 
     /**
      * Create a system message
      */
-    private static Message createSystemMessage(String text) {
-        Message msg = new Message("SYSTEM", new Message.Payload(null, text));
+    private static Message createSystemMessage(Room room, String text) {
+        Message.Payload payload = new Message.Payload(null, text);
+        payload.setRoom(room.getId());
+        Message msg = new Message("SYSTEM", payload);
         msg.setTimestamp(LocalDateTime.now().format(timeFormatter));
         return msg;
     }
@@ -301,7 +898,11 @@ public class WebSocketHandler {
     private static void sendError(WsContext ctx, String errorText) {
         try {
             Message errorMsg = new Message("ERROR", new Message.Payload(null, errorText));
-            ctx.send(gson.toJson(errorMsg));
+            if (formatOf(ctx).isBinary()) {
+                ctx.send(MsgPackCodec.encode(errorMsg));
+            } else {
+                ctx.send(MessageCodec.encodeToString(errorMsg));
+            }
         } catch (Exception e) {
             System.err.println("Error sending error message: " + e.getMessage());
         }
@@ -323,9 +924,107 @@ public class WebSocketHandler {
     }
 
     /**
-     * Get message history size (for monitoring)
+     * A page of a room's history for scroll-back (GET /history); the limit is capped by -Dhistory.pageMax
+     *
+     * @param before Exclusive upper bound on sequence numbers, or null for the latest page
+     * @return The page, or null if the room does not exist
+     */
+    public static HistoryPages.Page getHistoryPage(String roomId, Long before, int limit) throws IOException {
+        Room room = rooms.getWithHistory(roomId);
+        if (room == null)
+            return null;
+        return room.pages().page(before, Math.max(1, Math.min(limit, HISTORY_PAGE_MAX)));
+    }
+
+    /**
+     * Full-text search (GET /search): messages containing every term of the query, newest first.
+     * Matches are looked up in their room's history, so the body reuses the stored JSON frames.
+     *
+     * @param roomId Only search this room, or null for all rooms
+     * @return JSON body {"count":N,"results":[...]}
+     */
+    public static byte[] search(String query, String roomId, int limit) throws IOException {
+        ByteArrayOutputStream results = new ByteArrayOutputStream();
+        int count = 0;
+        if (searchIndex != null) {
+            for (SearchIndex.Hit hit : searchIndex.search(query, roomId, Math.max(1, Math.min(limit, SEARCH_MAX)))) {
+                Room room = rooms.get(hit.getRoom());
+                ByteBuffer json = room != null ? room.pages().message(hit.getSequence()) : null;
+                if (json == null)
+                    continue; // removed by retention
+                if (count++ > 0)
+                    results.write(',');
+                byte[] bytes = new byte[json.remaining()];
+                json.get(bytes);
+                results.write(bytes);
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(results.size() + 32);
+        body.write(("{\"count\":" + count + ",\"results\":[").getBytes(StandardCharsets.UTF_8));
+        results.writeTo(body);
+        body.write(']');
+        body.write('}');
+        return body.toByteArray();
+    }
+
+    /**
+     * Search index statistics (for monitoring)
+     */
+    public static Map<String, Object> getSearchStats() {
+        return searchIndex != null ? searchIndex.stats() : Map.of("enabled", false);
+    }
+
+    /**
+     * Get message history size across all rooms (for monitoring)
      */
     public static int getMessageHistorySize() {
-        return messageHistory.size();
+        int size = 0;
+        for (Room room : rooms.all()) {
+            size += room.history().size();
+        }
+        return size;
+    }
+
+    /**
+     * Get per-room member and history counts (for monitoring)
+     */
+    public static Map<String, Map<String, Object>> getRoomStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        for (Room room : rooms.all()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("members", room.size());
+            entry.put("messageHistory", room.history().size());
+            entry.put("lastSequence", room.history().lastSequence());
+            entry.put("canvasStrokes", room.canvas().strokeCount());
+            entry.put("canvasBytes", room.canvas().sizeBytes());
+            entry.put("canvasCompactions", room.canvas().compactionCount());
+            entry.put("canvasTrimmed", room.canvas().trimmedCount());
+            if (room.log() != null) {
+                entry.put("logSegments", room.log().segmentCount());
+                entry.put("logFirstSequence", room.log().firstSequence());
+                entry.put("logDurableSequence", room.log().durableSequence());
+            }
+            stats.put(room.getId(), entry);
+        }
+        return stats;
+    }
+
+    /**
+     * Get per-client outbound queue depth and drop counters (for monitoring)
+     */
+    public static List<Map<String, Object>> getOutboundQueueStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (OutboundQueue queue : fanOut.queues()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("username", connectedUsers.getOrDefault(queue.context(), "?"));
+            entry.put("depth", queue.depth());
+            entry.put("pendingBytes", queue.pendingBytes());
+            entry.put("sent", queue.sentCount());
+            entry.put("dropped", queue.droppedCount());
+            entry.put("coalesced", queue.coalescedCount());
+            stats.add(entry);
+        }
+        return stats;
     }
 }
@@ -0,0 +1,219 @@
+package com.Itfac.TestNGLab.chat.broadcast;
+
+import com.Itfac.TestNGLab.chat.codec.EncodedFrame;
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+import com.Itfac.TestNGLab.chat.compression.FrameDeflater;
+import com.Itfac.TestNGLab.chat.compression.SharedDeflateExtension;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialize-once fan-out engine for WebSocket broadcasts.
+ * - Copy-on-write snapshot of live sessions (rebuilt only on join/leave)
+ * - Each outbound message is encoded once per wire format in use into a shared buffer
+ *   (and deflated at most once for clients using permessage-deflate)
+ * - Frames go through a bounded per-client {@link OutboundQueue} drained by
+ *   Jetty's async send, so a slow client never blocks the calling thread,
+ *   the recipients behind it, or the heap
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class FanOutEngine {
+    private static final OutboundQueue[] EMPTY = new OutboundQueue[0];
+
+    // Immutable snapshot of recipients; replaced wholesale on every join/leave
+    private volatile OutboundQueue[] queues = EMPTY;
+
+    // Session -> queue, for messages addressed to a single client
+    private final Map<Session, OutboundQueue> bySession = new ConcurrentHashMap<>();
+
+    /**
+     * Add a session to the recipient snapshot, creating its outbound queue
+     *
+     * @return The session's queue (existing one if already added)
+     */
+    public synchronized OutboundQueue add(WsContext ctx, WireFormat format) {
+        OutboundQueue existing = bySession.get(ctx.session);
+        if (existing != null)
+            return existing;
+        OutboundQueue queue = new OutboundQueue(ctx, format);
+        add(queue);
+        return queue;
+    }
+
+    /**
+     * Add an existing queue (owned by another engine) to the recipient snapshot
+     */
+    public synchronized void add(OutboundQueue queue) {
+        if (bySession.putIfAbsent(queue.context().session, queue) != null)
+            return;
+        OutboundQueue[] next = Arrays.copyOf(queues, queues.length + 1);
+        next[queues.length] = queue;
+        queues = next;
+    }
+
+    /**
+     * Remove a session from the recipient snapshot. The queue is not closed;
+     * whoever created it with {@link #add(WsContext, WireFormat)} decides when it is released.
+     *
+     * @return The removed queue, or null if the session was not present
+     */
+    public synchronized OutboundQueue remove(WsContext ctx) {
+        int index = indexOf(queues, ctx.session);
+        if (index < 0)
+            return null;
+        OutboundQueue removed = queues[index];
+        bySession.remove(ctx.session);
+        OutboundQueue[] next = new OutboundQueue[queues.length - 1];
+        System.arraycopy(queues, 0, next, 0, index);
+        System.arraycopy(queues, index + 1, next, index, next.length - index);
+        queues = next;
+        return removed;
+    }
+
+    /**
+     * Current number of recipients
+     */
+    public int size() {
+        return queues.length;
+    }
+
+    /**
+     * Snapshot of per-client outbound queues (for monitoring)
+     */
+    public OutboundQueue[] queues() {
+        return queues;
+    }
+
+    /**
+     * Broadcast a message to every session except {@code exclude}, in each client's wire format.
+     * The frame is queued per client; its type selects the slow-consumer policy.
+     */
+    public void broadcast(EncodedFrame frame, WsContext exclude) {
+        OutboundQueue[] snapshot = queues;
+        Session excluded = exclude != null ? exclude.session : null;
+
+        for (OutboundQueue queue : snapshot) {
+            Session session = queue.context().session;
+            if (session == excluded || !session.isOpen())
+                continue;
+            WireFormat format = queue.format();
+            queue.offer(frame.getType(), frame.getRoom(), frame.get(format), format.isBinary());
+        }
+    }
+
+    /**
+     * Broadcast a binary frame to every session except {@code exclude}
+     */
+    public void broadcastBinary(String type, ByteBuffer data, WsContext exclude) {
+        OutboundQueue[] snapshot = queues;
+        Session excluded = exclude != null ? exclude.session : null;
+
+        for (OutboundQueue queue : snapshot) {
+            Session session = queue.context().session;
+            if (session == excluded || !session.isOpen())
+                continue;
+            queue.offer(type, data, true);
+        }
+    }
+
+    /**
+     * Queue a message for a single client in its wire format, behind anything already queued for it
+     *
+     * @return false if the client is not registered with the engine
+     */
+    public boolean send(WsContext ctx, EncodedFrame frame) {
+        OutboundQueue queue = bySession.get(ctx.session);
+        if (queue == null)
+            return false;
+        WireFormat format = queue.format();
+        queue.offer(frame.getType(), frame.getRoom(), frame.get(format), format.isBinary());
+        return true;
+    }
+
+    /**
+     * Queue a pre-encoded text or binary frame for a single client
+     *
+     * @return false if the client is not registered with the engine
+     */
+    public boolean send(WsContext ctx, String type, ByteBuffer payload, boolean binary) {
+        OutboundQueue queue = bySession.get(ctx.session);
+        if (queue == null)
+            return false;
+        queue.offer(type, payload, binary);
+        return true;
+    }
+
+    /**
+     * Send a pre-encoded text (UTF-8) or binary frame to a single client without blocking
+     * and run {@code onComplete} once Jetty has written (or failed to write) it.
+     * Each recipient gets its own view of the shared buffer, so positions never interfere.
+     * On connections that negotiated permessage-deflate, the shared buffer is compressed
+     * once and the compressed bytes are reused for every such recipient.
+     */
+    public static void sendFrame(WsContext client, ByteBuffer payload, boolean binary, Runnable onComplete) {
+        Session session = client.session;
+        try {
+            if (session instanceof WebSocketSession) {
+                CoreSession coreSession = ((WebSocketSession) session).getCoreSession();
+                byte opCode = binary ? OpCode.BINARY : OpCode.TEXT;
+                Frame frame;
+                if (SharedDeflateExtension.isActive(coreSession)) {
+                    // Decided once per shared buffer: the extension does not try again per recipient
+                    ByteBuffer deflated = FrameDeflater.compressShared(payload);
+                    frame = SharedDeflateExtension.sharedFrame(opCode,
+                            deflated != null ? deflated.slice() : payload.slice(), deflated != null);
+                } else {
+                    frame = new Frame(opCode, payload.slice());
+                }
+                coreSession.sendFrame(frame, Callback.from(onComplete, error -> {
+                    System.err.println("Error sending to client: " + error.getMessage());
+                    onComplete.run();
+                }), false);
+            } else {
+                // Fallback for non-Jetty sessions: let the endpoint re-encode the text
+                WriteCallback callback = new WriteCallback() {
+                    @Override
+                    public void writeFailed(Throwable error) {
+                        System.err.println("Error sending to client: " + error.getMessage());
+                        onComplete.run();
+                    }
+
+                    @Override
+                    public void writeSuccess() {
+                        onComplete.run();
+                    }
+                };
+                if (binary) {
+                    session.getRemote().sendBytes(payload.slice(), callback);
+                } else {
+                    session.getRemote().sendString(StandardCharsets.UTF_8.decode(payload.slice()).toString(), callback);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error sending to client: " + e.getMessage());
+            onComplete.run();
+        }
+    }
+
+    private static int indexOf(OutboundQueue[] snapshot, Session session) {
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i].context().session == session)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,251 @@
+package com.Itfac.TestNGLab.chat.broadcast;
+
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.StatusCode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * Bounded outbound queue for a single WebSocket connection.
+ * - At most one frame is handed to Jetty at a time; the rest wait here
+ * - Over the high-water mark, each message type follows its {@link SlowConsumerPolicy}
+ * - A client that stays over the limit too long (or hits the hard cap) is disconnected
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class OutboundQueue {
+    // Configuration (frames / seconds)
+    static final int HIGH_WATER_MARK = Integer.getInteger("outbound.highWaterMark", 256);
+    static final int HARD_LIMIT = Integer.getInteger("outbound.hardLimit", HIGH_WATER_MARK * 4);
+    static final long DISCONNECT_AFTER_MS = Long.getLong("outbound.disconnectAfterSeconds", 10L) * 1000L;
+
+    private static final class Pending {
+        final String type;
+        final String room;
+        final ByteBuffer payload;
+        final boolean binary;
+
+        Pending(String type, String room, ByteBuffer payload, boolean binary) {
+            this.type = type;
+            this.room = room;
+            this.payload = payload;
+            this.binary = binary;
+        }
+    }
+
+    private final WsContext ctx;
+    private final WireFormat format;
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    private boolean inFlight;
+    private boolean flushing;
+    private boolean closed;
+    private long overLimitSince; // 0 = under the high-water mark
+
+    // Counters (exposed on /stats)
+    private long sent;
+    private long dropped;
+    private long coalesced;
+
+    public OutboundQueue(WsContext ctx, WireFormat format) {
+        this.ctx = ctx;
+        this.format = format;
+    }
+
+    public WsContext context() {
+        return ctx;
+    }
+
+    /**
+     * Wire format negotiated by this connection
+     */
+    public WireFormat format() {
+        return format;
+    }
+
+    /**
+     * Queue a pre-encoded text frame and start draining if the writer is idle
+     */
+    public void offer(String type, ByteBuffer utf8) {
+        offer(type, utf8, false);
+    }
+
+    /**
+     * Queue a pre-encoded text or binary frame and start draining if the writer is idle
+     */
+    public void offer(String type, ByteBuffer payload, boolean binary) {
+        offer(type, null, payload, binary);
+    }
+
+    /**
+     * Queue a frame addressed to a room: a coalesced type only replaces a queued frame of the
+     * same type for the same room (one connection's queue serves every room it joined)
+     */
+    public void offer(String type, String room, ByteBuffer payload, boolean binary) {
+        SlowConsumerPolicy policy = SlowConsumerPolicy.forType(type);
+        boolean disconnect = false;
+
+        synchronized (this) {
+            if (closed)
+                return;
+
+            if (policy == SlowConsumerPolicy.COALESCE && removeQueued(type, room)) {
+                coalesced++;
+            }
+
+            if (pending.size() >= HIGH_WATER_MARK && policy == SlowConsumerPolicy.DROP_OLDEST) {
+                // Make room by dropping the oldest transient frame; if none is queued, drop this one
+                if (!removeQueued(null, null)) {
+                    dropped++;
+                    return;
+                }
+                dropped++;
+            }
+
+            pending.add(new Pending(type, room, payload, binary));
+            pendingBytes += payload.remaining();
+            disconnect = checkLimit(System.currentTimeMillis());
+        }
+
+        if (disconnect) {
+            disconnect();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Hand queued frames to Jetty one at a time. Completions that fire inline on
+     * this thread just clear {@code inFlight}, so the loop never recurses.
+     */
+    private void flush() {
+        synchronized (this) {
+            if (flushing)
+                return;
+            flushing = true;
+        }
+
+        while (true) {
+            Pending next;
+            synchronized (this) {
+                if (closed || inFlight || pending.isEmpty()) {
+                    flushing = false;
+                    return;
+                }
+                next = pending.poll();
+                pendingBytes -= next.payload.remaining();
+                inFlight = true;
+                if (pending.size() < HIGH_WATER_MARK)
+                    overLimitSince = 0;
+            }
+            FanOutEngine.sendFrame(ctx, next.payload, next.binary, this::onWriteComplete);
+        }
+    }
+
+    private void onWriteComplete() {
+        synchronized (this) {
+            inFlight = false;
+            sent++;
+            if (flushing)
+                return;
+        }
+        flush();
+    }
+
+    /**
+     * Remove the oldest queued frame matching {@code type} and {@code room}, or the oldest
+     * droppable frame if {@code type} is null
+     */
+    private boolean removeQueued(String type, String room) {
+        Iterator<Pending> it = pending.iterator();
+        while (it.hasNext()) {
+            Pending p = it.next();
+            boolean match = type == null
+                    ? SlowConsumerPolicy.forType(p.type) == SlowConsumerPolicy.DROP_OLDEST
+                    : type.equals(p.type) && Objects.equals(room, p.room);
+            if (match) {
+                it.remove();
+                pendingBytes -= p.payload.remaining();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Track how long the queue has been over the high-water mark
+     *
+     * @return true if the client should be disconnected
+     */
+    private boolean checkLimit(long now) {
+        if (pending.size() >= HARD_LIMIT)
+            return true;
+        if (pending.size() < HIGH_WATER_MARK) {
+            overLimitSince = 0;
+            return false;
+        }
+        if (overLimitSince == 0) {
+            overLimitSince = now;
+            return false;
+        }
+        return now - overLimitSince > DISCONNECT_AFTER_MS;
+    }
+
+    /**
+     * Drop everything queued and close the connection as a slow consumer
+     */
+    private void disconnect() {
+        int depth;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            depth = pending.size();
+            dropped += depth;
+            pending.clear();
+            pendingBytes = 0;
+        }
+
+        System.err.println("Disconnecting slow consumer " + ctx.session.getRemoteAddress()
+                + " (" + depth + " frames queued)");
+        try {
+            ctx.session.close(StatusCode.TRY_AGAIN_LATER, "Slow consumer");
+        } catch (Exception e) {
+            System.err.println("Error closing slow consumer: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Release queued frames once the connection is gone
+     */
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    public synchronized int depth() {
+        return pending.size();
+    }
+
+    public synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized long sentCount() {
+        return sent;
+    }
+
+    public synchronized long droppedCount() {
+        return dropped;
+    }
+
+    public synchronized long coalescedCount() {
+        return coalesced;
+    }
+}
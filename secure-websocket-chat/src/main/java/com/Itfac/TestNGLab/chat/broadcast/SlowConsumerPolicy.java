@@ -0,0 +1,56 @@
+package com.Itfac.TestNGLab.chat.broadcast;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What an outbound queue does with a message type once a client falls behind.
+ * Defaults can be overridden per type with -Doutbound.policy.TYPE=POLICY
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public enum SlowConsumerPolicy {
+    /** Transient frames: drop the oldest queued ones when over the high-water mark */
+    DROP_OLDEST,
+    /** State snapshots: a newer frame replaces any older one still queued for the same room */
+    COALESCE,
+    /** Must-deliver frames: queue them, but disconnect a client that stays over the limit */
+    DISCONNECT;
+
+    // Resolved once per message type, looked up on every enqueue
+    private static final Map<String, SlowConsumerPolicy> byType = new ConcurrentHashMap<>();
+
+    /**
+     * Resolve the policy for a message type (null type = must-deliver)
+     */
+    public static SlowConsumerPolicy forType(String type) {
+        if (type == null)
+            return DISCONNECT;
+        return byType.computeIfAbsent(type, SlowConsumerPolicy::resolve);
+    }
+
+    private static SlowConsumerPolicy resolve(String type) {
+        String override = System.getProperty("outbound.policy." + type);
+        if (override != null) {
+            try {
+                return valueOf(override.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown outbound policy '" + override + "' for " + type + ", using default");
+            }
+        }
+
+        switch (type) {
+            case "TYPING":
+            case "STOP_TYPING":
+            case "WHITEBOARD_DRAW":
+            case "WHITEBOARD_STROKES":
+                return DROP_OLDEST;
+            case "USER_LIST_UPDATE":
+            case "TYPING_USERS":
+                return COALESCE;
+            default:
+                return DISCONNECT;
+        }
+    }
+}
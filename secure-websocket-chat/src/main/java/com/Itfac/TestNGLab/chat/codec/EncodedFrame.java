@@ -0,0 +1,114 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import com.Itfac.TestNGLab.chat.models.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One outbound message with its encoded form cached per {@link WireFormat}.
+ * Each format is encoded lazily, at most once, the first time a recipient using it
+ * needs the frame; a broadcast to a mixed JSON/MessagePack audience pays one encode
+ * per format in use.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class EncodedFrame {
+    private static final WireFormat[] FORMATS = WireFormat.values();
+
+    private final String type;
+    private final String room; // payload.room: outbound queues coalesce snapshots per type and room
+    private final ByteBuffer[] encoded = new ByteBuffer[FORMATS.length];
+    private Message message; // decoded lazily when the frame was created from encoded bytes
+
+    private EncodedFrame(String type, String room, Message message) {
+        this.type = type;
+        this.room = room;
+        this.message = message;
+    }
+
+    /**
+     * A frame for a message that has not been encoded yet
+     */
+    public static EncodedFrame of(Message message) {
+        return new EncodedFrame(message.getType(),
+                message.getPayload() != null ? message.getPayload().getRoom() : null, message);
+    }
+
+    /**
+     * A frame for a message received (or prepared) in {@code format}; other formats
+     * are produced by decoding it once, only if needed
+     */
+    public static EncodedFrame ofEncoded(String type, WireFormat format, ByteBuffer frame) {
+        return ofEncoded(type, null, format, frame);
+    }
+
+    /**
+     * Like {@link #ofEncoded(String, WireFormat, ByteBuffer)}, for a message addressed to a room
+     */
+    public static EncodedFrame ofEncoded(String type, String room, WireFormat format, ByteBuffer frame) {
+        EncodedFrame result = new EncodedFrame(type, room, null);
+        result.encoded[format.ordinal()] = frame;
+        return result;
+    }
+
+    /**
+     * A frame for a JSON text message relayed as received
+     */
+    public static EncodedFrame ofJson(String type, String json) {
+        return ofJson(type, null, json);
+    }
+
+    /**
+     * A frame for a JSON text message to a room, relayed as received
+     */
+    public static EncodedFrame ofJson(String type, String room, String json) {
+        return ofEncoded(type, room, WireFormat.JSON, StandardCharsets.UTF_8.encode(json).asReadOnlyBuffer());
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Room the message is addressed to (payload.room), or null
+     */
+    public String getRoom() {
+        return room;
+    }
+
+    /**
+     * The frame in {@code format} (shared read-only buffer; duplicate/slice before consuming it)
+     */
+    public synchronized ByteBuffer get(WireFormat format) {
+        ByteBuffer frame = encoded[format.ordinal()];
+        if (frame == null) {
+            Message source = message();
+            frame = format == WireFormat.MSGPACK ? MsgPackCodec.encode(source) : MessageCodec.encode(source);
+            encoded[format.ordinal()] = frame;
+        }
+        return frame;
+    }
+
+    private Message message() {
+        if (message == null) {
+            for (WireFormat format : FORMATS) {
+                ByteBuffer frame = encoded[format.ordinal()];
+                if (frame == null)
+                    continue;
+                message = decode(format, frame);
+                break;
+            }
+        }
+        return message;
+    }
+
+    private static Message decode(WireFormat format, ByteBuffer frame) {
+        ByteBuffer view = frame.duplicate();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return format == WireFormat.MSGPACK ? MsgPackCodec.decode(bytes, 0, bytes.length)
+                : MessageCodec.decode(new String(bytes, StandardCharsets.UTF_8));
+    }
+}
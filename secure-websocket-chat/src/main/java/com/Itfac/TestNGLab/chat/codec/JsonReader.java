@@ -0,0 +1,420 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal streaming (pull) JSON reader over a string.
+ * - No reflection and no token objects: callers walk the document field by field
+ * - Field names are matched in place against a fixed table, so known keys allocate nothing
+ * - Strings without escapes are returned as a single substring
+ *
+ * Malformed input raises {@link IllegalArgumentException}.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class JsonReader {
+    private static final int MAX_DEPTH = 64;
+
+    private final String json;
+    private int pos;
+
+    // Per level: "a value was already read", so the next element needs a comma, and the
+    // bracket that closes it ('}' or ']')
+    private boolean[] started = new boolean[16];
+    private char[] closers = new char[16];
+    private int depth;
+
+    public JsonReader(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Next significant character without consuming it (-1 at end of input)
+     */
+    public int peek() {
+        skipWhitespace();
+        return pos < json.length() ? json.charAt(pos) : -1;
+    }
+
+    public void beginObject() {
+        expect('{');
+        push('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+        push(']');
+    }
+
+    /**
+     * Advance to the next member/element of the current object or array
+     *
+     * @return false (and consume the closing bracket) if there are no more
+     */
+    public boolean hasNext() {
+        int c = peek();
+        if (c == '}' || c == ']') {
+            if (depth == 0 || c != closers[depth])
+                throw error("Unexpected '" + (char) c + "'");
+            pos++;
+            depth--;
+            return false;
+        }
+        if (started[depth]) {
+            expect(',');
+        } else {
+            started[depth] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Read a field name and match it against {@code names} without allocating
+     *
+     * @return The index of the name in {@code names}, or -1 if it is not listed
+     */
+    public int nextName(String[] names) {
+        expect('"');
+        int start = pos;
+        int end = start;
+        while (end < json.length() && json.charAt(end) != '"' && json.charAt(end) != '\\')
+            end++;
+        if (end == json.length())
+            throw error("Unterminated string");
+
+        int match = -1;
+        if (json.charAt(end) == '"') {
+            int length = end - start;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].length() == length && json.regionMatches(start, names[i], 0, length)) {
+                    match = i;
+                    break;
+                }
+            }
+            pos = end + 1;
+        } else {
+            // Escaped names are rare; decode and compare
+            pos = start - 1;
+            String name = nextString();
+            for (int i = 0; i < names.length && match < 0; i++) {
+                if (names[i].equals(name))
+                    match = i;
+            }
+        }
+        expect(':');
+        return match;
+    }
+
+    public String nextString() {
+        expect('"');
+        int start = pos;
+        StringBuilder decoded = null;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                String value = decoded == null ? json.substring(start, pos)
+                        : decoded.append(json, start, pos).toString();
+                pos++;
+                return value;
+            }
+            if (c == '\\') {
+                if (decoded == null)
+                    decoded = new StringBuilder(pos - start + 16);
+                decoded.append(json, start, pos);
+                decoded.append(readEscape());
+                start = pos;
+            } else {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * Read a string, or null for a JSON null
+     */
+    public String nextNullableString() {
+        if (peek() == 'n') {
+            nextNull();
+            return null;
+        }
+        return nextString();
+    }
+
+    /**
+     * Read an integral number (quoted numbers and fractions are accepted), or null for a JSON null
+     */
+    public Long nextNullableLong() {
+        int c = peek();
+        if (c == 'n') {
+            nextNull();
+            return null;
+        }
+        String text = c == '"' ? nextString() : numberText();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(text);
+            } catch (NumberFormatException e2) {
+                throw error("Invalid number '" + text + "'");
+            }
+        }
+    }
+
+    /**
+     * Read a number (not quoted)
+     */
+    public double nextDouble() {
+        String text = numberText();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    /**
+     * Read an array of strings, or null for a JSON null
+     */
+    public String[] nextNullableStringArray() {
+        if (peek() == 'n') {
+            nextNull();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        beginArray();
+        while (hasNext()) {
+            values.add(nextNullableString());
+        }
+        return values.toArray(new String[0]);
+    }
+
+    public void nextNull() {
+        expectLiteral("null");
+    }
+
+    /**
+     * Read any value as plain Java objects: Map (insertion ordered), List, String, Double, Boolean or null
+     */
+    public Object nextValue() {
+        switch (peek()) {
+            case '{': {
+                Map<String, Object> map = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextString();
+                    expect(':');
+                    map.put(name, nextValue());
+                }
+                return map;
+            }
+            case '[': {
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    list.add(nextValue());
+                }
+                return list;
+            }
+            case '"':
+                return nextString();
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                nextNull();
+                return null;
+            default:
+                return nextDouble();
+        }
+    }
+
+    /**
+     * Skip a value of any type without materializing it
+     */
+    public void skipValue() {
+        switch (peek()) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    skipString();
+                    expect(':');
+                    skipValue();
+                }
+                break;
+            case '[':
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                break;
+            case '"':
+                skipString();
+                break;
+            case 't':
+                expectLiteral("true");
+                break;
+            case 'f':
+                expectLiteral("false");
+                break;
+            case 'n':
+                nextNull();
+                break;
+            default:
+                skipNumber();
+        }
+    }
+
+    /**
+     * Offset of the next character to read (e.g. to keep the text of a skipped value)
+     */
+    public int position() {
+        return pos;
+    }
+
+    /**
+     * Fail unless only whitespace is left
+     */
+    public void endDocument() {
+        if (peek() != -1)
+            throw error("Trailing data");
+    }
+
+    private void skipString() {
+        expect('"');
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"')
+                return;
+            if (c == '\\')
+                pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private char readEscape() {
+        pos++; // backslash
+        if (pos >= json.length())
+            throw error("Unterminated escape");
+        char c = json.charAt(pos++);
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > json.length())
+                    throw error("Unterminated escape");
+                try {
+                    char decoded = (char) Integer.parseInt(json.substring(pos, pos + 4), 16);
+                    pos += 4;
+                    return decoded;
+                } catch (NumberFormatException e) {
+                    throw error("Invalid unicode escape");
+                }
+            default:
+                throw error("Invalid escape '\\" + c + "'");
+        }
+    }
+
+    private String numberText() {
+        int start = skipNumber();
+        return json.substring(start, pos);
+    }
+
+    /**
+     * Skip a number, checked against the JSON grammar: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+     *
+     * @return The start offset of the number just skipped
+     */
+    private int skipNumber() {
+        skipWhitespace();
+        int start = pos;
+        skip('-');
+        if (pos < json.length() && json.charAt(pos) == '0') {
+            pos++;
+        } else if (skipDigits() == 0) {
+            throw error(start == pos ? "Unexpected character" : "Invalid number");
+        }
+        if (skip('.') && skipDigits() == 0)
+            throw error("Invalid number");
+        if (skip('e') || skip('E')) {
+            if (!skip('+'))
+                skip('-');
+            if (skipDigits() == 0)
+                throw error("Invalid number");
+        }
+        return start;
+    }
+
+    private boolean skip(char c) {
+        if (pos < json.length() && json.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private int skipDigits() {
+        int start = pos;
+        while (pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9')
+            pos++;
+        return pos - start;
+    }
+
+    private void push(char closer) {
+        if (depth == MAX_DEPTH)
+            throw error("Too deeply nested");
+        if (++depth == started.length) {
+            started = Arrays.copyOf(started, depth * 2);
+            closers = Arrays.copyOf(closers, depth * 2);
+        }
+        started[depth] = false;
+        closers[depth] = closer;
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private void expectLiteral(String literal) {
+        skipWhitespace();
+        if (!json.startsWith(literal, pos))
+            throw error("Expected " + literal);
+        pos += literal.length();
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return;
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Malformed JSON: " + message + " at offset " + pos);
+    }
+}
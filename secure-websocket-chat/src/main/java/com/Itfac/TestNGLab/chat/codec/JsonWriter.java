@@ -0,0 +1,261 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON writer that encodes straight to UTF-8 in a reusable byte buffer.
+ * Each thread keeps one writer ({@link #get()}); the only allocation per document
+ * is the exact-size result.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class JsonWriter {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RETAIN_CAPACITY = 64 * 1024; // larger buffers are released after use
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<JsonWriter> WRITERS = ThreadLocal.withInitial(JsonWriter::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    // Per-level "a value was already written", so the next one needs a comma
+    private boolean[] started = new boolean[16];
+    private int depth;
+
+    /**
+     * This thread's writer, reset and ready for a new document
+     */
+    public static JsonWriter get() {
+        JsonWriter writer = WRITERS.get();
+        writer.reset();
+        return writer;
+    }
+
+    public JsonWriter beginObject() {
+        separator();
+        write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        depth--;
+        write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separator();
+        write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        depth--;
+        write(']');
+        return this;
+    }
+
+    /**
+     * Write a field name (the next call writes its value)
+     */
+    public JsonWriter name(String name) {
+        separator();
+        writeQuoted(name);
+        write(':');
+        started[depth] = false; // the value follows without a comma
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        separator();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeQuoted(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separator();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Write any plain Java value: Map, List, array, String, Number, Boolean or null
+     */
+    public JsonWriter value(Object value) {
+        if (value == null || value instanceof String) {
+            return value((String) value);
+        }
+        if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey())).value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof List) {
+            beginArray();
+            for (Object element : (List<?>) value) {
+                value(element);
+            }
+            return endArray();
+        }
+        if (value instanceof Object[]) {
+            beginArray();
+            for (Object element : (Object[]) value) {
+                value(element);
+            }
+            return endArray();
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        }
+        separator();
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            writeAscii(Double.isFinite(number) ? value.toString() : "null");
+        } else if (value instanceof Boolean) {
+            writeAscii(value.toString());
+        } else {
+            writeQuoted(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * The document as a read-only buffer (exact-size copy, safe to share between connections)
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer result = ByteBuffer.wrap(Arrays.copyOf(buffer, length)).asReadOnlyBuffer();
+        release();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        String result = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        release();
+        return result;
+    }
+
+    private void reset() {
+        length = 0;
+        depth = 0;
+        started[0] = false;
+    }
+
+    private void release() {
+        if (buffer.length > RETAIN_CAPACITY)
+            buffer = new byte[INITIAL_CAPACITY];
+        length = 0;
+    }
+
+    private void separator() {
+        if (started[depth]) {
+            write(',');
+        } else {
+            started[depth] = true;
+        }
+    }
+
+    private void push() {
+        if (++depth == started.length)
+            started = Arrays.copyOf(started, depth * 2);
+        started[depth] = false;
+    }
+
+    private void writeQuoted(String s) {
+        ensureCapacity(s.length() * 3 + 2);
+        byte[] out = buffer;
+        int n = length;
+        out[n++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out[n++] = (byte) c;
+                continue;
+            }
+            if (c < 0x80) {
+                // Escapes need up to 6 bytes for a 1-char input
+                length = n;
+                ensureCapacity((s.length() - i) * 6 + 1);
+                out = buffer;
+                n = writeEscape(out, n, c);
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xC0 | (c >> 6));
+                out[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out[n++] = (byte) (0xF0 | (cp >> 18));
+                out[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[n++] = '?'; // unpaired surrogate
+            } else {
+                out[n++] = (byte) (0xE0 | (c >> 12));
+                out[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        out[n++] = '"';
+        length = n;
+    }
+
+    private static int writeEscape(byte[] out, int n, char c) {
+        out[n++] = '\\';
+        switch (c) {
+            case '"':
+                out[n++] = '"';
+                break;
+            case '\\':
+                out[n++] = '\\';
+                break;
+            case '\n':
+                out[n++] = 'n';
+                break;
+            case '\r':
+                out[n++] = 'r';
+                break;
+            case '\t':
+                out[n++] = 't';
+                break;
+            default:
+                out[n++] = 'u';
+                out[n++] = '0';
+                out[n++] = '0';
+                out[n++] = HEX[c >> 4];
+                out[n++] = HEX[c & 0xF];
+        }
+        return n;
+    }
+
+    private void writeAscii(String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer[length++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+    }
+}
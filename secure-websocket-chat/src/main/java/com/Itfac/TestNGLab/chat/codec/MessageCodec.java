@@ -0,0 +1,325 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import com.Itfac.TestNGLab.chat.models.Message;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The single JSON codec for {@link Message} / {@link Message.Payload}, used for both
+ * the WebSocket and the REST side. Fields are read and written explicitly (no
+ * reflection); null fields are omitted and unknown fields are skipped.
+ * {@link #scanHeader} reads only the routing fields, for messages that are relayed as-is
+ * (and, in the same pass, the full message of the types the caller interprets).
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class MessageCodec {
+    // Field tables (index = switch case below)
+    private static final String[] MESSAGE_FIELDS = { "type", "payload", "timestamp", "sequence" };
+    private static final String[] PAYLOAD_FIELDS = { "username", "room", "text", "users", "filename",
+            "filesize", "url", "duration", "since", "version", "drawData", "mimeType", "thumbnail" };
+    private static final String[] ROUTING_FIELDS = { "room", "drawData" };
+
+    /**
+     * The routing fields of a message: its type and payload.room, plus where payload.drawData is
+     */
+    public static final class Header {
+        private final String type;
+        private final String room;
+        private final String json;
+        private final int drawDataStart;
+        private final int drawDataEnd;
+        private final Message message;
+
+        Header(String type, String room, String json, int drawDataStart, int drawDataEnd, Message message) {
+            this.type = type;
+            this.room = room;
+            this.json = json;
+            this.drawDataStart = drawDataStart;
+            this.drawDataEnd = drawDataEnd;
+            this.message = message;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        /**
+         * The JSON text of payload.drawData as received (copied only when asked for), or null
+         */
+        public String getDrawData() {
+            return drawDataStart < 0 ? null : json.substring(drawDataStart, drawDataEnd);
+        }
+
+        /**
+         * The full message, if it was decoded during the scan (else null: see {@link #scanHeader(String, Set)})
+         */
+        public Message getMessage() {
+            return message;
+        }
+    }
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Parse a JSON message
+     *
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public static Message decode(String json) {
+        JsonReader reader = new JsonReader(json);
+        if (reader.peek() == 'n') {
+            reader.nextNull();
+            return null;
+        }
+
+        String type = null;
+        Message.Payload payload = null;
+        String timestamp = null;
+        Long sequence = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(MESSAGE_FIELDS)) {
+                case 0:
+                    type = reader.nextNullableString();
+                    break;
+                case 1:
+                    payload = decodePayload(reader);
+                    break;
+                case 2:
+                    timestamp = reader.nextNullableString();
+                    break;
+                case 3:
+                    sequence = reader.nextNullableLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endDocument();
+
+        Message message = new Message(type, payload);
+        message.setTimestamp(timestamp);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    /**
+     * Read only type and payload.room; everything else is validated and skipped without
+     * being materialized
+     *
+     * @throws IllegalArgumentException if the text is not a valid JSON object
+     */
+    public static Header scanHeader(String json) {
+        return scanHeader(json, Collections.emptySet());
+    }
+
+    /**
+     * Read type and payload.room, and decode the whole message in the same pass if its type is
+     * one of {@code decodedTypes}. That needs "type" before "payload" (as messages are written):
+     * otherwise {@link Header#getMessage()} is null and the caller decodes the text again.
+     *
+     * @throws IllegalArgumentException if the text is not a valid JSON object
+     */
+    public static Header scanHeader(String json, Set<String> decodedTypes) {
+        JsonReader reader = new JsonReader(json);
+        String type = null;
+        String room = null;
+        int[] drawData = { -1, -1 };
+        boolean decoding = false;
+        boolean payloadSkipped = false;
+        Message.Payload payload = null;
+        String timestamp = null;
+        Long sequence = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(MESSAGE_FIELDS)) {
+                case 0:
+                    type = reader.nextNullableString();
+                    decoding = type != null && decodedTypes.contains(type);
+                    break;
+                case 1:
+                    if (decoding) {
+                        payload = decodePayload(reader);
+                        room = payload != null ? payload.getRoom() : null;
+                    } else {
+                        room = scanRoom(reader, drawData);
+                        payloadSkipped = true;
+                    }
+                    break;
+                case 2:
+                    timestamp = reader.nextNullableString();
+                    break;
+                case 3:
+                    sequence = reader.nextNullableLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endDocument();
+
+        Message message = null;
+        if (decoding && !payloadSkipped) {
+            message = new Message(type, payload);
+            message.setTimestamp(timestamp);
+            message.setSequence(sequence);
+        }
+        return new Header(type, room, json, drawData[0], drawData[1], message);
+    }
+
+    /**
+     * Read payload.room; the span of payload.drawData goes to {@code drawData} ({start, end})
+     */
+    private static String scanRoom(JsonReader reader, int[] drawData) {
+        if (reader.peek() != '{') {
+            reader.skipValue();
+            return null;
+        }
+
+        String room = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(ROUTING_FIELDS)) {
+                case 0:
+                    room = reader.nextNullableString();
+                    break;
+                case 1:
+                    reader.peek(); // past the whitespace
+                    drawData[0] = reader.position();
+                    reader.skipValue();
+                    drawData[1] = reader.position();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return room;
+    }
+
+    private static Message.Payload decodePayload(JsonReader reader) {
+        if (reader.peek() == 'n') {
+            reader.nextNull();
+            return null;
+        }
+
+        Message.Payload payload = new Message.Payload();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(PAYLOAD_FIELDS)) {
+                case 0:
+                    payload.setUsername(reader.nextNullableString());
+                    break;
+                case 1:
+                    payload.setRoom(reader.nextNullableString());
+                    break;
+                case 2:
+                    payload.setText(reader.nextNullableString());
+                    break;
+                case 3:
+                    payload.setUsers(reader.nextNullableStringArray());
+                    break;
+                case 4:
+                    payload.setFilename(reader.nextNullableString());
+                    break;
+                case 5:
+                    payload.setFilesize(reader.nextNullableString());
+                    break;
+                case 6:
+                    payload.setUrl(reader.nextNullableString());
+                    break;
+                case 7:
+                    payload.setDuration(reader.nextNullableString());
+                    break;
+                case 8:
+                    payload.setSince(reader.nextNullableLong());
+                    break;
+                case 9:
+                    payload.setVersion(reader.nextNullableLong());
+                    break;
+                case 10:
+                    payload.setDrawData(reader.nextValue());
+                    break;
+                case 11:
+                    payload.setMimeType(reader.nextNullableString());
+                    break;
+                case 12:
+                    payload.setThumbnail(reader.nextNullableString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Encode a message as UTF-8 JSON, ready to be shared by all recipients
+     */
+    public static ByteBuffer encode(Message message) {
+        return write(JsonWriter.get(), message).toByteBuffer();
+    }
+
+    /**
+     * Encode a message as a JSON string
+     */
+    public static String encodeToString(Message message) {
+        return write(JsonWriter.get(), message).toString();
+    }
+
+    private static JsonWriter write(JsonWriter writer, Message message) {
+        writer.beginObject();
+        if (message.getType() != null)
+            writer.name("type").value(message.getType());
+        if (message.getPayload() != null) {
+            writer.name("payload");
+            writePayload(writer, message.getPayload());
+        }
+        if (message.getTimestamp() != null)
+            writer.name("timestamp").value(message.getTimestamp());
+        if (message.getSequence() != null)
+            writer.name("sequence").value((long) message.getSequence());
+        return writer.endObject();
+    }
+
+    private static void writePayload(JsonWriter writer, Message.Payload payload) {
+        writer.beginObject();
+        if (payload.getUsername() != null)
+            writer.name("username").value(payload.getUsername());
+        if (payload.getRoom() != null)
+            writer.name("room").value(payload.getRoom());
+        if (payload.getText() != null)
+            writer.name("text").value(payload.getText());
+        if (payload.getUsers() != null)
+            writer.name("users").value((Object) payload.getUsers());
+        if (payload.getFilename() != null)
+            writer.name("filename").value(payload.getFilename());
+        if (payload.getFilesize() != null)
+            writer.name("filesize").value(payload.getFilesize());
+        if (payload.getUrl() != null)
+            writer.name("url").value(payload.getUrl());
+        if (payload.getDuration() != null)
+            writer.name("duration").value(payload.getDuration());
+        if (payload.getSince() != null)
+            writer.name("since").value((long) payload.getSince());
+        if (payload.getVersion() != null)
+            writer.name("version").value((long) payload.getVersion());
+        if (payload.getDrawData() != null)
+            writer.name("drawData").value(payload.getDrawData());
+        if (payload.getMimeType() != null)
+            writer.name("mimeType").value(payload.getMimeType());
+        if (payload.getThumbnail() != null)
+            writer.name("thumbnail").value(payload.getThumbnail());
+        writer.endObject();
+    }
+}
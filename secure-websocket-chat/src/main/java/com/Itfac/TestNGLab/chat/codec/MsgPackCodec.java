@@ -0,0 +1,179 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import com.Itfac.TestNGLab.chat.models.Message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MessagePack codec for {@link Message} / {@link Message.Payload}. Same field names
+ * and null handling as {@link MessageCodec}: a message is a map with only the
+ * non-null fields, drawData is any MessagePack value.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class MsgPackCodec {
+    private static final String[] MESSAGE_FIELDS = { "type", "payload", "timestamp", "sequence" };
+    private static final String[] PAYLOAD_FIELDS = { "username", "room", "text", "users", "filename",
+            "filesize", "url", "duration", "since", "version", "drawData", "mimeType", "thumbnail" };
+
+    private MsgPackCodec() {
+    }
+
+    /**
+     * Parse a MessagePack message
+     *
+     * @throws IllegalArgumentException if the data is not a valid message map
+     */
+    public static Message decode(byte[] data, int offset, int length) {
+        MsgPackReader reader = new MsgPackReader(data, offset, length);
+
+        String type = null;
+        Message.Payload payload = null;
+        String timestamp = null;
+        Long sequence = null;
+
+        int fields = reader.mapHeader();
+        for (int i = 0; i < fields; i++) {
+            switch (reader.nextName(MESSAGE_FIELDS)) {
+                case 0:
+                    type = reader.nextNullableString();
+                    break;
+                case 1:
+                    payload = decodePayload(reader);
+                    break;
+                case 2:
+                    timestamp = reader.nextNullableString();
+                    break;
+                case 3:
+                    sequence = reader.nextNullableLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endDocument();
+
+        Message message = new Message(type, payload);
+        message.setTimestamp(timestamp);
+        message.setSequence(sequence);
+        return message;
+    }
+
+    private static Message.Payload decodePayload(MsgPackReader reader) {
+        if (reader.isNil()) {
+            reader.skipValue();
+            return null;
+        }
+
+        Message.Payload payload = new Message.Payload();
+        int fields = reader.mapHeader();
+        for (int i = 0; i < fields; i++) {
+            switch (reader.nextName(PAYLOAD_FIELDS)) {
+                case 0:
+                    payload.setUsername(reader.nextNullableString());
+                    break;
+                case 1:
+                    payload.setRoom(reader.nextNullableString());
+                    break;
+                case 2:
+                    payload.setText(reader.nextNullableString());
+                    break;
+                case 3:
+                    payload.setUsers(reader.nextNullableStringArray());
+                    break;
+                case 4:
+                    payload.setFilename(reader.nextNullableString());
+                    break;
+                case 5:
+                    payload.setFilesize(reader.nextNullableString());
+                    break;
+                case 6:
+                    payload.setUrl(reader.nextNullableString());
+                    break;
+                case 7:
+                    payload.setDuration(reader.nextNullableString());
+                    break;
+                case 8:
+                    payload.setSince(reader.nextNullableLong());
+                    break;
+                case 9:
+                    payload.setVersion(reader.nextNullableLong());
+                    break;
+                case 10:
+                    payload.setDrawData(reader.nextValue());
+                    break;
+                case 11:
+                    payload.setMimeType(reader.nextNullableString());
+                    break;
+                case 12:
+                    payload.setThumbnail(reader.nextNullableString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Encode a message, ready to be shared by all recipients
+     */
+    public static ByteBuffer encode(Message message) {
+        MsgPackWriter writer = MsgPackWriter.get();
+        writer.mapHeader(count(message.getType(), message.getPayload(), message.getTimestamp(), message.getSequence()));
+        if (message.getType() != null)
+            writer.value("type").value(message.getType());
+        if (message.getPayload() != null) {
+            writer.value("payload");
+            writePayload(writer, message.getPayload());
+        }
+        if (message.getTimestamp() != null)
+            writer.value("timestamp").value(message.getTimestamp());
+        if (message.getSequence() != null)
+            writer.value("sequence").value((long) message.getSequence());
+        return writer.toByteBuffer();
+    }
+
+    private static void writePayload(MsgPackWriter writer, Message.Payload payload) {
+        writer.mapHeader(count(payload.getUsername(), payload.getRoom(), payload.getText(), payload.getUsers(),
+                payload.getFilename(), payload.getFilesize(), payload.getUrl(), payload.getDuration(),
+                payload.getSince(), payload.getVersion(), payload.getDrawData(), payload.getMimeType(),
+                payload.getThumbnail()));
+        if (payload.getUsername() != null)
+            writer.value("username").value(payload.getUsername());
+        if (payload.getRoom() != null)
+            writer.value("room").value(payload.getRoom());
+        if (payload.getText() != null)
+            writer.value("text").value(payload.getText());
+        if (payload.getUsers() != null)
+            writer.value("users").value((Object) payload.getUsers());
+        if (payload.getFilename() != null)
+            writer.value("filename").value(payload.getFilename());
+        if (payload.getFilesize() != null)
+            writer.value("filesize").value(payload.getFilesize());
+        if (payload.getUrl() != null)
+            writer.value("url").value(payload.getUrl());
+        if (payload.getDuration() != null)
+            writer.value("duration").value(payload.getDuration());
+        if (payload.getSince() != null)
+            writer.value("since").value((long) payload.getSince());
+        if (payload.getVersion() != null)
+            writer.value("version").value((long) payload.getVersion());
+        if (payload.getDrawData() != null)
+            writer.value("drawData").value(payload.getDrawData());
+        if (payload.getMimeType() != null)
+            writer.value("mimeType").value(payload.getMimeType());
+        if (payload.getThumbnail() != null)
+            writer.value("thumbnail").value(payload.getThumbnail());
+    }
+
+    private static int count(Object... fields) {
+        int present = 0;
+        for (Object field : fields) {
+            if (field != null)
+                present++;
+        }
+        return present;
+    }
+}
@@ -0,0 +1,269 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal streaming MessagePack reader over a byte range (see {@link JsonReader}).
+ * Malformed or truncated input raises {@link IllegalArgumentException}.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class MsgPackReader {
+    private static final int MAX_DEPTH = 64;
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    private int depth;
+
+    public MsgPackReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Next format byte without consuming it
+     */
+    public int peek() {
+        require(1);
+        return data[pos] & 0xFF;
+    }
+
+    public boolean isNil() {
+        return peek() == 0xc0;
+    }
+
+    /**
+     * @return The number of key/value pairs that follow
+     */
+    public int mapHeader() {
+        int b = next();
+        if ((b & 0xf0) == 0x80)
+            return b & 0x0f;
+        if (b == 0xde)
+            return readUnsigned(2);
+        if (b == 0xdf)
+            return size(readUnsigned(4));
+        throw error("Expected map");
+    }
+
+    /**
+     * @return The number of elements that follow
+     */
+    public int arrayHeader() {
+        int b = next();
+        if ((b & 0xf0) == 0x90)
+            return b & 0x0f;
+        if (b == 0xdc)
+            return readUnsigned(2);
+        if (b == 0xdd)
+            return size(readUnsigned(4));
+        throw error("Expected array");
+    }
+
+    /**
+     * Read a string key and match it against {@code names} without allocating
+     *
+     * @return The index of the key in {@code names}, or -1 if it is not listed
+     */
+    public int nextName(String[] names) {
+        int length = stringHeader();
+        require(length);
+        int start = pos;
+        pos += length;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.length() != length)
+                continue;
+            int j = 0;
+            while (j < length && data[start + j] == name.charAt(j))
+                j++;
+            if (j == length)
+                return i;
+        }
+        return -1;
+    }
+
+    public String nextNullableString() {
+        if (isNil()) {
+            pos++;
+            return null;
+        }
+        int length = stringHeader();
+        require(length);
+        String value = new String(data, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    public Long nextNullableLong() {
+        if (isNil()) {
+            pos++;
+            return null;
+        }
+        Object value = nextValue();
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        throw error("Expected number");
+    }
+
+    public String[] nextNullableStringArray() {
+        if (isNil()) {
+            pos++;
+            return null;
+        }
+        String[] values = new String[arrayHeader()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nextNullableString();
+        }
+        return values;
+    }
+
+    /**
+     * Read any value as plain Java objects: Map, List, String, Long, Double, Boolean or null
+     */
+    public Object nextValue() {
+        int b = peek();
+        if (b <= 0x7f) {
+            pos++;
+            return (long) b;
+        }
+        if (b >= 0xe0) {
+            pos++;
+            return (long) (byte) b;
+        }
+        if ((b & 0xf0) == 0x80 || b == 0xde || b == 0xdf) {
+            int size = mapHeader();
+            enter();
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                Object key = nextValue();
+                map.put(String.valueOf(key), nextValue());
+            }
+            depth--;
+            return map;
+        }
+        if ((b & 0xf0) == 0x90 || b == 0xdc || b == 0xdd) {
+            int size = arrayHeader();
+            enter();
+            List<Object> list = new ArrayList<>(Math.min(size, 1024));
+            for (int i = 0; i < size; i++) {
+                list.add(nextValue());
+            }
+            depth--;
+            return list;
+        }
+        if ((b & 0xe0) == 0xa0 || b == 0xd9 || b == 0xda || b == 0xdb)
+            return nextNullableString();
+
+        pos++;
+        switch (b) {
+            case 0xc0:
+                return null;
+            case 0xc2:
+                return Boolean.FALSE;
+            case 0xc3:
+                return Boolean.TRUE;
+            case 0xcc:
+                return (long) readUnsigned(1);
+            case 0xcd:
+                return (long) readUnsigned(2);
+            case 0xce:
+                return readLong(4) & 0xFFFFFFFFL;
+            case 0xcf:
+            case 0xd3:
+                return readLong(8);
+            case 0xd0:
+                return (long) (byte) readUnsigned(1);
+            case 0xd1:
+                return (long) (short) readUnsigned(2);
+            case 0xd2:
+                return (long) (int) readLong(4);
+            case 0xca:
+                return (double) Float.intBitsToFloat((int) readLong(4));
+            case 0xcb:
+                return Double.longBitsToDouble(readLong(8));
+            default:
+                throw error("Unsupported type 0x" + Integer.toHexString(b));
+        }
+    }
+
+    /**
+     * Skip a value of any type (strings and binaries are skipped without decoding)
+     */
+    public void skipValue() {
+        int b = peek();
+        if ((b & 0xe0) == 0xa0 || b == 0xd9 || b == 0xda || b == 0xdb) {
+            int length = stringHeader();
+            require(length);
+            pos += length;
+            return;
+        }
+        nextValue();
+    }
+
+    /**
+     * Fail unless the whole range was consumed
+     */
+    public void endDocument() {
+        if (pos != end)
+            throw error("Trailing data");
+    }
+
+    private int stringHeader() {
+        int b = next();
+        if ((b & 0xe0) == 0xa0)
+            return b & 0x1f;
+        if (b == 0xd9)
+            return readUnsigned(1);
+        if (b == 0xda)
+            return readUnsigned(2);
+        if (b == 0xdb)
+            return size(readUnsigned(4));
+        throw error("Expected string");
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH)
+            throw error("Too deeply nested");
+    }
+
+    private int next() {
+        require(1);
+        return data[pos++] & 0xFF;
+    }
+
+    private int readUnsigned(int bytes) {
+        return (int) readLong(bytes);
+    }
+
+    private long readLong(int bytes) {
+        require(bytes);
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = (value << 8) | (data[pos++] & 0xFF);
+        }
+        return value;
+    }
+
+    private int size(int value) {
+        if (value < 0 || value > end - pos)
+            throw error("Invalid length");
+        return value;
+    }
+
+    private void require(int bytes) {
+        if (bytes < 0 || pos + bytes > end)
+            throw error("Truncated input");
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Malformed MessagePack: " + message + " at offset " + pos);
+    }
+}
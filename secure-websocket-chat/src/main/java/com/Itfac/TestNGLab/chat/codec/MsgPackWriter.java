@@ -0,0 +1,236 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal MessagePack writer over a reusable byte buffer (see {@link JsonWriter}).
+ * Maps and arrays are written with their size up front; the caller counts entries.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class MsgPackWriter {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RETAIN_CAPACITY = 64 * 1024; // larger buffers are released after use
+
+    private static final ThreadLocal<MsgPackWriter> WRITERS = ThreadLocal.withInitial(MsgPackWriter::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * This thread's writer, reset and ready for a new document
+     */
+    public static MsgPackWriter get() {
+        MsgPackWriter writer = WRITERS.get();
+        writer.length = 0;
+        return writer;
+    }
+
+    public MsgPackWriter mapHeader(int size) {
+        if (size < 16) {
+            writeByte(0x80 | size);
+        } else if (size < 0x10000) {
+            writeByte(0xde);
+            writeShort(size);
+        } else {
+            writeByte(0xdf);
+            writeInt(size);
+        }
+        return this;
+    }
+
+    public MsgPackWriter arrayHeader(int size) {
+        if (size < 16) {
+            writeByte(0x90 | size);
+        } else if (size < 0x10000) {
+            writeByte(0xdc);
+            writeShort(size);
+        } else {
+            writeByte(0xdd);
+            writeInt(size);
+        }
+        return this;
+    }
+
+    public MsgPackWriter nil() {
+        writeByte(0xc0);
+        return this;
+    }
+
+    public MsgPackWriter value(boolean value) {
+        writeByte(value ? 0xc3 : 0xc2);
+        return this;
+    }
+
+    public MsgPackWriter value(long value) {
+        if (value >= 0 && value < 128) {
+            writeByte((int) value);
+        } else if (value < 0 && value >= -32) {
+            writeByte((int) value & 0xFF);
+        } else if (value == (int) value) {
+            writeByte(0xd2);
+            writeInt((int) value);
+        } else {
+            writeByte(0xd3);
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+        return this;
+    }
+
+    public MsgPackWriter value(double value) {
+        writeByte(0xcb);
+        long bits = Double.doubleToLongBits(value);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (bits >>> shift);
+        }
+        return this;
+    }
+
+    public MsgPackWriter value(String value) {
+        if (value == null)
+            return nil();
+
+        // UTF-8 is at most 3 bytes per char; reserve header + worst case and backfill the length
+        ensureCapacity(5 + value.length() * 3);
+        int header = length;
+        int headerBytes = value.length() * 3 < 32 ? 1 : value.length() * 3 < 0x10000 ? 3 : 5;
+        length += headerBytes;
+        int start = length;
+        writeUtf8(value);
+        int size = length - start;
+
+        if (headerBytes == 1) {
+            buffer[header] = (byte) (0xa0 | size);
+        } else if (headerBytes == 3) {
+            buffer[header] = (byte) 0xda;
+            buffer[header + 1] = (byte) (size >>> 8);
+            buffer[header + 2] = (byte) size;
+        } else {
+            buffer[header] = (byte) 0xdb;
+            buffer[header + 1] = (byte) (size >>> 24);
+            buffer[header + 2] = (byte) (size >>> 16);
+            buffer[header + 3] = (byte) (size >>> 8);
+            buffer[header + 4] = (byte) size;
+        }
+        return this;
+    }
+
+    /**
+     * Write any plain Java value: Map, List, array, String, Number, Boolean or null
+     */
+    public MsgPackWriter value(Object value) {
+        if (value == null || value instanceof String)
+            return value((String) value);
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            mapHeader(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                value(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return this;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            arrayHeader(list.size());
+            for (Object element : list) {
+                value(element);
+            }
+            return this;
+        }
+        if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            arrayHeader(array.length);
+            for (Object element : array) {
+                value(element);
+            }
+            return this;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return value(((Number) value).longValue());
+        if (value instanceof Number)
+            return value(((Number) value).doubleValue());
+        if (value instanceof Boolean)
+            return value(((Boolean) value).booleanValue());
+        return value(value.toString());
+    }
+
+    /**
+     * Append already encoded MessagePack bytes (e.g. a stored message inside a batch)
+     */
+    public MsgPackWriter raw(ByteBuffer encoded) {
+        int size = encoded.remaining();
+        ensureCapacity(size);
+        encoded.duplicate().get(buffer, length, size);
+        length += size;
+        return this;
+    }
+
+    /**
+     * The document as a read-only buffer (exact-size copy, safe to share between connections)
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer result = ByteBuffer.wrap(Arrays.copyOf(buffer, length)).asReadOnlyBuffer();
+        if (buffer.length > RETAIN_CAPACITY)
+            buffer = new byte[INITIAL_CAPACITY];
+        length = 0;
+        return result;
+    }
+
+    private void writeUtf8(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (cp >> 18));
+                buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[length++] = '?'; // unpaired surrogate
+            } else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) b;
+    }
+
+    private void writeShort(int v) {
+        ensureCapacity(2);
+        buffer[length++] = (byte) (v >>> 8);
+        buffer[length++] = (byte) v;
+    }
+
+    private void writeInt(int v) {
+        ensureCapacity(4);
+        buffer[length++] = (byte) (v >>> 24);
+        buffer[length++] = (byte) (v >>> 16);
+        buffer[length++] = (byte) (v >>> 8);
+        buffer[length++] = (byte) v;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+    }
+}
@@ -0,0 +1,52 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+/**
+ * Encoding of {@code Message} frames on a connection, negotiated once at connect time:
+ * - Query parameter: /chat?format=msgpack
+ * - Or subprotocol: Sec-WebSocket-Protocol: chat.msgpack (offered first; it is echoed back)
+ *
+ * JSON travels as text frames, MessagePack as binary frames. A MessagePack message is
+ * always a map (first byte 0x80-0x8f or 0xde/0xdf), so it never collides with the
+ * whiteboard's binary frames (first byte 1-3).
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public enum WireFormat {
+    JSON(false),
+    MSGPACK(true);
+
+    public static final String SUBPROTOCOL_MSGPACK = "chat.msgpack";
+
+    private final boolean binary;
+
+    WireFormat(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Whether frames in this format are sent as binary WebSocket frames
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Pick the format from the connect request
+     *
+     * @param format      Value of the "format" query parameter (may be null)
+     * @param subprotocol Value of the Sec-WebSocket-Protocol header (may be null)
+     */
+    public static WireFormat negotiate(String format, String subprotocol) {
+        if (format != null)
+            return "msgpack".equalsIgnoreCase(format) ? MSGPACK : JSON;
+
+        if (subprotocol != null) {
+            for (String offered : subprotocol.split(",")) {
+                if (SUBPROTOCOL_MSGPACK.equalsIgnoreCase(offered.trim()))
+                    return MSGPACK;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,83 @@
+package com.Itfac.TestNGLab.chat.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * WebSocket compression settings, read from compression.properties on the classpath.
+ * Every key can be overridden with a system property of the same name.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class CompressionSettings {
+    private static final String RESOURCE = "/compression.properties";
+
+    private final boolean enabled;
+    private final int level;
+    private final int minBytes;
+    private final int cacheMaxBytes;
+    private final int cacheSlots;
+
+    private CompressionSettings(Properties properties) {
+        this.enabled = Boolean.parseBoolean(get(properties, "ws.compression.enabled", "true"));
+        this.level = Math.max(1, Math.min(9, getInt(properties, "ws.compression.level", 6)));
+        this.minBytes = Math.max(0, getInt(properties, "ws.compression.minBytes", 256));
+        this.cacheMaxBytes = Math.max(0, getInt(properties, "ws.compression.cacheMaxBytes", 256 * 1024));
+        this.cacheSlots = Integer.highestOneBit(Math.max(1, getInt(properties, "ws.compression.cacheSlots", 512) * 2 - 1));
+    }
+
+    /**
+     * Load the settings file (if present) and apply system property overrides
+     */
+    public static CompressionSettings load() {
+        Properties properties = new Properties();
+        try (InputStream in = CompressionSettings.class.getResourceAsStream(RESOURCE)) {
+            if (in != null)
+                properties.load(in);
+        } catch (IOException e) {
+            System.err.println("Could not read " + RESOURCE + ": " + e.getMessage() + ", using defaults");
+        }
+        return new CompressionSettings(properties);
+    }
+
+    private static String get(Properties properties, String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue)).trim();
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        String value = get(properties, key, String.valueOf(defaultValue));
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
+
+    public int getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public int getCacheSlots() {
+        return cacheSlots;
+    }
+
+    @Override
+    public String toString() {
+        return enabled ? "permessage-deflate level " + level + ", min " + minBytes + " bytes" : "disabled";
+    }
+}
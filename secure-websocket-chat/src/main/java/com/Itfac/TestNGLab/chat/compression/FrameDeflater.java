@@ -0,0 +1,158 @@
+package com.Itfac.TestNGLab.chat.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses whole WebSocket messages for permessage-deflate.
+ * Every message is deflated on its own (no context takeover), so the output depends
+ * only on the payload and can be shared: a broadcast frame is deflated once and the
+ * result is reused for every recipient (see {@link #compressShared(ByteBuffer)}).
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class FrameDeflater {
+    private static final CompressionSettings SETTINGS = CompressionSettings.load();
+
+    // Marks a cached payload that did not get smaller when deflated
+    private static final ByteBuffer INCOMPRESSIBLE = ByteBuffer.allocate(0);
+
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(SETTINGS.getLevel(), true));
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    // Direct-mapped cache keyed by the identity of the shared payload buffer
+    private static final AtomicReferenceArray<Cached> cache = new AtomicReferenceArray<>(SETTINGS.getCacheSlots());
+
+    private static final LongAdder compressed = new LongAdder();
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder skippedSmall = new LongAdder();
+    private static final LongAdder incompressible = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+    private static final LongAdder deflateNanos = new LongAdder();
+
+    private static final class Cached {
+        final ByteBuffer source;
+        final ByteBuffer deflated;
+
+        Cached(ByteBuffer source, ByteBuffer deflated) {
+            this.source = source;
+            this.deflated = deflated;
+        }
+    }
+
+    private FrameDeflater() {
+    }
+
+    public static CompressionSettings settings() {
+        return SETTINGS;
+    }
+
+    /**
+     * Compress a payload that is shared between recipients (the buffer itself is the cache key,
+     * so it must not be modified afterwards)
+     *
+     * @return The deflated message (read-only, shared), or null to send it uncompressed
+     */
+    public static ByteBuffer compressShared(ByteBuffer payload) {
+        int size = payload.remaining();
+        if (size < SETTINGS.getMinBytes()) {
+            skippedSmall.increment();
+            return null;
+        }
+        if (size > SETTINGS.getCacheMaxBytes())
+            return deflate(payload);
+
+        int slot = System.identityHashCode(payload) & (cache.length() - 1);
+        Cached cached = cache.get(slot);
+        if (cached != null && cached.source == payload) {
+            cacheHits.increment();
+            return cached.deflated == INCOMPRESSIBLE ? null : cached.deflated;
+        }
+
+        ByteBuffer deflated = deflate(payload);
+        cache.set(slot, new Cached(payload, deflated != null ? deflated : INCOMPRESSIBLE));
+        return deflated;
+    }
+
+    /**
+     * Compress a payload sent once (not cached)
+     *
+     * @return The deflated message, or null to send it uncompressed
+     */
+    public static ByteBuffer compress(ByteBuffer payload) {
+        if (payload == null || payload.remaining() < SETTINGS.getMinBytes()) {
+            skippedSmall.increment();
+            return null;
+        }
+        return deflate(payload);
+    }
+
+    private static ByteBuffer deflate(ByteBuffer payload) {
+        long start = System.nanoTime();
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(payload.duplicate());
+
+        byte[] out = BUFFERS.get();
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(out, length, out.length - length, Deflater.SYNC_FLUSH);
+            if (length < out.length)
+                break;
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+        if (out.length <= 1024 * 1024)
+            BUFFERS.set(out);
+
+        // RFC 7692: drop the 00 00 ff ff tail of the sync flush
+        if (length >= 4 && out[length - 4] == 0 && out[length - 3] == 0
+                && out[length - 2] == (byte) 0xff && out[length - 1] == (byte) 0xff)
+            length -= 4;
+
+        int size = payload.remaining();
+        deflateNanos.add(System.nanoTime() - start);
+        if (length >= size) {
+            incompressible.increment();
+            return null;
+        }
+
+        compressed.increment();
+        bytesIn.add(size);
+        bytesOut.add(length);
+        return ByteBuffer.wrap(Arrays.copyOf(out, length)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Compression counters (for monitoring)
+     */
+    public static Map<String, Object> stats() {
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+        long deflated = compressed.sum();
+        long nanos = deflateNanos.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", SETTINGS.isEnabled());
+        stats.put("level", SETTINGS.getLevel());
+        stats.put("minBytes", SETTINGS.getMinBytes());
+        stats.put("compressed", deflated);
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("skippedSmall", skippedSmall.sum());
+        stats.put("incompressible", incompressible.sum());
+        stats.put("bytesIn", in);
+        stats.put("bytesOut", out);
+        stats.put("ratio", in > 0 ? Math.round(out * 1000.0 / in) / 1000.0 : 1.0);
+        stats.put("deflateMillis", nanos / 1_000_000);
+        stats.put("avgDeflateMicros", deflated + incompressible.sum() > 0
+                ? nanos / 1000 / (deflated + incompressible.sum()) : 0);
+        return stats;
+    }
+}
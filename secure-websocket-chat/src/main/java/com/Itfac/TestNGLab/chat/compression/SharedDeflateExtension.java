@@ -0,0 +1,93 @@
+package com.Itfac.TestNGLab.chat.compression;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.core.internal.WebSocketCoreSession;
+
+import java.nio.ByteBuffer;
+
+/**
+ * permessage-deflate that compresses every outgoing message independently
+ * (server_no_context_takeover), so compressed broadcast frames can be shared.
+ * Replaces Jetty's built-in extension under the same name; inbound decompression
+ * is left to Jetty.
+ * - Frames made by {@link #sharedFrame} already went through {@link FrameDeflater#compressShared}
+ *   (compressed or not) and are passed through as they are
+ * - Other whole messages are compressed here, unless smaller than the configured threshold
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class SharedDeflateExtension extends PerMessageDeflateExtension {
+    public static final String NAME = "permessage-deflate";
+
+    /**
+     * Register (or, when compression is disabled, remove) the extension for new connections
+     */
+    public static void install(WebSocketComponents components) {
+        if (FrameDeflater.settings().isEnabled()) {
+            components.getExtensionRegistry().register(NAME, SharedDeflateExtension.class);
+        } else {
+            components.getExtensionRegistry().unregister(NAME);
+        }
+    }
+
+    /**
+     * A frame whose compression was already decided once for all recipients
+     * (by {@link FrameDeflater#compressShared}); never compressed again per connection
+     */
+    private static final class SharedFrame extends Frame {
+        SharedFrame(byte opCode, ByteBuffer payload) {
+            super(opCode, payload);
+        }
+    }
+
+    /**
+     * Wrap a payload from {@link FrameDeflater#compressShared} (deflated, or left as it was)
+     *
+     * @param deflated True if {@code payload} is deflated (RSV1 is set)
+     */
+    public static Frame sharedFrame(byte opCode, ByteBuffer payload, boolean deflated) {
+        Frame frame = new SharedFrame(opCode, payload);
+        frame.setRsv1(deflated);
+        return frame;
+    }
+
+    /**
+     * Whether frames for this session may be handed over pre-compressed (RSV1 set)
+     */
+    public static boolean isActive(CoreSession session) {
+        return session instanceof WebSocketCoreSession
+                && ((WebSocketCoreSession) session).getExtensionStack().getRsv1User() instanceof SharedDeflateExtension;
+    }
+
+    @Override
+    public void init(ExtensionConfig config, WebSocketComponents components) {
+        ExtensionConfig negotiated = new ExtensionConfig(config);
+        negotiated.setParameter("server_no_context_takeover");
+        super.init(negotiated, components);
+    }
+
+    @Override
+    public void sendFrame(Frame frame, Callback callback, boolean batch) {
+        // Control frames, fragments, and frames compressed (or not) once for a broadcast go out as they are
+        if (frame instanceof SharedFrame || frame.isRsv1() || !frame.isFin() || (frame.getOpCode() != OpCode.TEXT && frame.getOpCode() != OpCode.BINARY)) {
+            nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+
+        ByteBuffer deflated = FrameDeflater.compress(frame.getPayload());
+        if (deflated == null) {
+            nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        Frame compressed = new Frame(frame.getOpCode(), deflated.slice());
+        compressed.setRsv1(true);
+        nextOutgoingFrame(compressed, callback, batch);
+    }
+}
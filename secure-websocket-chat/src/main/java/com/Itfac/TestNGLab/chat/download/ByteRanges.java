@@ -0,0 +1,139 @@
+package com.Itfac.TestNGLab.chat.download;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parser for the HTTP Range header ({@code bytes=0-499, 1000-, -200}).
+ * - Invalid syntax, other units or too many ranges: the header is ignored (full response)
+ * - Ranges past the end are dropped; if none is left the request is unsatisfiable (416)
+ * - With an If-Range that no longer matches the file, the whole file is sent
+ * - Overlapping or adjacent ranges are coalesced, so a response is never larger than the file
+ *   plus its part headers
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class ByteRanges {
+
+    /**
+     * One satisfiable range, both ends inclusive
+     */
+    public static final class Range {
+        private final long start;
+        private final long end;
+
+        Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long length() {
+            return end - start + 1;
+        }
+
+        /**
+         * Content-Range value for a file of {@code size} bytes
+         */
+        public String contentRange(long size) {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Ranges of a request that may carry If-Range: they apply only if it names this version of the
+     * file (strong comparison: a weak ETag never matches)
+     *
+     * @param ifRange      If-Range header value (may be null)
+     * @param etag         Current ETag of the file
+     * @param lastModified Current Last-Modified value of the file
+     * @return As {@link #parse(String, long, int)}; null if If-Range does not match
+     */
+    public static List<Range> parse(String header, String ifRange, String etag, String lastModified, long size,
+            int maxRanges) {
+        if (ifRange != null && !ifRange.equals(etag) && !ifRange.equals(lastModified))
+            return null;
+        return parse(header, size, maxRanges);
+    }
+
+    /**
+     * @param header    Range header value (may be null)
+     * @param size      File size
+     * @param maxRanges Most ranges served; more make the header ignored
+     * @return Ranges in file order; null to send the whole file; empty if unsatisfiable
+     */
+    public static List<Range> parse(String header, long size, int maxRanges) {
+        if (header == null || !header.regionMatches(true, 0, "bytes=", 0, 6))
+            return null;
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > maxRanges)
+            return null;
+
+        List<Range> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String s = spec.trim();
+            int dash = s.indexOf('-');
+            if (dash < 0)
+                return null;
+            try {
+                long start;
+                long end;
+                if (dash == 0) { // suffix: the last N bytes
+                    long suffix = Long.parseLong(s.substring(1));
+                    if (suffix <= 0)
+                        continue;
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(s.substring(0, dash));
+                    if (dash == s.length() - 1) {
+                        end = size - 1;
+                    } else {
+                        end = Long.parseLong(s.substring(dash + 1));
+                        if (end < start)
+                            return null;
+                        end = Math.min(end, size - 1);
+                    }
+                }
+                if (start < 0)
+                    return null;
+                if (start < size)
+                    ranges.add(new Range(start, end));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    private static List<Range> coalesce(List<Range> ranges) {
+        if (ranges.size() < 2)
+            return ranges;
+        ranges.sort((a, b) -> Long.compare(a.start, b.start));
+        List<Range> merged = new ArrayList<>(ranges.size());
+        Range current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            Range next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new Range(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return Collections.unmodifiableList(merged);
+    }
+}
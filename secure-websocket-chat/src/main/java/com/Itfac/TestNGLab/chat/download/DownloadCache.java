@@ -0,0 +1,279 @@
+package com.Itfac.TestNGLab.chat.download;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process cache for /download, so a file shared in a busy room is served without touching
+ * the file system on every request.
+ * - Metadata (size, validators, content type, headers) is cached per download name, so a
+ *   hit needs no stat or content type probe; least recently used names are evicted
+ * - Contents of hot files are memory-mapped once, per file (names sharing an object share
+ *   the mapping), and written straight from the mapping
+ * - Admission: a file is mapped on its second request, so one-off downloads do not push out
+ *   hot files; eviction is least recently used, weighted by bytes, within a memory budget
+ *
+ * Entries must be invalidated when their file is deleted ({@link #invalidate}).
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class DownloadCache {
+    private static final int ADMIT_AFTER_HITS = 2;
+
+    /**
+     * Everything needed to answer a request for one download name
+     */
+    public static final class CachedFile {
+        private final Path path;
+        private final long size;
+        private final long modifiedSeconds;
+        private final String etag;
+        private final String lastModified;
+        private final String contentType;
+        private final String contentDisposition;
+        private final boolean immutable;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        CachedFile(Path path, long size, long modifiedSeconds, String etag, String contentType,
+                String contentDisposition, boolean immutable) {
+            this.path = path;
+            this.size = size;
+            this.modifiedSeconds = modifiedSeconds;
+            this.etag = etag;
+            this.lastModified = DateTimeFormatter.RFC_1123_DATE_TIME
+                    .format(Instant.ofEpochSecond(modifiedSeconds).atZone(ZoneOffset.UTC));
+            this.contentType = contentType;
+            this.contentDisposition = contentDisposition;
+            this.immutable = immutable;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModifiedSeconds() {
+            return modifiedSeconds;
+        }
+
+        /**
+         * Quoted strong entity tag
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Last-Modified header value
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getContentDisposition() {
+            return contentDisposition;
+        }
+
+        /**
+         * True for content-addressed files, whose URL can be cached for good
+         */
+        public boolean isImmutable() {
+            return immutable;
+        }
+    }
+
+    private final int maxFiles;
+    private final long maxBytes;
+    private final long maxFileBytes;
+
+    // Guarded by this; both access-ordered, eldest first
+    private final Map<String, CachedFile> files = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Path, ByteBuffer> contents = new LinkedHashMap<>(64, 0.75f, true);
+    private long contentBytes;
+
+    private long hits;
+    private long misses;
+    private long contentHits;
+    private long contentMisses;
+    private long evictions;
+
+    /**
+     * @param maxFiles     Download names whose metadata is kept
+     * @param maxBytes     Memory budget for mapped contents
+     * @param maxFileBytes Largest file mapped (bigger files are always streamed from disk)
+     */
+    public DownloadCache(int maxFiles, long maxBytes, long maxFileBytes) {
+        this.maxFiles = Math.max(1, maxFiles);
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = Math.min(maxFileBytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Cached metadata of a download name, or null on a miss
+     */
+    public synchronized CachedFile get(String name) {
+        CachedFile file = files.get(name);
+        if (file == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return file;
+    }
+
+    /**
+     * Stat a file and cache its metadata under {@code name} (for files without stored metadata)
+     *
+     * @param etag Quoted strong tag if the caller has one (e.g. a content digest), or null to
+     *             derive one from size and modification time
+     * @return The metadata, or null if the file does not exist (not cached)
+     */
+    public CachedFile load(String name, Path path, String originalName, String etag) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (attributes.isDirectory())
+            return null;
+
+        long size = attributes.size();
+        long modifiedSeconds = attributes.lastModifiedTime().toMillis() / 1000;
+        String contentType;
+        try {
+            // Store objects have no extension: the type is probed from the download name
+            contentType = Files.probeContentType(Paths.get(name));
+        } catch (IOException e) {
+            contentType = null;
+        }
+        return add(name, path, originalName,
+                etag != null ? etag : "\"" + Long.toHexString(size) + "-" + Long.toHexString(modifiedSeconds) + "\"",
+                size, modifiedSeconds, contentType, etag != null);
+    }
+
+    /**
+     * Cache metadata the caller already knows (no file system access)
+     *
+     * @param etag      Quoted strong entity tag
+     * @param immutable True if the file behind {@code name} never changes
+     */
+    public CachedFile add(String name, Path path, String originalName, String etag, long size,
+            long modifiedSeconds, String contentType, boolean immutable) {
+        String encodedName = URLEncoder.encode(originalName, StandardCharsets.UTF_8).replace("+", "%20");
+        CachedFile file = new CachedFile(path, size, modifiedSeconds, etag,
+                contentType != null ? contentType : "application/octet-stream",
+                "attachment; filename=\"" + originalName.replaceAll("[\\r\\n\"]", "_")
+                        + "\"; filename*=UTF-8''" + encodedName,
+                immutable);
+
+        synchronized (this) {
+            files.put(name, file);
+            Iterator<CachedFile> eldest = files.values().iterator();
+            while (files.size() > maxFiles) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Mapped contents of a file (read-only, position 0), or null to stream it from disk
+     * (too large, not requested often enough yet, or mapping failed)
+     */
+    public ByteBuffer contents(CachedFile file) {
+        int requests = file.requests.incrementAndGet();
+        synchronized (this) {
+            ByteBuffer mapped = contents.get(file.path);
+            if (mapped != null) {
+                contentHits++;
+                return mapped.duplicate();
+            }
+            contentMisses++;
+            if (requests < ADMIT_AFTER_HITS || file.size == 0 || file.size > maxFileBytes || file.size > maxBytes)
+                return null;
+
+            try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+                if (channel.size() != file.size)
+                    return null; // changed since it was cached
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, file.size);
+            } catch (IOException e) {
+                System.err.println("Could not map " + file.path + ": " + e.getMessage());
+                return null;
+            }
+            contents.put(file.path, mapped);
+            contentBytes += file.size;
+
+            // Byte-weighted LRU: evict the least recently served files until the budget holds
+            Iterator<ByteBuffer> eldest = contents.values().iterator();
+            while (contentBytes > maxBytes && eldest.hasNext()) {
+                ByteBuffer evicted = eldest.next();
+                if (evicted == mapped)
+                    break;
+                contentBytes -= evicted.capacity();
+                eldest.remove();
+                evictions++;
+            }
+            return mapped.duplicate();
+        }
+    }
+
+    /**
+     * Forget a download name (and the file's mapping), e.g. after the file was deleted
+     */
+    public synchronized void invalidate(String name) {
+        CachedFile file = files.remove(name);
+        if (file != null)
+            invalidate(file.path);
+    }
+
+    /**
+     * Forget a file under every name it is cached by
+     */
+    public synchronized void invalidate(Path path) {
+        files.values().removeIf(file -> file.path.equals(path));
+        ByteBuffer mapped = contents.remove(path);
+        if (mapped != null)
+            contentBytes -= mapped.capacity();
+    }
+
+    /**
+     * Cache statistics (for monitoring)
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("cachedFiles", files.size());
+        stats.put("contentHits", contentHits);
+        stats.put("contentMisses", contentMisses);
+        stats.put("mappedFiles", contents.size());
+        stats.put("mappedBytes", contentBytes);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+}
@@ -0,0 +1,204 @@
+package com.Itfac.TestNGLab.chat.history;
+
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+import com.Itfac.TestNGLab.chat.store.RoomLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Pages of a room's history for scroll-back (GET /history), addressed by a sequence cursor.
+ * - A page holds the messages with a sequence in [before - limit, before), oldest first
+ * - Recent pages are served from the history ring, older ones from the durable log
+ *   (its sparse index locates the first record, so a page costs one short read)
+ * - Messages never change once sequenced, so built pages are cached and carry a strong ETag;
+ *   a page is rebuilt only when retention has removed part of its range
+ *
+ * Body format:
+ * {"room":"general","firstSequence":51,"lastSequence":100,"nextBefore":51,"messages":[...]}
+ * nextBefore is the cursor of the previous (older) page, or null at the start of the history.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class HistoryPages {
+
+    /**
+     * A built page: JSON body plus its ETag
+     */
+    public static final class Page {
+        private final int count;
+        private final byte[] body;
+        private final String etag;
+
+        Page(int count, byte[] body, String etag) {
+            this.count = count;
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Quoted strong entity tag, e.g. "51-100-3f2a9c01"
+         */
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private static final byte[] SEPARATOR = { ',' };
+    private static final byte[] SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+    private final String room;
+    private final HistoryRing ring;
+    private final RoomLog log;
+    private final Map<String, Page> cache;
+
+    /**
+     * @param room      Room id embedded in every page (must not need JSON escaping)
+     * @param log       Durable log, or null to page through the ring only
+     * @param cacheSize Pages kept per room (least recently used are evicted)
+     */
+    public HistoryPages(String room, HistoryRing ring, RoomLog log, int cacheSize) {
+        this.room = room;
+        this.ring = ring;
+        this.log = log;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * The page of up to {@code limit} messages before the cursor
+     *
+     * @param before Exclusive upper bound on sequence numbers, or null for the latest page
+     */
+    public Page page(Long before, int limit) throws IOException {
+        long last = ring.lastSequence();
+        long end = before == null ? last + 1 : Math.max(1, Math.min(before, last + 1));
+        long oldest = oldestSequence();
+        long from = Math.min(end, Math.max(oldest, end - limit));
+
+        String key = from + ":" + end;
+        synchronized (cache) {
+            Page hit = cache.get(key);
+            if (hit != null)
+                return hit;
+        }
+
+        Page page = build(from, end, oldest);
+        synchronized (cache) {
+            cache.put(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * JSON frame of a single message (from the ring, else from the log)
+     *
+     * @return The frame, or null if it is no longer available
+     */
+    public ByteBuffer message(long sequence) throws IOException {
+        HistoryRing.Entry entry = ring.get(sequence);
+        if (entry != null)
+            return entry.getFrame().get(WireFormat.JSON).duplicate();
+        if (log == null || sequence < log.firstSequence())
+            return null;
+
+        ByteBuffer[] found = { null };
+        log.readSince(sequence - 1, 1, (json, seq) -> {
+            if (seq == sequence)
+                found[0] = json;
+        });
+        return found[0];
+    }
+
+    /**
+     * Oldest sequence that can still be served (from the log if it has one, else from the ring)
+     */
+    private long oldestSequence() {
+        long ringOldest = Math.max(1, ring.lastSequence() - ring.size() + 1);
+        long logOldest = log != null ? log.firstSequence() : 0;
+        return logOldest > 0 ? Math.min(logOldest, ringOldest) : ringOldest;
+    }
+
+    private Page build(long from, long end, long oldest) throws IOException {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        long[] range = { 0, 0, 0 }; // first, last, count
+
+        // The ring is lock-free: entries overwritten while reading are missing, so fall back to the log
+        List<HistoryRing.Entry> entries = ring.snapshotSince(from - 1);
+        int expected = (int) (end - from);
+        boolean fromRing = log == null;
+        if (!fromRing) {
+            int inRange = 0;
+            for (HistoryRing.Entry entry : entries) {
+                if (entry.getSequence() < end)
+                    inRange++;
+            }
+            fromRing = inRange == expected;
+        }
+
+        if (fromRing) {
+            for (HistoryRing.Entry entry : entries) {
+                if (entry.getSequence() < end)
+                    add(messages, range, entry.getSequence(), entry.getFrame().get(WireFormat.JSON));
+            }
+        } else if (expected > 0) {
+            log.readSince(from - 1, expected, (json, sequence) -> {
+                if (sequence < end)
+                    add(messages, range, sequence, json);
+            });
+        }
+
+        byte[] prefix = ("{\"room\":\"" + room + "\",\"firstSequence\":" + range[0]
+                + ",\"lastSequence\":" + range[1]
+                + ",\"nextBefore\":" + (from > oldest ? Long.toString(from) : "null")
+                + ",\"messages\":[").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(prefix.length + messages.size() + SUFFIX.length);
+        body.write(prefix);
+        messages.writeTo(body);
+        body.write(SUFFIX);
+        byte[] bytes = body.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        String etag = "\"" + from + "-" + (end - 1) + "-" + Long.toHexString(crc.getValue()) + "\"";
+        return new Page((int) range[2], bytes, etag);
+    }
+
+    private static void add(ByteArrayOutputStream out, long[] range, long sequence, ByteBuffer json) {
+        if (range[2] == 0) {
+            range[0] = sequence;
+        } else {
+            out.write(SEPARATOR, 0, SEPARATOR.length);
+        }
+        range[1] = sequence;
+        range[2]++;
+
+        ByteBuffer frame = json.duplicate();
+        if (frame.hasArray()) {
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        } else {
+            byte[] copy = new byte[frame.remaining()];
+            frame.get(copy);
+            out.write(copy, 0, copy.length);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.Itfac.TestNGLab.chat.history;
+
+import com.Itfac.TestNGLab.chat.codec.MsgPackWriter;
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Builds HISTORY_BATCH frames for history replay.
+ * - Stored entries are already encoded, so a batch is plain byte concatenation
+ * - Batches are size-bounded; large backlogs are split across a few frames
+ * - The most recent replay is cached per wire format, so a reconnect storm asking
+ *   for the same window reuses the same frames
+ *
+ * Frame format (MessagePack clients get the same structure as a map):
+ * {"type":"HISTORY_BATCH","payload":{"room":"general","firstSequence":1,"lastSequence":9,"complete":true,"messages":[...]}}
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class HistoryReplay {
+    public static final String TYPE = "HISTORY_BATCH";
+
+    private static final byte[] SEPARATOR = { ',' };
+    private static final byte[] SUFFIX = "]}}".getBytes(StandardCharsets.UTF_8);
+
+    private static final class Cached {
+        final long afterSequence;
+        final long lastSequence;
+        final List<ByteBuffer> frames;
+
+        Cached(long afterSequence, long lastSequence, List<ByteBuffer> frames) {
+            this.afterSequence = afterSequence;
+            this.lastSequence = lastSequence;
+            this.frames = frames;
+        }
+    }
+
+    private final String room;
+    private final HistoryRing ring;
+    private final int maxBatchBytes;
+    private final AtomicReferenceArray<Cached> cached = new AtomicReferenceArray<>(WireFormat.values().length);
+
+    /**
+     * @param room Room id embedded in every batch (must not need JSON escaping)
+     */
+    public HistoryReplay(String room, HistoryRing ring, int maxBatchBytes) {
+        this.room = room;
+        this.ring = ring;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * HISTORY_BATCH frames covering every entry after {@code afterSequence}, in {@code format}.
+     * Always returns at least one frame (an empty, complete batch if there is no gap).
+     */
+    public List<ByteBuffer> framesSince(long afterSequence, WireFormat format) {
+        long last = ring.lastSequence();
+        Cached hit = cached.get(format.ordinal());
+        if (hit != null && hit.afterSequence == afterSequence && hit.lastSequence == last)
+            return hit.frames;
+
+        List<HistoryRing.Entry> entries = ring.snapshotSince(afterSequence);
+        List<ByteBuffer> frames = build(entries, format);
+        long built = entries.isEmpty() ? last : entries.get(entries.size() - 1).getSequence();
+        cached.set(format.ordinal(), new Cached(afterSequence, built, frames));
+        return frames;
+    }
+
+    private List<ByteBuffer> build(List<HistoryRing.Entry> entries, WireFormat format) {
+        if (entries.isEmpty())
+            return Collections.singletonList(frame(Collections.emptyList(), 0, 0, true, format));
+
+        List<ByteBuffer> frames = new ArrayList<>();
+        List<HistoryRing.Entry> batch = new ArrayList<>();
+        int batchBytes = 0;
+
+        for (HistoryRing.Entry entry : entries) {
+            int size = entry.getFrame().get(format).remaining() + SEPARATOR.length;
+            if (!batch.isEmpty() && batchBytes + size > maxBatchBytes) {
+                frames.add(frame(batch, batchBytes, batch.get(0).getSequence(), false, format));
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(entry);
+            batchBytes += size;
+        }
+        frames.add(frame(batch, batchBytes, batch.get(0).getSequence(), true, format));
+        return Collections.unmodifiableList(frames);
+    }
+
+    private ByteBuffer frame(List<HistoryRing.Entry> batch, int bodyBytes, long first, boolean complete,
+            WireFormat format) {
+        long last = batch.isEmpty() ? 0 : batch.get(batch.size() - 1).getSequence();
+        if (format == WireFormat.MSGPACK)
+            return msgPackFrame(batch, first, last, complete);
+
+        byte[] prefix = ("{\"type\":\"" + TYPE + "\",\"payload\":{\"room\":\"" + room
+                + "\",\"firstSequence\":" + first
+                + ",\"lastSequence\":" + last + ",\"complete\":" + complete + ",\"messages\":[")
+                .getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer out = ByteBuffer.allocate(prefix.length + bodyBytes + SUFFIX.length);
+        out.put(prefix);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0)
+                out.put(SEPARATOR);
+            out.put(batch.get(i).getFrame().get(WireFormat.JSON).duplicate());
+        }
+        out.put(SUFFIX);
+        out.flip();
+        return out.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer msgPackFrame(List<HistoryRing.Entry> batch, long first, long last, boolean complete) {
+        MsgPackWriter writer = MsgPackWriter.get();
+        writer.mapHeader(2).value("type").value(TYPE).value("payload").mapHeader(5)
+                .value("room").value(room)
+                .value("firstSequence").value(first)
+                .value("lastSequence").value(last)
+                .value("complete").value(complete)
+                .value("messages").arrayHeader(batch.size());
+        for (HistoryRing.Entry entry : batch) {
+            writer.raw(entry.getFrame().get(WireFormat.MSGPACK));
+        }
+        return writer.toByteBuffer();
+    }
+}
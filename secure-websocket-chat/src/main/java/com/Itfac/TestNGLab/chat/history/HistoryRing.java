@@ -0,0 +1,146 @@
+package com.Itfac.TestNGLab.chat.history;
+
+import com.Itfac.TestNGLab.chat.codec.EncodedFrame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Fixed-capacity ring buffer of pre-serialized history frames.
+ * - One writer at a time (appends are O(1), nothing is ever shifted)
+ * - Any number of readers take snapshots without locking
+ * - Every entry carries a monotonically increasing sequence number
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class HistoryRing {
+
+    /**
+     * A history entry: the message type plus its encoded frame (JSON, other wire formats on demand)
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final String type;
+        private final EncodedFrame frame;
+
+        Entry(long sequence, String type, EncodedFrame frame) {
+            this.sequence = sequence;
+            this.type = type;
+            this.frame = frame;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Shared frame; buffers it returns must be sliced/duplicated before being consumed
+         */
+        public EncodedFrame getFrame() {
+            return frame;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int capacity;
+
+    // Sequence number the next append will receive (published after the slot is written)
+    private volatile long nextSequence = 1;
+
+    public HistoryRing(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Append a frame, overwriting the oldest entry once the ring is full.
+     * The encoder receives the assigned sequence number, so frames can embed it
+     * and sequence order always matches ring order.
+     *
+     * @return The stored entry
+     */
+    public synchronized Entry append(String type, LongFunction<EncodedFrame> encoder) {
+        long sequence = nextSequence;
+        Entry entry = new Entry(sequence, type, encoder.apply(sequence));
+        slots.set(index(sequence), entry);
+        nextSequence = sequence + 1; // volatile write publishes the slot to readers
+        return entry;
+    }
+
+    /**
+     * Put back an entry read from the durable log at startup (sequences in increasing order);
+     * later appends continue after it
+     */
+    public synchronized void restore(long sequence, String type, EncodedFrame frame) {
+        if (sequence < nextSequence)
+            throw new IllegalArgumentException("Restored sequence " + sequence + " is not after " + lastSequence());
+        slots.set(index(sequence), new Entry(sequence, type, frame));
+        nextSequence = sequence + 1;
+    }
+
+    /**
+     * Lock-free snapshot of the whole ring, oldest first
+     */
+    public List<Entry> snapshot() {
+        return snapshotSince(0);
+    }
+
+    /**
+     * Lock-free snapshot of entries with a sequence greater than {@code afterSequence}, oldest first.
+     * Entries overwritten by the writer while reading are skipped (they fell out of the window).
+     */
+    public List<Entry> snapshotSince(long afterSequence) {
+        long end = nextSequence;
+        long start = Math.max(Math.max(1, end - capacity), afterSequence + 1);
+        if (start >= end)
+            return Collections.emptyList();
+
+        List<Entry> entries = new ArrayList<>((int) (end - start));
+        for (long seq = start; seq < end; seq++) {
+            Entry entry = slots.get(index(seq));
+            if (entry != null && entry.sequence == seq)
+                entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * The entry with {@code sequence}, or null if it is not (or no longer) in the ring
+     */
+    public Entry get(long sequence) {
+        long end = nextSequence;
+        if (sequence <= 0 || sequence >= end || sequence < end - capacity)
+            return null;
+        Entry entry = slots.get(index(sequence));
+        return entry != null && entry.sequence == sequence ? entry : null;
+    }
+
+    /**
+     * Sequence number of the most recent entry (0 if empty)
+     */
+    public long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    public int size() {
+        return (int) Math.min(capacity, nextSequence - 1);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
@@ -10,6 +10,7 @@ public class Message {
     private String type;
     private Payload payload;
     private String timestamp; // HH:mm:ss format
+    private Long sequence; // History sequence number (set on messages saved to history)
 
     public Message(String type, Payload payload) {
         this.type = type;
@@ -32,14 +33,27 @@ public class Message {
         this.timestamp = timestamp;
     }
 
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
     public static class Payload {
         private String username;
+        private String room; // Room (channel) id; null = default room
         private String text;
         private String[] users;
         private String filename; // For file upload notifications
         private String filesize; // Size of the uploaded file
         private String url; // Download URL for the uploaded file
         private String duration; // Duration for voice messages (e.g., "0:15")
+        private String mimeType; // FILE_UPDATE: type detected from the file's contents
+        private String thumbnail; // FILE_UPDATE: thumbnail URL of an image
+        private Long since; // JOIN: replay history as HISTORY_BATCH after this sequence
+        private Long version; // User list version (USER_LIST_UPDATE / USER_JOINED / USER_LEFT)
 
         // Whiteboard drawing data
         private Object drawData; // Drawing coordinates and style data
@@ -60,6 +74,14 @@ public class Message {
             return username;
         }
 
+        public String getRoom() {
+            return room;
+        }
+
+        public void setRoom(String room) {
+            this.room = room;
+        }
+
         public String getText() {
             return text;
         }
@@ -112,6 +134,38 @@ public class Message {
             this.duration = duration;
         }
 
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public void setMimeType(String mimeType) {
+            this.mimeType = mimeType;
+        }
+
+        public String getThumbnail() {
+            return thumbnail;
+        }
+
+        public void setThumbnail(String thumbnail) {
+            this.thumbnail = thumbnail;
+        }
+
+        public Long getSince() {
+            return since;
+        }
+
+        public void setSince(Long since) {
+            this.since = since;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
         public Object getDrawData() {
             return drawData;
         }
@@ -0,0 +1,110 @@
+package com.Itfac.TestNGLab.chat.presence;
+
+import com.Itfac.TestNGLab.chat.models.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces a room's joins and leaves into versioned USER_JOINED / USER_LEFT deltas.
+ * - Changes collected within one debounce window are flushed together
+ * - A join and a leave of the same name inside the window cancel out
+ * - Every delta frame bumps the version; a client that sees a gap asks for
+ *   a full USER_LIST_UPDATE snapshot (which carries the current version)
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class PresenceBatcher {
+    public static final String USER_JOINED = "USER_JOINED";
+    public static final String USER_LEFT = "USER_LEFT";
+
+    private final String room;
+
+    // Username -> true (joined) / false (left), in arrival order
+    private final Map<String, Boolean> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private long version;
+
+    public PresenceBatcher(String room) {
+        this.room = room;
+    }
+
+    /**
+     * Record a join
+     *
+     * @return true if the caller must schedule a flush for this window
+     */
+    public synchronized boolean joined(String username) {
+        return record(username, true);
+    }
+
+    /**
+     * Record a leave
+     *
+     * @return true if the caller must schedule a flush for this window
+     */
+    public synchronized boolean left(String username) {
+        return record(username, false);
+    }
+
+    private boolean record(String username, boolean joined) {
+        Boolean previous = pending.remove(username);
+        if (previous == null || previous == joined)
+            pending.put(username, joined); // otherwise the opposite change cancels it out
+
+        if (flushScheduled)
+            return false;
+        flushScheduled = true;
+        return true;
+    }
+
+    /**
+     * Take the changes of the current window as delta messages (empty if they cancelled out)
+     */
+    public synchronized List<Message> drain() {
+        flushScheduled = false;
+        if (pending.isEmpty())
+            return Collections.emptyList();
+
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (Map.Entry<String, Boolean> change : pending.entrySet()) {
+            (change.getValue() ? joined : left).add(change.getKey());
+        }
+        pending.clear();
+
+        List<Message> deltas = new ArrayList<>(2);
+        if (!left.isEmpty())
+            deltas.add(delta(USER_LEFT, left));
+        if (!joined.isEmpty())
+            deltas.add(delta(USER_JOINED, joined));
+        return deltas;
+    }
+
+    /**
+     * Full, versioned user list snapshot
+     */
+    public synchronized Message snapshot(List<String> usernames) {
+        return message("USER_LIST_UPDATE", usernames, version);
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    private Message delta(String type, List<String> usernames) {
+        return message(type, usernames, ++version);
+    }
+
+    private Message message(String type, List<String> usernames, long version) {
+        Message.Payload payload = new Message.Payload();
+        payload.setRoom(room);
+        payload.setUsers(usernames.toArray(new String[0]));
+        payload.setVersion(version);
+        return new Message(type, payload);
+    }
+}
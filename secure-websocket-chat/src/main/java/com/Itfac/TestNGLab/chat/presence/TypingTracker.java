@@ -0,0 +1,109 @@
+package com.Itfac.TestNGLab.chat.presence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side typing state for one room.
+ * - TYPING refreshes a user's expiry; it is announced at most once per announce interval
+ * - Announcements are not sent per keystroke: a periodic sweep emits one aggregated
+ *   "who is typing" list, and reports users whose entries expired (STOP_TYPING)
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class TypingTracker {
+    // Configuration (milliseconds)
+    static final long TTL_MS = Long.getLong("typing.ttlMs", 5000L);
+    static final long ANNOUNCE_INTERVAL_MS = Long.getLong("typing.announceIntervalMs", 2000L);
+
+    /**
+     * Result of a sweep: users whose typing entry expired, plus the aggregated
+     * list of current typers if it needs to be announced (null otherwise)
+     */
+    public static final class Sweep {
+        private final List<String> expired;
+        private final List<String> typing;
+
+        Sweep(List<String> expired, List<String> typing) {
+            this.expired = expired;
+            this.typing = typing;
+        }
+
+        public List<String> getExpired() {
+            return expired;
+        }
+
+        public List<String> getTyping() {
+            return typing;
+        }
+    }
+
+    private static final class Entry {
+        long expiresAt;
+        long lastAnnounced;
+    }
+
+    private final Map<String, Entry> typing = new LinkedHashMap<>();
+    private boolean dirty;
+
+    /**
+     * Record a TYPING event (cheap; nothing is broadcast here)
+     */
+    public synchronized void typing(String username, long now) {
+        Entry entry = typing.get(username);
+        if (entry == null) {
+            entry = new Entry();
+            typing.put(username, entry);
+            entry.lastAnnounced = now;
+            dirty = true;
+        } else if (now - entry.lastAnnounced >= ANNOUNCE_INTERVAL_MS) {
+            entry.lastAnnounced = now;
+            dirty = true;
+        }
+        entry.expiresAt = now + TTL_MS;
+    }
+
+    /**
+     * Record an explicit STOP_TYPING (or disconnect)
+     *
+     * @return true if the user was typing
+     */
+    public synchronized boolean stop(String username) {
+        return typing.remove(username) != null;
+    }
+
+    /**
+     * Expire stale entries and collect the aggregated list if it changed
+     *
+     * @return null if there is nothing to send
+     */
+    public synchronized Sweep sweep(long now) {
+        if (typing.isEmpty() && !dirty)
+            return null;
+
+        List<String> expired = Collections.emptyList();
+        Iterator<Map.Entry<String, Entry>> it = typing.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (entry.getValue().expiresAt <= now) {
+                if (expired.isEmpty())
+                    expired = new ArrayList<>();
+                expired.add(entry.getKey());
+                it.remove();
+            }
+        }
+
+        // Typers who already expired are covered by their STOP_TYPING
+        List<String> announce = dirty && !typing.isEmpty() ? new ArrayList<>(typing.keySet()) : null;
+        dirty = false;
+
+        if (expired.isEmpty() && announce == null)
+            return null;
+        return new Sweep(expired, announce);
+    }
+}
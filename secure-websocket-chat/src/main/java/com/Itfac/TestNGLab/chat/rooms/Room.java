@@ -0,0 +1,158 @@
+package com.Itfac.TestNGLab.chat.rooms;
+
+import com.Itfac.TestNGLab.chat.broadcast.FanOutEngine;
+import com.Itfac.TestNGLab.chat.broadcast.OutboundQueue;
+import com.Itfac.TestNGLab.chat.codec.EncodedFrame;
+import com.Itfac.TestNGLab.chat.codec.MessageCodec;
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+import com.Itfac.TestNGLab.chat.history.HistoryPages;
+import com.Itfac.TestNGLab.chat.history.HistoryReplay;
+import com.Itfac.TestNGLab.chat.history.HistoryRing;
+import com.Itfac.TestNGLab.chat.presence.PresenceBatcher;
+import com.Itfac.TestNGLab.chat.presence.TypingTracker;
+import com.Itfac.TestNGLab.chat.store.RoomLog;
+import com.Itfac.TestNGLab.chat.whiteboard.Canvas;
+import com.Itfac.TestNGLab.chat.whiteboard.StrokeBatcher;
+import io.javalin.websocket.WsContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A chat room (channel) with its own members, history and whiteboard.
+ * Broadcasts only touch this room's sessions, so their cost scales with room size.
+ * With a durable log, the history ring is refilled from the log's tail when the room is opened.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class Room {
+    // Scroll-back pages cached per room (see HistoryPages)
+    private static final int PAGE_CACHE_SIZE = 32;
+
+    private final String id;
+
+    // Members: fan-out snapshot (shares each connection's outbound queue) + usernames
+    private final FanOutEngine members = new FanOutEngine();
+    private final Map<WsContext, String> usernames = new ConcurrentHashMap<>();
+
+    private final HistoryRing history;
+    private final HistoryReplay replay;
+    private final HistoryPages pages;
+    private final PresenceBatcher presence;
+    private final TypingTracker typing = new TypingTracker();
+    private final StrokeBatcher strokes = new StrokeBatcher();
+    private final Canvas canvas = new Canvas();
+    private final RoomLog log; // null when history is not persisted
+
+    Room(String id, int historyCapacity, int batchMaxBytes, RoomLog log) {
+        this.id = id;
+        this.history = new HistoryRing(historyCapacity);
+        this.replay = new HistoryReplay(id, history, batchMaxBytes);
+        this.presence = new PresenceBatcher(id);
+        this.log = log;
+        this.pages = new HistoryPages(id, history, log, PAGE_CACHE_SIZE);
+        if (log != null)
+            restoreHistory(log, historyCapacity);
+    }
+
+    /**
+     * Reload the most recent {@code capacity} messages from the log (only the tail is read)
+     */
+    private void restoreHistory(RoomLog log, int capacity) {
+        long after = Math.max(0, log.lastSequence() - capacity);
+        try {
+            int restored = log.readSince(after, capacity, (json, sequence) -> {
+                String type = MessageCodec.scanHeader(StandardCharsets.UTF_8.decode(json.duplicate()).toString()).getType();
+                history.restore(sequence, type, EncodedFrame.ofEncoded(type, id, WireFormat.JSON, json));
+            });
+            if (restored > 0)
+                System.out.println("Room " + id + ": restored " + restored + " messages up to #" + history.lastSequence());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Room " + id + ": could not restore history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Add a connection to the room
+     *
+     * @return false if it was already a member
+     */
+    public boolean join(WsContext ctx, OutboundQueue queue, String username) {
+        if (usernames.putIfAbsent(ctx, username) != null)
+            return false;
+        members.add(queue);
+        return true;
+    }
+
+    /**
+     * Remove a connection from the room
+     *
+     * @return false if it was not a member
+     */
+    public boolean leave(WsContext ctx) {
+        if (usernames.remove(ctx) == null)
+            return false;
+        members.remove(ctx);
+        return true;
+    }
+
+    public boolean isMember(WsContext ctx) {
+        return usernames.containsKey(ctx);
+    }
+
+    public List<String> usernames() {
+        return new ArrayList<>(usernames.values());
+    }
+
+    public int size() {
+        return usernames.size();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public FanOutEngine members() {
+        return members;
+    }
+
+    public HistoryRing history() {
+        return history;
+    }
+
+    public HistoryReplay replay() {
+        return replay;
+    }
+
+    public HistoryPages pages() {
+        return pages;
+    }
+
+    public PresenceBatcher presence() {
+        return presence;
+    }
+
+    public TypingTracker typing() {
+        return typing;
+    }
+
+    public StrokeBatcher strokes() {
+        return strokes;
+    }
+
+    public Canvas canvas() {
+        return canvas;
+    }
+
+    /**
+     * Durable history log, or null if persistence is disabled
+     */
+    public RoomLog log() {
+        return log;
+    }
+}
@@ -0,0 +1,101 @@
+package com.Itfac.TestNGLab.chat.rooms;
+
+import com.Itfac.TestNGLab.chat.store.ChatLog;
+import com.Itfac.TestNGLab.chat.store.RoomLog;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of chat rooms, created on first JOIN.
+ * - Room ids: 1-64 chars of [A-Za-z0-9_-]; missing id = default room
+ * - The number of rooms is capped (-Drooms.max) so clients cannot exhaust memory
+ * - With a {@link ChatLog}, each room gets its durable log when it is created
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class RoomRegistry {
+    public static final String DEFAULT_ROOM = "general";
+
+    private static final Pattern ROOM_ID = Pattern.compile("^[A-Za-z0-9_-]{1,64}$");
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final int maxRooms;
+    private final int historyCapacity;
+    private final int batchMaxBytes;
+    private final ChatLog chatLog;
+
+    /**
+     * @param chatLog Durable history, or null to keep history in memory only
+     */
+    public RoomRegistry(int maxRooms, int historyCapacity, int batchMaxBytes, ChatLog chatLog) {
+        this.maxRooms = maxRooms;
+        this.historyCapacity = historyCapacity;
+        this.batchMaxBytes = batchMaxBytes;
+        this.chatLog = chatLog;
+        rooms.put(DEFAULT_ROOM, newRoom(DEFAULT_ROOM));
+    }
+
+    private Room newRoom(String roomId) {
+        RoomLog log = null;
+        if (chatLog != null) {
+            try {
+                log = chatLog.open(roomId);
+            } catch (IOException e) {
+                System.err.println("Room " + roomId + ": chat log unavailable, history kept in memory only: "
+                        + e.getMessage());
+            }
+        }
+        return new Room(roomId, historyCapacity, batchMaxBytes, log);
+    }
+
+    /**
+     * Normalize a client-supplied room id
+     *
+     * @return The room id, DEFAULT_ROOM if none was given, or null if it is invalid
+     */
+    public static String normalize(String roomId) {
+        if (roomId == null || roomId.isBlank())
+            return DEFAULT_ROOM;
+        String trimmed = roomId.trim();
+        return ROOM_ID.matcher(trimmed).matches() ? trimmed : null;
+    }
+
+    /**
+     * Get an existing room or create it
+     *
+     * @return The room, or null if the limit on rooms has been reached
+     */
+    public Room getOrCreate(String roomId) {
+        Room room = rooms.get(roomId);
+        if (room != null)
+            return room;
+        if (rooms.size() >= maxRooms)
+            return null;
+        return rooms.computeIfAbsent(roomId, this::newRoom);
+    }
+
+    /**
+     * Get an existing room, or open one whose history is on disk (e.g. after a restart)
+     *
+     * @return The room, or null if it has no history or the limit on rooms has been reached
+     */
+    public Room getWithHistory(String roomId) {
+        Room room = rooms.get(roomId);
+        if (room != null || chatLog == null || !chatLog.exists(roomId))
+            return room;
+        return getOrCreate(roomId);
+    }
+
+    public Room get(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    public Collection<Room> all() {
+        return rooms.values();
+    }
+}
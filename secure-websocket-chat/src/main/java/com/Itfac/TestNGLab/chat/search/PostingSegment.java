@@ -0,0 +1,196 @@
+package com.Itfac.TestNGLab.chat.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable part of the {@link SearchIndex}: a sorted term dictionary and, per term,
+ * the documents containing it as a delta-encoded varint list of local doc ids.
+ * Doc ids are local to the segment (0 = oldest), so deltas stay small.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+final class PostingSegment {
+    private final String[] terms;       // sorted
+    private final int[] offsets;        // start of each term's postings; offsets[terms.length] = end
+    private final int[] frequencies;    // documents per term
+    private final byte[] postings;
+
+    // Per document: room and sequence number of the message
+    private final String[] docRooms;
+    private final long[] docSequences;
+
+    private PostingSegment(String[] terms, int[] offsets, int[] frequencies, byte[] postings,
+            String[] docRooms, long[] docSequences) {
+        this.terms = terms;
+        this.offsets = offsets;
+        this.frequencies = frequencies;
+        this.postings = postings;
+        this.docRooms = docRooms;
+        this.docSequences = docSequences;
+    }
+
+    /**
+     * Freeze a buffer of documents; each posting list must be in increasing doc order
+     */
+    static PostingSegment build(Map<String, int[]> termDocs, String[] docRooms, long[] docSequences) {
+        String[] terms = termDocs.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+
+        int[] offsets = new int[terms.length + 1];
+        int[] frequencies = new int[terms.length];
+        Encoder encoder = new Encoder(terms.length * 4);
+        for (int t = 0; t < terms.length; t++) {
+            offsets[t] = encoder.size;
+            int[] docs = termDocs.get(terms[t]);
+            frequencies[t] = docs.length;
+            encoder.encode(docs, 0, -1);
+        }
+        offsets[terms.length] = encoder.size;
+        return new PostingSegment(terms, offsets, frequencies, encoder.toArray(), docRooms, docSequences);
+    }
+
+    /**
+     * Merge two adjacent segments into one ({@code newer}'s documents follow {@code older}'s)
+     */
+    static PostingSegment merge(PostingSegment older, PostingSegment newer) {
+        int shift = older.docCount();
+        List<String> terms = new ArrayList<>(older.terms.length + newer.terms.length);
+        int[] offsets = new int[older.terms.length + newer.terms.length + 1];
+        int[] frequencies = new int[offsets.length - 1];
+        Encoder encoder = new Encoder(older.postings.length + newer.postings.length);
+
+        int i = 0;
+        int j = 0;
+        while (i < older.terms.length || j < newer.terms.length) {
+            int cmp = i == older.terms.length ? 1
+                    : j == newer.terms.length ? -1 : older.terms[i].compareTo(newer.terms[j]);
+            int t = terms.size();
+            offsets[t] = encoder.size;
+            int last = -1;
+            if (cmp <= 0) {
+                terms.add(older.terms[i]);
+                int[] docs = older.decode(i);
+                last = encoder.encode(docs, 0, last);
+                frequencies[t] = docs.length;
+                i++;
+            } else {
+                terms.add(newer.terms[j]);
+            }
+            if (cmp >= 0) {
+                int[] docs = newer.decode(j);
+                encoder.encode(docs, shift, last); // continues the older list's deltas
+                frequencies[t] += docs.length;
+                j++;
+            }
+        }
+        int termCount = terms.size();
+        offsets[termCount] = encoder.size;
+
+        String[] docRooms = Arrays.copyOf(older.docRooms, shift + newer.docCount());
+        System.arraycopy(newer.docRooms, 0, docRooms, shift, newer.docCount());
+        long[] docSequences = Arrays.copyOf(older.docSequences, shift + newer.docCount());
+        System.arraycopy(newer.docSequences, 0, docSequences, shift, newer.docCount());
+
+        return new PostingSegment(terms.toArray(new String[0]), Arrays.copyOf(offsets, termCount + 1),
+                Arrays.copyOf(frequencies, termCount), encoder.toArray(), docRooms, docSequences);
+    }
+
+    /**
+     * Local doc ids containing {@code term}, in increasing order (empty if none)
+     */
+    int[] docs(String term) {
+        int t = Arrays.binarySearch(terms, term);
+        return t < 0 ? new int[0] : decode(t);
+    }
+
+    private int[] decode(int t) {
+        int[] docs = new int[frequencies[t]];
+        int position = offsets[t];
+        int doc = -1;
+        for (int n = 0; n < docs.length; n++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[position++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            docs[n] = doc;
+        }
+        return docs;
+    }
+
+    String room(int doc) {
+        return docRooms[doc];
+    }
+
+    long sequence(int doc) {
+        return docSequences[doc];
+    }
+
+    int docCount() {
+        return docSequences.length;
+    }
+
+    int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * Approximate heap footprint
+     */
+    long bytes() {
+        long termBytes = 0;
+        for (String term : terms) {
+            termBytes += 40 + 2L * term.length();
+        }
+        return termBytes + 12L * terms.length + postings.length + 16L * docSequences.length;
+    }
+
+    /**
+     * Growable varint writer for posting lists
+     */
+    private static final class Encoder {
+        private byte[] bytes;
+        private int size;
+
+        Encoder(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        /**
+         * Append doc ids (each plus {@code shift}) as deltas from {@code previous}
+         * (-1 at the start of a list)
+         *
+         * @return The last doc id written
+         */
+        int encode(int[] docs, int shift, int previous) {
+            for (int n = 0; n < docs.length; n++) {
+                int doc = docs[n] + shift;
+                write(doc - previous);
+                previous = doc;
+            }
+            return previous;
+        }
+
+        private void write(int value) {
+            if (size + 5 > bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
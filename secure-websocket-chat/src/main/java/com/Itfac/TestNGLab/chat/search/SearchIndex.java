@@ -0,0 +1,279 @@
+package com.Itfac.TestNGLab.chat.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process inverted index of chat message text, built incrementally as messages are sent.
+ * - New messages go to a small mutable buffer; every {@code segmentDocs} messages it is frozen
+ *   into an immutable {@link PostingSegment} (sorted terms, delta-encoded int postings)
+ * - When there are more than {@code maxSegments} segments, the smallest adjacent pair is merged,
+ *   so a query touches a bounded number of segments
+ * - Memory is bounded: once segments exceed {@code maxBytes}, the oldest are dropped
+ *   (their messages are no longer searchable, but still in the history)
+ * - Queries match messages containing every term, newest first
+ *
+ * Terms: lower-cased runs of letters and digits, 2-32 characters.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class SearchIndex {
+    private static final int MIN_TERM = 2;
+    private static final int MAX_TERM = 32;
+    private static final int MAX_QUERY_TERMS = 8;
+
+    /**
+     * A matching message
+     */
+    public static final class Hit {
+        private final String room;
+        private final long sequence;
+
+        Hit(String room, long sequence) {
+            this.room = room;
+            this.sequence = sequence;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    private final int segmentDocs;
+    private final int maxSegments;
+    private final long maxBytes;
+
+    // Oldest first; replaced (never modified) so searches read a stable snapshot without locking
+    private volatile List<PostingSegment> segments = Collections.emptyList();
+
+    // Mutable buffer of the newest documents (guarded by this)
+    private final Map<String, Postings> buffer = new HashMap<>();
+    private final String[] bufferRooms;
+    private final long[] bufferSequences;
+    private int bufferCount;
+
+    private long indexed;
+    private long merges;
+    private long dropped;
+
+    /**
+     * @param segmentDocs Messages per frozen segment
+     * @param maxSegments Segments kept before merging
+     * @param maxBytes    Approximate memory budget of the frozen segments
+     */
+    public SearchIndex(int segmentDocs, int maxSegments, long maxBytes) {
+        this.segmentDocs = Math.max(64, segmentDocs);
+        this.maxSegments = Math.max(2, maxSegments);
+        this.maxBytes = maxBytes;
+        this.bufferRooms = new String[this.segmentDocs];
+        this.bufferSequences = new long[this.segmentDocs];
+    }
+
+    /**
+     * Index a message; the order of calls is the recency order of results
+     */
+    public synchronized void add(String room, long sequence, String text) {
+        Set<String> terms = terms(text);
+        if (terms.isEmpty())
+            return;
+
+        int doc = bufferCount++;
+        bufferRooms[doc] = room;
+        bufferSequences[doc] = sequence;
+        for (String term : terms) {
+            buffer.computeIfAbsent(term, t -> new Postings()).add(doc);
+        }
+        indexed++;
+
+        if (bufferCount == segmentDocs)
+            flush();
+    }
+
+    /**
+     * Freeze the buffer into a segment, then merge and trim (holding the lock)
+     */
+    private void flush() {
+        Map<String, int[]> termDocs = new HashMap<>(buffer.size() * 2);
+        for (Map.Entry<String, Postings> entry : buffer.entrySet()) {
+            termDocs.put(entry.getKey(), entry.getValue().toArray());
+        }
+        PostingSegment frozen = PostingSegment.build(termDocs, Arrays.copyOf(bufferRooms, bufferCount),
+                Arrays.copyOf(bufferSequences, bufferCount));
+        buffer.clear();
+        Arrays.fill(bufferRooms, null);
+        bufferCount = 0;
+
+        List<PostingSegment> next = new ArrayList<>(segments);
+        next.add(frozen);
+
+        // Tiered merging: combine the adjacent pair with the fewest documents
+        while (next.size() > maxSegments) {
+            int best = 0;
+            for (int i = 1; i < next.size() - 1; i++) {
+                if (next.get(i).docCount() + next.get(i + 1).docCount()
+                        < next.get(best).docCount() + next.get(best + 1).docCount())
+                    best = i;
+            }
+            next.set(best, PostingSegment.merge(next.get(best), next.remove(best + 1)));
+            merges++;
+        }
+
+        // Memory bound: forget the oldest messages first (always keep the newest segment)
+        long bytes = 0;
+        for (PostingSegment segment : next) {
+            bytes += segment.bytes();
+        }
+        while (bytes > maxBytes && next.size() > 1) {
+            PostingSegment oldest = next.remove(0);
+            bytes -= oldest.bytes();
+            dropped += oldest.docCount();
+        }
+        segments = Collections.unmodifiableList(next);
+    }
+
+    /**
+     * Messages containing every term of {@code query}, newest first
+     *
+     * @param room Only match this room, or null for all rooms
+     */
+    public List<Hit> search(String query, String room, int limit) {
+        List<String> terms = new ArrayList<>(terms(query));
+        if (terms.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+        if (terms.size() > MAX_QUERY_TERMS)
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+
+        List<Hit> hits = new ArrayList<>();
+        List<PostingSegment> frozen;
+
+        // Newest documents first: the buffer, then segments from newest to oldest
+        synchronized (this) {
+            frozen = segments;
+            int[] docs = null;
+            for (String term : terms) {
+                Postings postings = buffer.get(term);
+                docs = postings == null ? new int[0] : docs == null ? postings.toArray()
+                        : intersect(docs, postings.toArray());
+                if (docs.length == 0)
+                    break;
+            }
+            for (int i = docs.length - 1; i >= 0 && hits.size() < limit; i--) {
+                if (room == null || room.equals(bufferRooms[docs[i]]))
+                    hits.add(new Hit(bufferRooms[docs[i]], bufferSequences[docs[i]]));
+            }
+        }
+
+        for (int s = frozen.size() - 1; s >= 0 && hits.size() < limit; s--) {
+            PostingSegment segment = frozen.get(s);
+            int[] docs = null;
+            for (String term : terms) {
+                docs = docs == null ? segment.docs(term) : intersect(docs, segment.docs(term));
+                if (docs.length == 0)
+                    break;
+            }
+            for (int i = docs.length - 1; i >= 0 && hits.size() < limit; i--) {
+                if (room == null || room.equals(segment.room(docs[i])))
+                    hits.add(new Hit(segment.room(docs[i]), segment.sequence(docs[i])));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Intersection of two increasing doc id lists
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Distinct terms of a text, in order of appearance
+     */
+    static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null)
+            return terms;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM && length <= MAX_TERM)
+                    terms.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Index statistics (for monitoring)
+     */
+    public synchronized Map<String, Object> stats() {
+        long bytes = 0;
+        long docs = 0;
+        long termCount = 0;
+        for (PostingSegment segment : segments) {
+            bytes += segment.bytes();
+            docs += segment.docCount();
+            termCount += segment.termCount();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexed", indexed);
+        stats.put("searchable", docs + bufferCount);
+        stats.put("segments", segments.size());
+        stats.put("segmentTerms", termCount);
+        stats.put("segmentBytes", bytes);
+        stats.put("bufferedDocs", bufferCount);
+        stats.put("merges", merges);
+        stats.put("droppedDocs", dropped);
+        return stats;
+    }
+
+    /**
+     * Growable posting list of the buffer
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size == docs.length)
+                docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = doc;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(docs, size);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.Itfac.TestNGLab.chat.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable chat history: one {@link RoomLog} per room under a common directory.
+ * - Group commit: a background thread forces every log with new records once per
+ *   {@code fsyncMs}, so a burst of messages costs one flush per room
+ * - Retention: old segments are removed periodically (segment count and/or age)
+ * - Logs are flushed once more at JVM shutdown
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class ChatLog {
+    private static final long RETENTION_CHECK_MS = 60_000;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final int maxSegments;
+    private final long retentionMs;
+    private final Map<String, RoomLog> logs = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chatlog-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param dir           Root directory (one subdirectory per room)
+     * @param segmentBytes  Size of each preallocated segment file
+     * @param indexInterval Bytes between sparse index entries
+     * @param fsyncMs       Group commit interval
+     * @param maxSegments   Segments kept per room, including the active one
+     * @param retentionMs   Maximum age of a sealed segment (0 = no age limit)
+     */
+    public ChatLog(Path dir, int segmentBytes, int indexInterval, long fsyncMs, int maxSegments, long retentionMs) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.indexInterval = Math.max(256, indexInterval);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.retentionMs = retentionMs;
+
+        flusher.scheduleWithFixedDelay(this::forceAll, fsyncMs, Math.max(1, fsyncMs), TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::enforceRetention, RETENTION_CHECK_MS, RETENTION_CHECK_MS,
+                TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::forceAll, "chatlog-shutdown"));
+    }
+
+    /**
+     * Open (or create on first append) the log of a room
+     *
+     * @param room Room id ([A-Za-z0-9_-], see RoomRegistry)
+     */
+    public RoomLog open(String room) throws IOException {
+        RoomLog log = logs.get(room);
+        if (log != null)
+            return log;
+        synchronized (logs) {
+            log = logs.get(room);
+            if (log == null) {
+                log = new RoomLog(room, dir.resolve(directoryName(room)), segmentBytes, indexInterval);
+                logs.put(room, log);
+            }
+            return log;
+        }
+    }
+
+    /**
+     * Whether a room has history on disk (without opening its log)
+     */
+    public boolean exists(String room) {
+        return logs.containsKey(room) || Files.isDirectory(dir.resolve(directoryName(room)));
+    }
+
+    /**
+     * Room ids are case-sensitive but file systems may not be: upper-case letters are escaped with '~'
+     */
+    private static String directoryName(String room) {
+        StringBuilder name = new StringBuilder(room.length() + 4);
+        for (int i = 0; i < room.length(); i++) {
+            char c = room.charAt(i);
+            if (Character.isUpperCase(c)) {
+                name.append('~').append(Character.toLowerCase(c));
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    private void forceAll() {
+        for (RoomLog log : logs.values()) {
+            try {
+                log.force();
+            } catch (Exception e) {
+                System.err.println("Chat log " + log.getRoom() + ": flush failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void enforceRetention() {
+        for (RoomLog log : logs.values()) {
+            int removed = log.enforceRetention(maxSegments, retentionMs);
+            if (removed > 0)
+                System.out.println("Chat log " + log.getRoom() + ": removed " + removed + " old segment(s)");
+        }
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+}
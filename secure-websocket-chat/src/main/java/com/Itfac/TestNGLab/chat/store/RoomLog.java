@@ -0,0 +1,222 @@
+package com.Itfac.TestNGLab.chat.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, segmented on-disk log of one room's history, keyed by the room's
+ * sequence numbers. Appends go to a memory-mapped segment (no system call per message);
+ * {@link ChatLog} forces them to disk in groups. When a segment is full a new one is
+ * started, and old segments are removed by the retention policy.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class RoomLog {
+    private final String room;
+    private final Path dir;
+    private final int segmentBytes;
+    private final int indexInterval;
+
+    // Oldest first; the last one is the active segment (none until the first append)
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+
+    private volatile long lastSequence;
+    private volatile long durableSequence;
+    private final Object durableLock = new Object();
+
+    RoomLog(String room, Path dir, int segmentBytes, int indexInterval) throws IOException {
+        this.room = room;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+
+        if (Files.isDirectory(dir)) {
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(dir)) {
+                files = listing.filter(file -> Segment.baseSequenceOf(file) >= 0)
+                        .sorted(Comparator.comparingLong(Segment::baseSequenceOf))
+                        .collect(Collectors.toList());
+            }
+            for (int i = 0; i < files.size(); i++) {
+                boolean last = i == files.size() - 1;
+                Segment segment = last ? Segment.openActive(files.get(i), segmentBytes, indexInterval)
+                        : Segment.openSealed(files.get(i), indexInterval);
+                segments.add(segment);
+                if (last)
+                    active = segment;
+            }
+        }
+        lastSequence = active != null ? active.lastSequence() : 0;
+        durableSequence = lastSequence;
+    }
+
+    /**
+     * Append a record; sequences must increase (older or repeated ones are ignored)
+     *
+     * @return false if the record was not stored
+     */
+    public synchronized boolean append(long sequence, ByteBuffer payload) {
+        if (sequence <= lastSequence) {
+            System.err.println("Chat log " + room + ": ignoring out-of-order sequence " + sequence);
+            return false;
+        }
+        try {
+            if (active == null || !active.append(sequence, payload)) {
+                rollOver(sequence);
+                if (!active.append(sequence, payload)) {
+                    System.err.println("Chat log " + room + ": record " + sequence + " ("
+                            + payload.remaining() + " bytes) does not fit in a segment");
+                    return false;
+                }
+            }
+            lastSequence = sequence;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Chat log " + room + ": could not append " + sequence + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void rollOver(long nextSequence) throws IOException {
+        if (active != null)
+            active.seal();
+        Files.createDirectories(dir);
+        active = Segment.create(dir, nextSequence, segmentBytes, indexInterval);
+        segments.add(active);
+    }
+
+    /**
+     * Force appended records to disk (group commit: one flush covers every append since the last)
+     */
+    public void force() {
+        Segment segment;
+        long upTo;
+        synchronized (this) {
+            if (lastSequence == durableSequence || active == null)
+                return;
+            segment = active;
+            upTo = lastSequence;
+        }
+        segment.force(); // records of an earlier segment were forced when it was sealed
+
+        synchronized (durableLock) {
+            if (upTo > durableSequence)
+                durableSequence = upTo;
+            durableLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until {@code sequence} has been forced to disk by the group commit
+     *
+     * @return false if it was not durable within {@code timeoutMs}
+     */
+    public boolean awaitDurable(long sequence, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (durableLock) {
+            while (durableSequence < sequence) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return false;
+                durableLock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visit up to {@code max} records with a sequence greater than {@code afterSequence}, oldest first.
+     * The sparse index of the segment holding {@code afterSequence + 1} locates the starting record.
+     *
+     * @return The number of records visited
+     */
+    public int readSince(long afterSequence, int max, ObjLongConsumer<ByteBuffer> visitor) throws IOException {
+        List<Segment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+
+        int start = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.get(i).baseSequence() <= afterSequence + 1)
+                start = i;
+        }
+
+        int visited = 0;
+        for (int i = start; i < snapshot.size() && visited < max; i++) {
+            visited += snapshot.get(i).read(afterSequence, max - visited, visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * Drop the oldest sealed segments beyond {@code maxSegments}, or older than {@code maxAgeMs} (0 = no age limit)
+     *
+     * @return The number of segments removed
+     */
+    public int enforceRetention(int maxSegments, long maxAgeMs) {
+        long cutoff = maxAgeMs > 0 ? System.currentTimeMillis() - maxAgeMs : Long.MIN_VALUE;
+        int removed = 0;
+        while (true) {
+            Segment oldest;
+            synchronized (this) {
+                if (segments.size() <= 1 || segments.get(0) == active)
+                    return removed;
+                oldest = segments.get(0);
+                if (segments.size() <= maxSegments && lastModified(oldest) >= cutoff)
+                    return removed;
+                segments.remove(0);
+            }
+            if (oldest.delete()) {
+                removed++;
+            } else {
+                System.err.println("Chat log " + room + ": could not delete " + oldest.file() + ", will retry");
+                synchronized (this) {
+                    segments.add(0, oldest);
+                }
+                return removed;
+            }
+        }
+    }
+
+    private static long lastModified(Segment segment) {
+        try {
+            return Files.getLastModifiedTime(segment.file()).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Sequence number of the oldest record still on disk (0 if the log is empty)
+     */
+    public synchronized long firstSequence() {
+        return segments.isEmpty() ? 0 : segments.get(0).baseSequence();
+    }
+
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    public long durableSequence() {
+        return durableSequence;
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    public String getRoom() {
+        return room;
+    }
+}
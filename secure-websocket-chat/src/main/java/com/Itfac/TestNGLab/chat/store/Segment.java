@@ -0,0 +1,363 @@
+package com.Itfac.TestNGLab.chat.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * One file of a {@link RoomLog}, named after the sequence number of its first record.
+ * The active segment is preallocated and written through a memory mapping; sealed
+ * segments are only read. A sparse index (every {@code indexInterval} bytes) maps
+ * sequence numbers to file offsets, and is saved next to the segment when it is sealed.
+ *
+ * Record layout: u32 length | u32 crc32(sequence + payload) | u64 sequence | payload.
+ * A zero length (preallocated space), a bad checksum or a sequence that does not
+ * increase marks the end of the valid data (what follows is cleared when the segment is
+ * reopened). Sequences may have gaps (a record that could not be stored).
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+final class Segment {
+    static final int HEADER_BYTES = 16;
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private final Path file;
+    private final long baseSequence;
+    private final int capacity;
+    private final int indexInterval;
+
+    private MappedByteBuffer map; // null once sealed
+    private volatile int size;
+    private volatile long lastSequence;
+
+    // Sparse index; null for a sealed segment until it is first read
+    private long[] indexSequences;
+    private int[] indexOffsets;
+    private int indexCount;
+
+    private Segment(Path file, long baseSequence, int capacity, int indexInterval) {
+        this.file = file;
+        this.baseSequence = baseSequence;
+        this.capacity = capacity;
+        this.indexInterval = indexInterval;
+        this.lastSequence = baseSequence - 1;
+    }
+
+    static Path fileFor(Path dir, long baseSequence) {
+        return dir.resolve(String.format("%020d", baseSequence) + LOG_SUFFIX);
+    }
+
+    /**
+     * @return The base sequence encoded in a segment file name, or -1 if it is not a segment
+     */
+    static long baseSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(LOG_SUFFIX))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Create a new, empty active segment
+     */
+    static Segment create(Path dir, long baseSequence, int capacity, int indexInterval) throws IOException {
+        Segment segment = new Segment(fileFor(dir, baseSequence), baseSequence, capacity, indexInterval);
+        segment.map = mapForWriting(segment.file, capacity);
+        segment.indexSequences = new long[16];
+        segment.indexOffsets = new int[16];
+        return segment;
+    }
+
+    /**
+     * Reopen the last segment of a log for appending, recovering its valid length
+     */
+    static Segment openActive(Path file, int capacity, int indexInterval) throws IOException {
+        long base = baseSequenceOf(file);
+        int existing = (int) Math.min(Files.size(file), Integer.MAX_VALUE);
+        Segment segment = new Segment(file, base, Math.max(capacity, existing), indexInterval);
+        segment.map = mapForWriting(file, segment.capacity);
+        segment.indexSequences = new long[16];
+        segment.indexOffsets = new int[16];
+
+        ByteBuffer view = segment.map.duplicate();
+        scan(view, 0, base, (offset, sequence, payload) -> {
+            segment.addIndex(sequence, offset);
+            segment.lastSequence = sequence;
+            segment.size = offset + HEADER_BYTES + payload.remaining();
+            return true;
+        });
+        segment.clearTail();
+        return segment;
+    }
+
+    /**
+     * Zero whatever follows the valid records (a torn or corrupt record and anything after it):
+     * once appends overwrite the damage, older records further on would read as valid again.
+     * Clean space is only read, so a normal restart writes nothing.
+     */
+    private void clearTail() {
+        int offset = size;
+        while (offset < capacity && map.get(offset) == 0)
+            offset++;
+        if (offset == capacity)
+            return;
+        System.err.println("Chat log " + file + ": discarding damaged data after offset " + size);
+        for (int i = size; i < capacity; i++)
+            map.put(i, (byte) 0);
+        map.force();
+    }
+
+    /**
+     * Open a sealed segment (nothing is read until it is needed)
+     */
+    static Segment openSealed(Path file, int indexInterval) {
+        return new Segment(file, baseSequenceOf(file), 0, indexInterval);
+    }
+
+    private static MappedByteBuffer mapForWriting(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity); // mapping outlives the channel
+        }
+    }
+
+    /**
+     * Append a record (single writer)
+     *
+     * @return false if the segment has no room left for it
+     */
+    boolean append(long sequence, ByteBuffer payload) {
+        int length = payload.remaining();
+        int offset = size;
+        if (map == null || length == 0 || (long) offset + HEADER_BYTES + length > capacity)
+            return false;
+
+        map.putLong(offset + 8, sequence);
+        map.put(offset + HEADER_BYTES, payload, payload.position(), length);
+        map.putInt(offset + 4, checksum(map, offset, length));
+        map.putInt(offset, length);
+
+        addIndex(sequence, offset);
+        lastSequence = sequence;
+        size = offset + HEADER_BYTES + length; // volatile write publishes the record to readers
+        return true;
+    }
+
+    /**
+     * Flush written records to disk
+     */
+    void force() {
+        MappedByteBuffer current = map;
+        if (current != null)
+            current.force();
+    }
+
+    /**
+     * Flush, stop writing and save the sparse index
+     */
+    void seal() throws IOException {
+        force();
+        map = null;
+
+        ByteBuffer index;
+        synchronized (this) {
+            index = ByteBuffer.allocate(4 + indexCount * 12);
+            index.putInt(indexCount);
+            for (int i = 0; i < indexCount; i++) {
+                index.putLong(indexSequences[i]).putInt(indexOffsets[i]);
+            }
+        }
+        index.flip();
+        try (FileChannel channel = FileChannel.open(indexFile(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (index.hasRemaining())
+                channel.write(index);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Visit records with a sequence greater than {@code afterSequence}, oldest first.
+     * Payloads are heap copies, safe to keep.
+     *
+     * @return The number of records visited
+     */
+    int read(long afterSequence, int max, ObjLongConsumer<ByteBuffer> visitor) throws IOException {
+        if (max <= 0 || afterSequence >= lastKnownSequence())
+            return 0;
+
+        ByteBuffer view = view();
+        long[] start = floor(afterSequence + 1, view);
+        int[] count = { 0 };
+        scan(view, (int) start[1], start[0], (offset, sequence, payload) -> {
+            if (sequence > afterSequence) {
+                ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+                copy.put(payload).flip();
+                visitor.accept(copy.asReadOnlyBuffer(), sequence);
+                count[0]++;
+            }
+            return count[0] < max;
+        });
+        return count[0];
+    }
+
+    private long lastKnownSequence() {
+        return map != null ? lastSequence : Long.MAX_VALUE; // sealed: the caller bounds the range
+    }
+
+    private ByteBuffer view() throws IOException {
+        MappedByteBuffer current = map;
+        if (current != null) {
+            ByteBuffer view = current.duplicate();
+            view.limit(size);
+            return view;
+        }
+        // Sealed segments are mapped read-only just for the read; the mapping is released by GC
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Index entry at or before {@code sequence}: {sequence, offset}
+     */
+    private synchronized long[] floor(long sequence, ByteBuffer view) throws IOException {
+        if (indexSequences == null)
+            loadIndex(view);
+
+        int low = 0;
+        int high = indexCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexSequences[mid] <= sequence) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? new long[] { baseSequence, 0 } : new long[] { indexSequences[found], indexOffsets[found] };
+    }
+
+    private void loadIndex(ByteBuffer view) throws IOException {
+        indexSequences = new long[16];
+        indexOffsets = new int[16];
+        Path indexFile = indexFile();
+        if (Files.exists(indexFile)) {
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            int entries = index.remaining() >= 4 ? index.getInt() : -1;
+            if (entries >= 0 && index.remaining() == entries * 12L) {
+                for (int i = 0; i < entries; i++) {
+                    addIndex(index.getLong(), index.getInt());
+                }
+                return;
+            }
+            System.err.println("Chat log index " + indexFile + " is damaged, rebuilding it");
+        }
+        // Missing or damaged: rebuild by scanning the segment once
+        indexCount = 0;
+        scan(view, 0, baseSequence, (offset, sequence, payload) -> {
+            addIndex(sequence, offset);
+            return true;
+        });
+    }
+
+    private synchronized void addIndex(long sequence, int offset) {
+        if (indexCount > 0 && offset - indexOffsets[indexCount - 1] < indexInterval)
+            return;
+        if (indexCount == indexSequences.length) {
+            indexSequences = Arrays.copyOf(indexSequences, indexCount * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+        }
+        indexSequences[indexCount] = sequence;
+        indexOffsets[indexCount] = offset;
+        indexCount++;
+    }
+
+    private interface RecordHandler {
+        /**
+         * @return false to stop scanning
+         */
+        boolean record(int offset, long sequence, ByteBuffer payload);
+    }
+
+    /**
+     * Walk valid records from {@code offset}, whose sequence must be at least {@code minSequence}
+     */
+    private static void scan(ByteBuffer view, int offset, long minSequence, RecordHandler handler) {
+        int limit = view.limit();
+        while (offset + HEADER_BYTES <= limit) {
+            int length = view.getInt(offset);
+            if (length <= 0 || length > limit - offset - HEADER_BYTES)
+                return;
+            long sequence = view.getLong(offset + 8);
+            if (sequence < minSequence || view.getInt(offset + 4) != checksum(view, offset, length))
+                return;
+
+            ByteBuffer payload = view.duplicate();
+            payload.limit(offset + HEADER_BYTES + length).position(offset + HEADER_BYTES);
+            if (!handler.record(offset, sequence, payload))
+                return;
+            offset += HEADER_BYTES + length;
+            minSequence = sequence + 1;
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer covered = buffer.duplicate();
+        covered.limit(offset + HEADER_BYTES + length).position(offset + 8);
+        CRC32 crc = new CRC32();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    private Path indexFile() {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - LOG_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Delete the segment and its index
+     *
+     * @return false if the files could not be removed (e.g. still mapped on Windows; retried later)
+     */
+    boolean delete() {
+        try {
+            Files.deleteIfExists(indexFile());
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Path file() {
+        return file;
+    }
+}
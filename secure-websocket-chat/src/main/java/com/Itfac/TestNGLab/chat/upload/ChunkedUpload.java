@@ -0,0 +1,312 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One resumable upload: a preallocated file filled chunk by chunk, in any order and in parallel.
+ * - Chunk i is written at offset i * chunkSize with positional FileChannel writes
+ * - A bitmap records the chunks received; it is saved next to the data (after the chunk is
+ *   forced to disk), so an upload can also be resumed after a server restart
+ * - Files: {id}.part (data), {id}.bitmap, {id}.properties (file name, size, chunk size, user)
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class ChunkedUpload {
+    static final String DATA_SUFFIX = ".part";
+    static final String BITMAP_SUFFIX = ".bitmap";
+    static final String META_SUFFIX = ".properties";
+
+    private final String id;
+    private final String filename;
+    private final String username;
+    private final long size;
+    private final int chunkSize;
+    private final int chunks;
+    private final long createdAt;
+    private volatile long lastActivity;
+
+    private final Path dataFile;
+    private final Path bitmapFile;
+    private final Path metaFile;
+    private final FileChannel data;
+    private final FileChannel bitmapChannel;
+
+    private final AtomicLongArray bitmap;
+    private final AtomicInteger received = new AtomicInteger();
+
+    // Chunk writes share the read lock; finishing or aborting takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private ChunkedUpload(Path dir, String id, String filename, String username, long size, int chunkSize,
+            long createdAt) throws IOException {
+        this.id = id;
+        this.filename = filename;
+        this.username = username;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        this.createdAt = createdAt;
+        this.lastActivity = System.currentTimeMillis();
+        this.dataFile = dir.resolve(id + DATA_SUFFIX);
+        this.bitmapFile = dir.resolve(id + BITMAP_SUFFIX);
+        this.metaFile = dir.resolve(id + META_SUFFIX);
+        this.bitmap = new AtomicLongArray((chunks + 63) / 64);
+
+        this.data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.bitmapChannel = FileChannel.open(bitmapFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Start an upload: write its metadata and preallocate the data file
+     */
+    static ChunkedUpload create(Path dir, String id, String filename, String username, long size, int chunkSize)
+            throws IOException {
+        ChunkedUpload upload = new ChunkedUpload(dir, id, filename, username, size, chunkSize,
+                System.currentTimeMillis());
+        try {
+            try (RandomAccessFile file = new RandomAccessFile(upload.dataFile.toFile(), "rw")) {
+                file.setLength(size); // sparse where the file system allows it
+            }
+            Properties meta = new Properties();
+            meta.setProperty("filename", filename);
+            meta.setProperty("username", username);
+            meta.setProperty("size", Long.toString(size));
+            meta.setProperty("chunkSize", Integer.toString(chunkSize));
+            meta.setProperty("createdAt", Long.toString(upload.createdAt));
+            try (OutputStream out = Files.newOutputStream(upload.metaFile)) {
+                meta.store(out, "Resumable upload " + id);
+            }
+            return upload;
+        } catch (IOException e) {
+            upload.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Reopen an upload saved by an earlier run
+     */
+    static ChunkedUpload load(Path metaFile) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaFile)) {
+            meta.load(in);
+        }
+        String name = metaFile.getFileName().toString();
+        String id = name.substring(0, name.length() - META_SUFFIX.length());
+        ChunkedUpload upload;
+        try {
+            upload = new ChunkedUpload(metaFile.getParent(), id, meta.getProperty("filename"),
+                    meta.getProperty("username"), Long.parseLong(meta.getProperty("size")),
+                    Integer.parseInt(meta.getProperty("chunkSize")), Long.parseLong(meta.getProperty("createdAt")));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid upload metadata " + metaFile + ": " + e.getMessage());
+        }
+
+        ByteBuffer saved = ByteBuffer.allocate(upload.bitmap.length() * 8);
+        while (saved.hasRemaining()) {
+            if (upload.bitmapChannel.read(saved, saved.position()) <= 0)
+                break; // shorter file: the remaining words are still zero
+        }
+        saved.flip();
+        for (int word = 0; word < upload.bitmap.length() && saved.remaining() >= 8; word++) {
+            long bits = saved.getLong();
+            upload.bitmap.set(word, bits);
+            upload.received.addAndGet(Long.bitCount(bits));
+        }
+        return upload;
+    }
+
+    /**
+     * Write chunk {@code index} from a request body (re-sending a received chunk is allowed)
+     *
+     * @param declaredLength Content-Length of the body, or -1 if unknown
+     * @return true if this was the last missing chunk
+     * @throws StreamingUpload.RejectedException 400 for a bad index or a short body, 413 for a long body,
+     *                                           409 if the upload is no longer active
+     */
+    public boolean writeChunk(int index, InputStream body, long declaredLength) throws IOException {
+        if (index < 0 || index >= chunks)
+            throw new StreamingUpload.RejectedException(400, "Chunk index must be 0-" + (chunks - 1));
+        long offset = (long) index * chunkSize;
+        long expected = Math.min(chunkSize, size - offset);
+        if (declaredLength >= 0 && declaredLength != expected)
+            throw new StreamingUpload.RejectedException(declaredLength > expected ? 413 : 400,
+                    "Chunk " + index + " must be " + expected + " bytes");
+
+        lock.readLock().lock();
+        ByteBuffer buffer = DirectBuffers.acquire();
+        try {
+            if (closed)
+                throw new StreamingUpload.RejectedException(409, "Upload is no longer active");
+            lastActivity = System.currentTimeMillis();
+
+            ReadableByteChannel in = Channels.newChannel(body);
+            long written = 0;
+            while (in.read(buffer) >= 0) {
+                if (written + buffer.position() > expected)
+                    throw new StreamingUpload.RejectedException(413, "Chunk " + index + " is larger than "
+                            + expected + " bytes");
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    written += data.write(buffer, offset + written);
+                buffer.clear();
+            }
+            if (written != expected)
+                throw new StreamingUpload.RejectedException(400, "Incomplete chunk " + index + ": "
+                        + written + " of " + expected + " bytes");
+
+            data.force(false); // the saved bitmap must never claim data that is not on disk
+            return mark(index);
+        } finally {
+            DirectBuffers.release(buffer);
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Set the chunk's bit and save its bitmap word
+     *
+     * @return true if this completed the upload
+     */
+    private boolean mark(int index) throws IOException {
+        int word = index >>> 6;
+        long bit = 1L << (index & 63);
+        long bits;
+        do {
+            bits = bitmap.get(word);
+            if ((bits & bit) != 0)
+                return false; // already received
+        } while (!bitmap.compareAndSet(word, bits, bits | bit));
+
+        synchronized (bitmapChannel) {
+            // Save the word's latest value, so concurrent marks of the same word cannot undo each other
+            ByteBuffer saved = ByteBuffer.allocate(8).putLong(0, bitmap.get(word));
+            bitmapChannel.write(saved, word * 8L);
+        }
+        return received.incrementAndGet() == chunks;
+    }
+
+    public boolean isComplete() {
+        return received.get() == chunks;
+    }
+
+    /**
+     * Indices of chunks not yet received, in order (at most {@code max})
+     */
+    public List<Integer> missingChunks(int max) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < chunks && missing.size() < max; i++) {
+            if ((bitmap.get(i >>> 6) & (1L << (i & 63))) == 0)
+                missing.add(i);
+        }
+        return missing;
+    }
+
+    /**
+     * Move the completed file to {@code destination} and remove the upload's state
+     *
+     * @return false if chunks are still missing or the upload was already finished
+     */
+    boolean finish(Path destination) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed || !isComplete())
+                return false;
+            closed = true;
+            data.force(true);
+            data.close();
+            bitmapChannel.close();
+            try {
+                Files.move(dataFile, destination, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(dataFile, destination);
+            }
+            Files.deleteIfExists(bitmapFile);
+            Files.deleteIfExists(metaFile);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop accepting chunks and delete everything written so far
+     */
+    void abort() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            try {
+                data.close();
+                bitmapChannel.close();
+                Files.deleteIfExists(dataFile);
+                Files.deleteIfExists(bitmapFile);
+                Files.deleteIfExists(metaFile);
+            } catch (IOException e) {
+                System.err.println("Could not delete upload " + id + ": " + e.getMessage());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public int getReceivedChunks() {
+        return received.get();
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Time of the last chunk written (or of creation / loading)
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+}
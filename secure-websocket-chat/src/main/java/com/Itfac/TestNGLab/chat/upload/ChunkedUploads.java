@@ -0,0 +1,144 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Registry of resumable uploads (initiate, chunk, complete) kept under one directory.
+ * Uploads left by an earlier run are reloaded at startup, so clients can resume them.
+ * Each user may have only a few uploads in progress and a bounded total size reserved, so one
+ * user's idle uploads cannot take all the slots until cleanup aborts them.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class ChunkedUploads {
+    private static final int MIN_CHUNK = 256 * 1024;
+    private static final int MAX_CHUNK = 64 * 1024 * 1024;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final int defaultChunkSize;
+    private final int maxActive;
+    private final int maxActivePerUser;
+    private final long maxReservedPerUser;
+    private final Map<String, ChunkedUpload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * @param dir                Directory for partial files (created if needed)
+     * @param maxBytes           Largest accepted file
+     * @param defaultChunkSize   Chunk size when the client does not ask for one
+     * @param maxActive          Uploads in progress at once
+     * @param maxActivePerUser   Uploads in progress at once per user
+     * @param maxReservedPerUser Total size of one user's uploads in progress (bytes)
+     */
+    public ChunkedUploads(Path dir, long maxBytes, int defaultChunkSize, int maxActive, int maxActivePerUser,
+            long maxReservedPerUser) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.defaultChunkSize = clampChunkSize(defaultChunkSize);
+        this.maxActive = maxActive;
+        this.maxActivePerUser = Math.max(1, maxActivePerUser);
+        this.maxReservedPerUser = maxReservedPerUser;
+        reload();
+    }
+
+    private void reload() {
+        if (!Files.isDirectory(dir))
+            return;
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(file -> file.getFileName().toString().endsWith(ChunkedUpload.META_SUFFIX))
+                    .forEach(file -> {
+                        try {
+                            ChunkedUpload upload = ChunkedUpload.load(file);
+                            uploads.put(upload.getId(), upload);
+                        } catch (IOException e) {
+                            System.err.println("Skipping resumable upload " + file + ": " + e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            System.err.println("Could not list resumable uploads in " + dir + ": " + e.getMessage());
+        }
+        if (!uploads.isEmpty())
+            System.out.println("Resumable uploads: " + uploads.size() + " in progress");
+    }
+
+    /**
+     * Start an upload
+     *
+     * @param chunkSize Requested chunk size, or null for the default (clamped to 256 KB - 64 MB)
+     * @throws StreamingUpload.RejectedException 400 for an invalid size, 413 over the limit,
+     *                                           429 when the user has too many (or too large)
+     *                                           uploads in progress, 503 when everyone has
+     */
+    public synchronized ChunkedUpload create(String filename, String username, long size, Integer chunkSize)
+            throws IOException {
+        if (size <= 0)
+            throw new StreamingUpload.RejectedException(400, "size must be positive");
+        if (size > maxBytes)
+            throw new StreamingUpload.RejectedException(413, "File too large (max " + maxBytes + " bytes)");
+
+        // Checked and added under one lock: concurrent requests cannot overshoot the limits
+        int userActive = 0;
+        long userReserved = 0;
+        for (ChunkedUpload upload : uploads.values()) {
+            if (upload.getUsername().equals(username)) {
+                userActive++;
+                userReserved += upload.getSize();
+            }
+        }
+        if (userActive >= maxActivePerUser)
+            throw new StreamingUpload.RejectedException(429,
+                    "Too many uploads in progress for " + username + " (max " + maxActivePerUser + ")");
+        if (maxReservedPerUser > 0 && userReserved + size > maxReservedPerUser)
+            throw new StreamingUpload.RejectedException(429,
+                    "Uploads in progress for " + username + " would exceed " + maxReservedPerUser + " bytes");
+        if (uploads.size() >= maxActive)
+            throw new StreamingUpload.RejectedException(503, "Too many uploads in progress, try again later");
+
+        Files.createDirectories(dir);
+        String id = UUID.randomUUID().toString();
+        int chunk = chunkSize != null ? clampChunkSize(chunkSize) : defaultChunkSize;
+        ChunkedUpload upload = ChunkedUpload.create(dir, id, filename, username, size, chunk);
+        uploads.put(id, upload);
+        return upload;
+    }
+
+    public ChunkedUpload get(String id) {
+        return uploads.get(id);
+    }
+
+    /**
+     * Move a completed upload to {@code destination}
+     *
+     * @return false if chunks are missing (or another request completed it first)
+     */
+    public boolean complete(ChunkedUpload upload, Path destination) throws IOException {
+        if (!upload.finish(destination))
+            return false;
+        uploads.remove(upload.getId());
+        return true;
+    }
+
+    /**
+     * Cancel an upload and delete its data
+     */
+    public void abort(ChunkedUpload upload) {
+        uploads.remove(upload.getId());
+        upload.abort();
+    }
+
+    public Collection<ChunkedUpload> all() {
+        return uploads.values();
+    }
+
+    private static int clampChunkSize(int chunkSize) {
+        return Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, chunkSize));
+    }
+}
@@ -0,0 +1,473 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed file store: every upload is stored once, under its SHA-256 digest.
+ * - Objects: {root}/objects/{first 2 hex digits}/{digest}; uploads stream into {root}/.tmp
+ *   and are renamed into place, or dropped if the object already exists (no second write)
+ * - Entries: one per posted file name, with id {@code {digest}_{safe name}}; they are the
+ *   download names, and count the references that keep their object alive
+ * - Entries and reference counts are kept on disk by a {@link MetadataIndex} ({root}/.meta);
+ *   a background thread flushes its changes once per {@code fsyncMs}, and once more at shutdown
+ * - Objects never change, so the digest is a strong ETag
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class ContentStore {
+    private static final int DIGEST_CHARS = 64;
+    private static final int MAX_NAME = 100;
+
+    /**
+     * Result of {@link #expire} for an entry posted again since the cutoff
+     */
+    public static final long KEPT = -2;
+
+    /**
+     * A stored file as posted by a user
+     */
+    public static final class Entry {
+        private final String id;
+        private final String digest;
+        private final String originalName;
+        private final String username;
+        private final String contentType;
+        private final long size;
+        private final long createdAt;
+        private final long referencedAt;
+        private final int references;
+
+        Entry(String id, String digest, String originalName, String username, String contentType, long size,
+                long createdAt, long referencedAt, int references) {
+            this.id = id;
+            this.digest = digest;
+            this.originalName = originalName;
+            this.username = username;
+            this.contentType = contentType;
+            this.size = size;
+            this.createdAt = createdAt;
+            this.referencedAt = referencedAt;
+            this.references = references;
+        }
+
+        Entry withReferences(int count) {
+            return new Entry(id, digest, originalName, username, contentType, size, createdAt, referencedAt, count);
+        }
+
+        Entry referencedAgain(long now) {
+            return new Entry(id, digest, originalName, username, contentType, size, createdAt, now, references + 1);
+        }
+
+        Entry withContentType(String type) {
+            return new Entry(id, digest, originalName, username, type, size, createdAt, referencedAt, references);
+        }
+
+        /**
+         * Download name: {@code {digest}_{safe name}}
+         */
+        public String getId() {
+            return id;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public String getOriginalName() {
+            return originalName;
+        }
+
+        /**
+         * User who first posted the file under this name
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * MIME type (from the file name when stored; from the contents once processed)
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * Last time the file was posted under this name (retention counts from here)
+         */
+        public long getReferencedAt() {
+            return referencedAt;
+        }
+
+        /**
+         * Times the file was posted under this name, less releases
+         */
+        public int getReferences() {
+            return references;
+        }
+    }
+
+    /**
+     * Notified of entry changes (called while the store is locked: must not call back into it)
+     */
+    public interface Listener {
+        /**
+         * A file was posted: a new entry, or one more reference to an existing one
+         */
+        default void referenced(Entry entry) {
+        }
+
+        /**
+         * An entry's last reference was dropped
+         */
+        default void removed(Entry entry) {
+        }
+    }
+
+    private final Path objects;
+    private final Path temp;
+    private final MetadataIndex index;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "content-store-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private long objectCount;
+    private long storedBytes;
+    private long deduplicated;
+    private long savedBytes;
+
+    /**
+     * @param cacheEntries Entries kept decoded in memory (the rest are read from the journal)
+     * @param fsyncMs      Group commit interval of the metadata journal
+     */
+    public ContentStore(Path root, int cacheEntries, long fsyncMs) {
+        this.objects = root.resolve("objects");
+        this.temp = root.resolve(".tmp");
+        this.index = new MetadataIndex(root.resolve(".meta").resolve("entries.journal"), cacheEntries);
+        scan();
+
+        flusher.scheduleWithFixedDelay(this::force, fsyncMs, Math.max(1, fsyncMs), TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::force, "content-store-shutdown"));
+    }
+
+    private void force() {
+        try {
+            index.force();
+        } catch (Exception e) {
+            System.err.println("Content store metadata: flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Count the stored objects and delete uploads interrupted by a restart
+     */
+    private void scan() {
+        try {
+            Files.createDirectories(objects);
+            Files.createDirectories(temp);
+            try (Stream<Path> leftovers = Files.list(temp)) {
+                leftovers.forEach(file -> {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        System.err.println("Could not delete " + file + ": " + e.getMessage());
+                    }
+                });
+            }
+            try (Stream<Path> stored = Files.walk(objects, 2)) {
+                stored.filter(Files::isRegularFile).forEach(file -> {
+                    objectCount++;
+                    storedBytes += file.toFile().length();
+                });
+            }
+        } catch (IOException e) {
+            System.err.println("Could not scan content store " + objects + ": " + e.getMessage());
+        }
+        System.out.println("Content store: " + objectCount + " objects, " + storedBytes + " bytes");
+    }
+
+    /**
+     * A new file name in the store's temp directory, to stream an upload into
+     */
+    public Path tempFile() {
+        return temp.resolve(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Store a fully written temp file under its digest and add a reference to it
+     *
+     * @param file Temp file (see {@link #tempFile()}); moved into the store or deleted
+     * @return The entry to download the file by
+     */
+    public synchronized Entry add(Path file, String digest, long size, String originalName, String username)
+            throws IOException {
+        Path object = object(digest);
+        if (Files.exists(object)) {
+            deduplicated++;
+            savedBytes += size;
+        } else {
+            Files.createDirectories(object.getParent());
+            try {
+                Files.move(file, object, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(file, object);
+            }
+            objectCount++;
+            storedBytes += size;
+        }
+        Entry entry = reference(digest, size, originalName, username);
+        Files.deleteIfExists(file); // a duplicate: the stored object is kept
+        return entry;
+    }
+
+    /**
+     * Hash a complete temp file (e.g. an assembled chunked upload), then {@link #add} it
+     *
+     * @param file Temp file (see {@link #tempFile()}); moved into the store or deleted
+     */
+    public Entry addFile(Path file, String originalName, String username) throws IOException {
+        try {
+            return add(file, digest(file), Files.size(file), originalName, username);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private Entry reference(String digest, long size, String originalName, String username) throws IOException {
+        String name = safeName(originalName);
+        String id = digest + "_" + name;
+        Entry entry = index.get(id);
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            entry = entry.referencedAgain(now);
+        } else {
+            String contentType = Files.probeContentType(Paths.get(name)); // by extension: no file access
+            entry = new Entry(id, digest, originalName, username,
+                    contentType != null ? contentType : "application/octet-stream", size, now, now, 1);
+        }
+        index.put(entry);
+        index.setObjectReferences(digest, index.objectReferences(digest) + 1);
+        for (Listener listener : listeners)
+            listener.referenced(entry);
+        return entry;
+    }
+
+    /**
+     * Drop one reference to an entry; the object is deleted with its last reference
+     *
+     * @return false if the entry is unknown
+     */
+    public boolean release(String id) throws IOException {
+        return release(id, 1) >= 0;
+    }
+
+    /**
+     * Delete an entry, whatever its reference count (e.g. expired)
+     *
+     * @return Bytes freed on disk (0 if the object is still referenced), or -1 if the entry is unknown
+     */
+    public long remove(String id) throws IOException {
+        return release(id, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Delete an entry that has not been posted since {@code cutoff} (retention by age): checked
+     * under the store's lock, so a repost just before the deletion keeps the file
+     *
+     * @return Bytes freed on disk (0 if the object is still referenced), -1 if the entry is
+     *         unknown, or {@link #KEPT} if it was posted at or after {@code cutoff}
+     */
+    public synchronized long expire(String id, long cutoff) throws IOException {
+        Entry entry = index.get(id);
+        if (entry == null)
+            return -1;
+        if (entry.referencedAt >= cutoff)
+            return KEPT;
+        return release(id, Integer.MAX_VALUE);
+    }
+
+    private synchronized long release(String id, int count) throws IOException {
+        Entry entry = index.get(id);
+        if (entry == null)
+            return -1;
+        int released = Math.min(count, entry.references);
+        index.put(entry.withReferences(entry.references - released));
+        int objectReferences = index.objectReferences(entry.digest) - released;
+        index.setObjectReferences(entry.digest, Math.max(0, objectReferences));
+
+        long freed = 0;
+        if (objectReferences <= 0) {
+            Path object = object(entry.digest);
+            long size = Files.exists(object) ? Files.size(object) : 0;
+            index.force(); // after a crash, an orphan object is harmless; an entry without one is not
+            if (Files.deleteIfExists(object)) {
+                objectCount--;
+                storedBytes -= size;
+                freed = size;
+            }
+        }
+        if (released == entry.references) {
+            for (Listener listener : listeners)
+                listener.removed(entry);
+        }
+        return freed;
+    }
+
+    /**
+     * Replace an entry's MIME type (e.g. with the type detected from its contents)
+     *
+     * @return The updated entry, or null if the entry is unknown
+     */
+    public synchronized Entry setContentType(String id, String contentType) throws IOException {
+        Entry entry = index.get(id);
+        if (entry == null || contentType.equals(entry.contentType))
+            return entry;
+        entry = entry.withContentType(contentType);
+        index.put(entry);
+        return entry;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Bytes of all stored objects
+     */
+    public synchronized long storedBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * The entry with this download name, or null
+     */
+    public Entry get(String id) throws IOException {
+        return index.get(id);
+    }
+
+    /**
+     * Visit every entry (reads the whole journal: for background tasks, not requests)
+     */
+    public void forEachEntry(Consumer<Entry> visitor) throws IOException {
+        index.forEachEntry(visitor);
+    }
+
+    /**
+     * Digest part of a download name, or null if {@code id} is not a store name
+     */
+    public static String digestOf(String id) {
+        if (id.length() < DIGEST_CHARS + 1 || id.charAt(DIGEST_CHARS) != '_')
+            return null;
+        String digest = id.substring(0, DIGEST_CHARS);
+        return isDigest(digest) ? digest : null;
+    }
+
+    /**
+     * Path of the object with this digest (which may not exist)
+     */
+    public Path object(String digest) {
+        return objects.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    public static boolean isDigest(String digest) {
+        return digest != null && digest.matches("[0-9a-f]{" + DIGEST_CHARS + "}");
+    }
+
+    /**
+     * File name part of a download name: base name, characters outside [A-Za-z0-9._-] replaced,
+     * at most 100 characters (the end is kept, with the extension)
+     */
+    public static String safeName(String originalName) {
+        String name = originalName == null ? "" : originalName;
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > MAX_NAME)
+            name = name.substring(name.length() - MAX_NAME);
+        return name.isEmpty() ? "file" : name;
+    }
+
+    /**
+     * A new SHA-256 digest, to update while an upload streams in
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String hex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String digest(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = DirectBuffers.acquire();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Store statistics (for monitoring)
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("objects", objectCount);
+        stats.put("storedBytes", storedBytes);
+        try {
+            stats.put("entries", index.entryCount());
+        } catch (IOException e) {
+            stats.put("entries", "unavailable: " + e.getMessage());
+        }
+        stats.put("deduplicatedUploads", deduplicated);
+        stats.put("savedBytes", savedBytes);
+        return stats;
+    }
+}
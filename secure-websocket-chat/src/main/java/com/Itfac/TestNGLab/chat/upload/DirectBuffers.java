@@ -0,0 +1,31 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Small pool of direct buffers for upload I/O. Direct buffers let channel writes skip
+ * a copy, but are costly to allocate, so a few are kept for reuse.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+final class DirectBuffers {
+    static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(16);
+
+    private DirectBuffers() {
+    }
+
+    static ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_BYTES);
+    }
+
+    static void release(ByteBuffer buffer) {
+        buffer.clear();
+        pool.offer(buffer);
+    }
+}
@@ -0,0 +1,333 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads what a stored file really is from its bytes, not its name.
+ * - {@link #sniff}: MIME type from the signature at the start of the file (only formats with an
+ *   unambiguous signature; anything else is left to the file name)
+ * - {@link #duration}: audio length from the container headers (WAV, Ogg Vorbis/Opus, WebM),
+ *   without decoding any audio
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public final class MediaProbe {
+    /**
+     * Bytes {@link #sniff} needs from the start of a file
+     */
+    public static final int HEAD_BYTES = 64;
+
+    // Ogg: the last page (the one with the final granule position) lies within this many bytes of the end
+    private static final int OGG_MAX_PAGE = 65307;
+
+    // Matroska / WebM element ids (marker bits kept)
+    private static final long SEGMENT = 0x18538067L;
+    private static final long INFO = 0x1549A966L;
+    private static final long TIMECODE_SCALE = 0x2AD7B1L;
+    private static final long DURATION = 0x4489L;
+    private static final long CLUSTER = 0x1F43B675L;
+    private static final long CLUSTER_TIMECODE = 0xE7L;
+    private static final long BLOCK_GROUP = 0xA0L;
+    private static final long BLOCK = 0xA1L;
+    private static final long SIMPLE_BLOCK = 0xA3L;
+
+    private MediaProbe() {
+    }
+
+    /**
+     * MIME type from a file's first bytes
+     *
+     * @param head   Start of the file ({@link #HEAD_BYTES} or fewer if the file is shorter)
+     * @param length Valid bytes in {@code head}
+     * @return The type, or null if the signature is unknown
+     */
+    public static String sniff(byte[] head, int length) {
+        if (startsWith(head, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A))
+            return "image/png";
+        if (startsWith(head, length, 0, 0xFF, 0xD8, 0xFF))
+            return "image/jpeg";
+        if (startsWith(head, length, 0, 'G', 'I', 'F', '8', '7', 'a')
+                || startsWith(head, length, 0, 'G', 'I', 'F', '8', '9', 'a'))
+            return "image/gif";
+        if (startsWith(head, length, 0, 'R', 'I', 'F', 'F')) {
+            if (startsWith(head, length, 8, 'W', 'E', 'B', 'P'))
+                return "image/webp";
+            if (startsWith(head, length, 8, 'W', 'A', 'V', 'E'))
+                return "audio/wav";
+            return null;
+        }
+        if (startsWith(head, length, 0, 'O', 'g', 'g', 'S'))
+            return "audio/ogg";
+        if (startsWith(head, length, 0, 'f', 'L', 'a', 'C'))
+            return "audio/flac";
+        if (startsWith(head, length, 0, 'I', 'D', '3'))
+            return "audio/mpeg";
+        if (startsWith(head, length, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            // The DocType is a few bytes into the EBML header
+            String text = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+            if (text.contains("webm"))
+                return "video/webm";
+            return text.contains("matroska") ? "video/x-matroska" : null;
+        }
+        if (startsWith(head, length, 4, 'f', 't', 'y', 'p')) {
+            if (startsWith(head, length, 8, 'M', '4', 'A', ' '))
+                return "audio/mp4";
+            if (startsWith(head, length, 8, 'q', 't', ' ', ' '))
+                return "video/quicktime";
+            if (startsWith(head, length, 8, 'i', 's', 'o', 'm') || startsWith(head, length, 8, 'm', 'p', '4'))
+                return "video/mp4";
+            return null;
+        }
+        if (startsWith(head, length, 0, '%', 'P', 'D', 'F', '-'))
+            return "application/pdf";
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, int... signature) {
+        if (length < offset + signature.length)
+            return false;
+        for (int i = 0; i < signature.length; i++) {
+            if ((data[offset + i] & 0xFF) != signature[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Audio length in seconds, from the headers of a WAV, Ogg or WebM file
+     *
+     * @param mimeType Sniffed type of the file
+     * @return Seconds, or -1 if the format is not supported or the headers are incomplete
+     */
+    public static double duration(Path file, String mimeType) throws IOException {
+        switch (mimeType) {
+            case "audio/wav":
+                return wavDuration(file);
+            case "audio/ogg":
+                return oggDuration(file);
+            case "audio/webm":
+            case "video/webm":
+                return webmDuration(file);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * WAV: data chunk size / byte rate of the fmt chunk
+     */
+    private static double wavDuration(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            long position = 12; // after RIFF, size, WAVE
+            long byteRate = 0;
+            while (position + 8 <= channel.size()) {
+                header.clear();
+                if (channel.read(header, position) < 8)
+                    return -1;
+                int id = header.getInt(0);
+                long size = header.getInt(4) & 0xFFFFFFFFL;
+                long body = position + 8;
+                if (id == 0x20746D66) { // "fmt "
+                    ByteBuffer format = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                    if (size < 12 || channel.read(format, body) < 12)
+                        return -1;
+                    byteRate = format.getInt(8) & 0xFFFFFFFFL;
+                } else if (id == 0x61746164) { // "data"
+                    if (byteRate == 0)
+                        return -1;
+                    // Recorders that stream the file may leave the size unset: use what is there
+                    long available = channel.size() - body;
+                    long data = (size == 0 || size == 0xFFFFFFFFL) ? available : Math.min(size, available);
+                    return (double) data / byteRate;
+                }
+                position = body + size + (size & 1); // chunks are padded to an even size
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Ogg: final granule position / sample rate (Vorbis), or / 48 kHz less the pre-skip (Opus)
+     */
+    private static double oggDuration(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // First page: the codec's identification header
+            ByteBuffer first = ByteBuffer.allocate(27 + 255 + 19).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(first, 0);
+            if (first.position() < 28)
+                return -1;
+            int serial = first.getInt(14);
+            int packet = 27 + (first.get(26) & 0xFF);
+            if (first.position() < packet + 19)
+                return -1;
+
+            long rate;
+            long preSkip = 0;
+            if (matches(first, packet, "\u0001vorbis")) {
+                rate = first.getInt(packet + 12) & 0xFFFFFFFFL;
+            } else if (matches(first, packet, "OpusHead")) {
+                rate = 48000; // Opus granule positions always count 48 kHz samples
+                preSkip = first.getShort(packet + 10) & 0xFFFF;
+            } else {
+                return -1;
+            }
+            if (rate == 0)
+                return -1;
+
+            // Last page of the same stream: scan backwards from the end
+            long size = channel.size();
+            int tail = (int) Math.min(size, OGG_MAX_PAGE);
+            ByteBuffer end = ByteBuffer.allocate(tail).order(ByteOrder.LITTLE_ENDIAN);
+            while (end.hasRemaining() && channel.read(end, size - tail + end.position()) > 0) {
+                // read the whole tail
+            }
+            for (int i = end.position() - 27; i >= 0; i--) {
+                if (matches(end, i, "OggS") && end.get(i + 4) == 0 && end.getInt(i + 14) == serial) {
+                    long granule = end.getLong(i + 6);
+                    if (granule >= 0)
+                        return Math.max(0, granule - preSkip) / (double) rate;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(offset + i) != (byte) ascii.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * WebM: Segment Info Duration if present; otherwise (e.g. browser recordings, which leave it
+     * out) the timestamp of the last block. Elements are read in file order, so segments and
+     * clusters of unknown size (also typical of recordings) need no special case
+     */
+    private static double webmDuration(Path file) throws IOException {
+        long scale = 1_000_000; // ns per timestamp unit
+        double infoDuration = -1;
+        long clusterTime = 0;
+        long lastTime = -1;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            while (true) {
+                long id = readVint(in, true);
+                if (id < 0)
+                    break; // end of file
+                long size = readVint(in, false);
+
+                if (id == SEGMENT || id == INFO || id == BLOCK_GROUP) {
+                    continue; // master element: its children follow
+                } else if (id == CLUSTER) {
+                    if (infoDuration > 0)
+                        break; // the header had it: no need to read the blocks
+                    continue;
+                }
+                if (size < 0)
+                    break; // unknown size on an element we cannot descend into
+
+                if (id == TIMECODE_SCALE) {
+                    long value = readUnsigned(in, size);
+                    if (value > 0)
+                        scale = value;
+                } else if (id == DURATION) {
+                    infoDuration = readFloat(in, size);
+                } else if (id == CLUSTER_TIMECODE) {
+                    clusterTime = readUnsigned(in, size);
+                } else if (id == SIMPLE_BLOCK || id == BLOCK) {
+                    // Track number (vint), then a signed 16-bit timestamp relative to the cluster
+                    long before = vintLength(in);
+                    readVint(in, false);
+                    int relative = (short) ((readByte(in) << 8) | readByte(in));
+                    lastTime = Math.max(lastTime, clusterTime + relative);
+                    in.skipNBytes(size - before - 2);
+                } else {
+                    in.skipNBytes(size); // EBML header, tracks, cues, tags, ...
+                }
+            }
+        } catch (EOFException e) {
+            // truncated file: use what was read
+        }
+
+        if (infoDuration > 0)
+            return infoDuration * scale / 1e9;
+        return lastTime >= 0 ? lastTime * (double) scale / 1e9 : -1;
+    }
+
+    /**
+     * Length of the vint at the stream position, without consuming it
+     */
+    private static long vintLength(InputStream in) throws IOException {
+        in.mark(1);
+        int first = readByte(in);
+        in.reset();
+        return Integer.numberOfLeadingZeros(first) - 23;
+    }
+
+    /**
+     * EBML variable-length integer
+     *
+     * @param keepMarker True for element ids (the length marker is part of the id)
+     * @return The value; -1 for a size of all ones (unknown), or an id read at the end of the file
+     */
+    private static long readVint(InputStream in, boolean keepMarker) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            if (keepMarker)
+                return -1;
+            throw new EOFException();
+        }
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (length < 1 || length > 8)
+            throw new EOFException(); // not EBML: stop reading
+        long value = keepMarker ? first : first & (0xFF >> length);
+        boolean allOnes = value == (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            int next = readByte(in);
+            allOnes &= next == 0xFF;
+            value = (value << 8) | next;
+        }
+        return !keepMarker && allOnes ? -1 : value;
+    }
+
+    private static long readUnsigned(InputStream in, long size) throws IOException {
+        if (size > 8) {
+            in.skipNBytes(size);
+            return 0;
+        }
+        long value = 0;
+        for (long i = 0; i < size; i++)
+            value = (value << 8) | readByte(in);
+        return value;
+    }
+
+    private static double readFloat(InputStream in, long size) throws IOException {
+        if (size == 4)
+            return Float.intBitsToFloat((int) readUnsigned(in, 4));
+        if (size == 8)
+            return Double.longBitsToDouble(readUnsigned(in, 8));
+        in.skipNBytes(size);
+        return -1;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException();
+        return b;
+    }
+}
@@ -0,0 +1,475 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk metadata of the {@link ContentStore}: entries (download name, original name, size,
+ * uploader, content type, digest, creation and last post times, references) and the reference
+ * count of each object, kept in an append-only journal.
+ * - Every change appends the new version of a record; a record with no references is a deletion
+ * - Memory: a compact open-addressing table maps the 64-bit hash of each key to the offset of
+ *   its latest record (16 bytes per slot), plus an LRU cache of decoded entries
+ * - The table is built by one sequential scan on first use; a torn or corrupt tail (crash
+ *   during an append) ends the scan and is truncated
+ * - When most of the journal is superseded records, it is rewritten with the live ones
+ * - Durability: appends only reach the page cache; {@link #force()} flushes them in groups (the
+ *   store calls it on a timer, and before deleting an object). A crash can lose the changes of
+ *   the last interval, never leave an entry whose object was deleted
+ *
+ * Record layout: u32 length | u32 crc32(payload) | payload, where the payload is
+ * ENTRY: u8 1 | id | digest | original name | username | content type | u64 size | u64 created | u32 refs
+ *        | u64 last referenced (absent in records of earlier versions: the creation time is used)
+ * OBJECT: u8 2 | digest | u32 refs (strings: u16 length + modified UTF-8)
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+final class MetadataIndex {
+    private static final int HEADER_BYTES = 8;
+    private static final byte ENTRY = 1;
+    private static final byte OBJECT = 2;
+    private static final long REMOVED = -1;
+    static final long COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private final Path journal;
+    private final int cacheEntries;
+    private FileChannel channel; // null until first use
+    private long end;
+    private volatile boolean unforced; // appends since the last flush
+
+    // Key hash -> offset of the latest record (REMOVED after a deletion); key 0 marks a free slot
+    private long[] keys;
+    private long[] offsets;
+    private int usedSlots;
+    private int liveEntries;
+    private int liveObjects;
+    private long liveBytes;
+
+    private final Map<String, ContentStore.Entry> cache;
+
+    /**
+     * @param journal      Journal file (created on first use)
+     * @param cacheEntries Decoded entries kept in memory
+     */
+    MetadataIndex(Path journal, int cacheEntries) {
+        this.journal = journal;
+        this.cacheEntries = Math.max(1, cacheEntries);
+        this.cache = new LinkedHashMap<>(64, 0.75f, true);
+    }
+
+    /**
+     * The entry with this id, or null
+     */
+    synchronized ContentStore.Entry get(String id) throws IOException {
+        open();
+        ContentStore.Entry entry = cache.get(id);
+        if (entry != null)
+            return entry;
+        long offset = offsetOf(key('e', id));
+        if (offset == REMOVED)
+            return null;
+        entry = readEntry(offset);
+        if (entry == null || !entry.getId().equals(id))
+            return null; // hash collision: the slot belongs to another id
+        cacheEntry(entry);
+        return entry;
+    }
+
+    /**
+     * Save a new version of an entry (with no references, the entry is removed)
+     */
+    synchronized void put(ContentStore.Entry entry) throws IOException {
+        open();
+        long key = key('e', entry.getId());
+        long previous = offsetOf(key);
+        long offset = append(encodeEntry(entry));
+        if (previous != REMOVED) {
+            liveBytes -= recordLength(previous);
+            liveEntries--;
+        }
+        if (entry.getReferences() > 0) {
+            setOffset(key, offset);
+            liveBytes += end - offset;
+            liveEntries++;
+            cacheEntry(entry);
+        } else {
+            setOffset(key, REMOVED);
+            cache.remove(entry.getId());
+        }
+        compactIfMostlyGarbage();
+    }
+
+    /**
+     * References to an object (0 if unknown)
+     */
+    synchronized int objectReferences(String digest) throws IOException {
+        open();
+        long offset = offsetOf(key('o', digest));
+        if (offset == REMOVED)
+            return 0;
+        DataInputStream in = read(offset);
+        if (in == null || in.readByte() != OBJECT || !in.readUTF().equals(digest))
+            return 0;
+        return in.readInt();
+    }
+
+    /**
+     * Save an object's reference count (0 removes it)
+     */
+    synchronized void setObjectReferences(String digest, int references) throws IOException {
+        open();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(80);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OBJECT);
+        out.writeUTF(digest);
+        out.writeInt(references);
+
+        long key = key('o', digest);
+        long previous = offsetOf(key);
+        long offset = append(bytes.toByteArray());
+        if (previous != REMOVED) {
+            liveBytes -= recordLength(previous);
+            liveObjects--;
+        }
+        if (references > 0) {
+            setOffset(key, offset);
+            liveBytes += end - offset;
+            liveObjects++;
+        } else {
+            setOffset(key, REMOVED);
+        }
+        compactIfMostlyGarbage();
+    }
+
+    /**
+     * Visit every live entry, in no particular order (hash table order)
+     */
+    synchronized void forEachEntry(Consumer<ContentStore.Entry> visitor) throws IOException {
+        open();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0 || offsets[i] == REMOVED)
+                continue;
+            ContentStore.Entry entry = readEntry(offsets[i]);
+            if (entry != null)
+                visitor.accept(entry);
+        }
+    }
+
+    synchronized int entryCount() throws IOException {
+        open();
+        return liveEntries;
+    }
+
+    /* ---- Journal ---- */
+
+    private void open() throws IOException {
+        if (channel != null)
+            return;
+        Files.createDirectories(journal.getParent());
+        FileChannel opened = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        keys = new long[1024];
+        offsets = new long[1024];
+
+        // One sequential pass: the last record of each key wins. Nothing is published until it
+        // succeeds: a failed scan must not leave a half-built table and an append offset of 0
+        long position = 0;
+        try {
+            long size = opened.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                opened.read(header, position);
+                int length = header.getInt(0);
+                if (length <= 0 || position + HEADER_BYTES + length > size)
+                    break;
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(opened, payload, position + HEADER_BYTES);
+                if (crc(payload.array()) != header.getInt(4))
+                    break;
+                index(opened, payload.array(), position);
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                System.err.println("Metadata journal " + journal + ": dropping " + (size - position)
+                        + " bytes of incomplete records");
+                opened.truncate(position);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                opened.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            keys = null;
+            offsets = null;
+            usedSlots = 0;
+            liveEntries = 0;
+            liveObjects = 0;
+            liveBytes = 0;
+            throw e;
+        }
+        channel = opened;
+        end = position;
+        System.out.println("Metadata index: " + liveEntries + " entries, " + liveObjects + " objects");
+    }
+
+    private void index(FileChannel journalChannel, byte[] payload, long offset) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        long key = key(type == ENTRY ? 'e' : 'o', in.readUTF());
+        int references;
+        if (type == ENTRY) {
+            for (int i = 0; i < 4; i++)
+                in.readUTF();
+            in.readLong();
+            in.readLong();
+            references = in.readInt();
+        } else {
+            references = in.readInt();
+        }
+
+        long previous = offsetOf(key);
+        if (previous != REMOVED) {
+            liveBytes -= recordLength(journalChannel, previous);
+            if (type == ENTRY) {
+                liveEntries--;
+            } else {
+                liveObjects--;
+            }
+        }
+        if (references > 0) {
+            setOffset(key, offset);
+            liveBytes += HEADER_BYTES + payload.length;
+            if (type == ENTRY) {
+                liveEntries++;
+            } else {
+                liveObjects++;
+            }
+        } else {
+            setOffset(key, REMOVED);
+        }
+    }
+
+    private long append(byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+        long offset = end;
+        while (record.hasRemaining())
+            end += channel.write(record, end);
+        unforced = true;
+        return offset;
+    }
+
+    /**
+     * Flush appended records to disk (group commit: one flush covers every append since the last).
+     * Appends are not blocked while the disk syncs.
+     */
+    void force() throws IOException {
+        FileChannel current;
+        synchronized (this) {
+            if (!unforced || channel == null)
+                return;
+            unforced = false;
+            current = channel;
+        }
+        try {
+            current.force(false);
+        } catch (ClosedChannelException e) {
+            // Replaced by a compaction, which forced the new journal
+        } catch (IOException e) {
+            unforced = true;
+            throw e;
+        }
+    }
+
+    private DataInputStream read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, offset);
+        int length = header.getInt(0);
+        if (length <= 0 || offset + HEADER_BYTES + length > end)
+            return null;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + HEADER_BYTES);
+        return new DataInputStream(new ByteArrayInputStream(payload.array()));
+    }
+
+    private void readFully(FileChannel from, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (from.read(buffer, offset + buffer.position()) < 0)
+                throw new IOException("Unexpected end of " + journal);
+        }
+    }
+
+    private long recordLength(long offset) throws IOException {
+        return recordLength(channel, offset);
+    }
+
+    private long recordLength(FileChannel from, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        from.read(header, offset);
+        return HEADER_BYTES + header.getInt(0);
+    }
+
+    private ContentStore.Entry readEntry(long offset) throws IOException {
+        DataInputStream in = read(offset);
+        if (in == null || in.readByte() != ENTRY)
+            return null;
+        String id = in.readUTF();
+        String digest = in.readUTF();
+        String originalName = in.readUTF();
+        String username = in.readUTF();
+        String contentType = in.readUTF();
+        long size = in.readLong();
+        long createdAt = in.readLong();
+        int references = in.readInt();
+        long referencedAt = in.available() >= 8 ? in.readLong() : createdAt;
+        return new ContentStore.Entry(id, digest, originalName, username, contentType, size, createdAt,
+                referencedAt, references);
+    }
+
+    private static byte[] encodeEntry(ContentStore.Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ENTRY);
+        out.writeUTF(entry.getId());
+        out.writeUTF(entry.getDigest());
+        out.writeUTF(entry.getOriginalName());
+        out.writeUTF(entry.getUsername());
+        out.writeUTF(entry.getContentType());
+        out.writeLong(entry.getSize());
+        out.writeLong(entry.getCreatedAt());
+        out.writeInt(entry.getReferences());
+        out.writeLong(entry.getReferencedAt());
+        return bytes.toByteArray();
+    }
+
+    private void cacheEntry(ContentStore.Entry entry) {
+        cache.put(entry.getId(), entry);
+        Iterator<ContentStore.Entry> eldest = cache.values().iterator();
+        while (cache.size() > cacheEntries) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the latest record of each live key
+     */
+    private void compactIfMostlyGarbage() throws IOException {
+        if (end < COMPACT_MIN_BYTES || liveBytes * 2 > end)
+            return;
+        Path compacted = journal.resolveSibling(journal.getFileName() + ".compact");
+        long[] newOffsets = new long[offsets.length];
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (int i = 0; i < keys.length; i++) {
+                newOffsets[i] = REMOVED;
+                if (keys[i] == 0 || offsets[i] == REMOVED)
+                    continue;
+                long length = recordLength(offsets[i]);
+                newOffsets[i] = position;
+                long copied = 0;
+                while (copied < length)
+                    copied += channel.transferTo(offsets[i] + copied, length - copied, out);
+                position += length;
+            }
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(compacted, journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(compacted, journal, StandardCopyOption.REPLACE_EXISTING);
+        }
+        long before = end;
+        channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = channel.size();
+        unforced = false;
+
+        // Same keys, new offsets; removed keys are dropped from the table
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length];
+        offsets = new long[oldKeys.length];
+        usedSlots = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0 && newOffsets[i] != REMOVED)
+                setOffset(oldKeys[i], newOffsets[i]);
+        }
+        System.out.println("Metadata journal compacted: " + before + " -> " + end + " bytes");
+    }
+
+    /* ---- Hash table (linear probing; deletions keep their slot, marked REMOVED) ---- */
+
+    private long offsetOf(long key) {
+        int slot = slot(key);
+        return keys[slot] == 0 ? REMOVED : offsets[slot];
+    }
+
+    private void setOffset(long key, long offset) {
+        if ((usedSlots + 1) * 4 > keys.length * 3)
+            grow();
+        int slot = slot(key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            usedSlots++;
+        }
+        offsets[slot] = offset;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != 0 && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldOffsets = offsets;
+        keys = new long[oldKeys.length * 2];
+        offsets = new long[oldKeys.length * 2];
+        usedSlots = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0 && oldOffsets[i] != REMOVED)
+                setOffset(oldKeys[i], oldOffsets[i]);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a typed key (never 0, the free-slot marker)
+     */
+    private static long key(char type, String value) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ type) * 0x100000001b3L;
+        for (int i = 0; i < value.length(); i++)
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        hash ^= hash >>> 29; // spread high bits into the slot index
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
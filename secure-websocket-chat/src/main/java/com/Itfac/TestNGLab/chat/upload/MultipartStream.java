@@ -0,0 +1,277 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Streaming multipart/form-data reader. Parts are read straight from the request body
+ * through one buffer: part bodies are handed to a {@link BodySink} as slices of that
+ * buffer, so nothing is spooled or copied on the way to the destination.
+ *
+ * Usage: {@code while ((part = stream.next()) != null) stream.readBody(sink);}
+ * (a part whose body is not read is skipped by the next call to next()).
+ * Every byte read from the body counts against one limit: file parts, fields, skipped parts,
+ * headers and preamble alike. A malformed body raises {@link StreamingUpload.RejectedException}
+ * (400); other IOExceptions come from reading the request or from the sink.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class MultipartStream {
+
+    /**
+     * Headers of one part
+     */
+    public static final class Part {
+        private final String name;
+        private final String filename;
+        private final String contentType;
+
+        Part(String name, String filename, String contentType) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Client-supplied file name, or null for a plain form field
+         */
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    /**
+     * Receives a part body in chunks
+     */
+    public interface BodySink {
+        /**
+         * @param chunk Slice of the read buffer; only valid during the call
+         */
+        void write(ByteBuffer chunk) throws IOException;
+    }
+
+    private static final byte[] HEADER_END = { '\r', '\n', '\r', '\n' };
+
+    private final ReadableByteChannel in;
+    private final ByteBuffer buffer; // read mode: unconsumed bytes are between position and limit
+    private final byte[] delimiter; // CRLF "--" boundary
+    private final long maxBytes;
+    private long bytesRead;
+    private boolean eof;
+    private boolean started;
+    private boolean bodyPending;
+    private boolean finished;
+
+    /**
+     * @param buffer   Read buffer (direct buffers let file writes skip a copy); must be larger
+     *                 than the part headers
+     * @param maxBytes Most bytes read from the body (also when it has no Content-Length)
+     */
+    public MultipartStream(InputStream body, String boundary, ByteBuffer buffer, long maxBytes) {
+        this.in = Channels.newChannel(body);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.maxBytes = maxBytes;
+        this.buffer = buffer;
+        buffer.clear();
+        buffer.put((byte) '\r').put((byte) '\n'); // the first boundary has no leading CRLF
+        buffer.flip();
+    }
+
+    /**
+     * Boundary parameter of a multipart/form-data content type
+     *
+     * @return The boundary, or null if the content type is not multipart/form-data
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data"))
+            return null;
+        String boundary = parameter(contentType, "boundary");
+        return boundary == null || boundary.isEmpty() || boundary.length() > 70 ? null : boundary;
+    }
+
+    /**
+     * Advance to the next part, skipping the rest of the current one
+     *
+     * @return The part's headers, or null after the last part
+     */
+    public Part next() throws IOException {
+        if (finished)
+            return null;
+        if (!started) {
+            readBody(null); // preamble
+            started = true;
+        } else if (bodyPending) {
+            readBody(null);
+        }
+
+        // After a boundary: "--" ends the body, CRLF starts a part
+        ensure(2);
+        if (buffer.get(buffer.position()) == '-' && buffer.get(buffer.position() + 1) == '-') {
+            finished = true;
+            return null;
+        }
+        int headersEnd = find(HEADER_END, buffer.position());
+        while (headersEnd < 0) {
+            if (buffer.remaining() == buffer.capacity())
+                throw malformed("Multipart headers too large");
+            if (eof)
+                throw malformed("Truncated multipart body");
+            fill();
+            headersEnd = find(HEADER_END, buffer.position());
+        }
+
+        byte[] raw = new byte[headersEnd - buffer.position()];
+        buffer.get(raw);
+        buffer.position(buffer.position() + HEADER_END.length);
+        bodyPending = true;
+        return parseHeaders(new String(raw, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stream the current part's body to {@code sink} (null discards it)
+     *
+     * @return The number of body bytes
+     */
+    public long readBody(BodySink sink) throws IOException {
+        long total = 0;
+        while (true) {
+            int position = buffer.position();
+            int found = find(delimiter, position);
+            int end = found >= 0 ? found : Math.max(position, buffer.limit() - (delimiter.length - 1));
+            if (end > position) {
+                if (sink != null) {
+                    ByteBuffer chunk = buffer.duplicate();
+                    chunk.limit(end).position(position);
+                    sink.write(chunk);
+                }
+                total += end - position;
+                buffer.position(end);
+            }
+            if (found >= 0) {
+                buffer.position(found + delimiter.length);
+                bodyPending = false;
+                return total;
+            }
+            if (eof)
+                throw malformed("Truncated multipart body");
+            fill();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (eof)
+                throw malformed("Truncated multipart body");
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        int read = in.read(buffer);
+        buffer.flip();
+        if (read < 0) {
+            eof = true;
+        } else if ((bytesRead += read) > maxBytes) {
+            throw new StreamingUpload.RejectedException(413, "Request body too large");
+        }
+    }
+
+    /**
+     * A body that is not valid multipart: the client's fault (read and write errors are not)
+     */
+    private static StreamingUpload.RejectedException malformed(String message) {
+        return new StreamingUpload.RejectedException(400, "Malformed upload: " + message);
+    }
+
+    private int find(byte[] pattern, int from) {
+        int last = buffer.limit() - pattern.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) != pattern[0])
+                continue;
+            int j = 1;
+            while (j < pattern.length && buffer.get(i + j) == pattern[j])
+                j++;
+            if (j == pattern.length)
+                return i;
+        }
+        return -1;
+    }
+
+    private static Part parseHeaders(String headers) {
+        String name = null;
+        String filename = null;
+        String contentType = null;
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon < 0)
+                continue;
+            String header = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (header.equals("content-disposition")) {
+                name = parameter(value, "name");
+                filename = parameter(value, "filename");
+            } else if (header.equals("content-type")) {
+                contentType = value;
+            }
+        }
+        return new Part(name, filename, contentType);
+    }
+
+    /**
+     * Value of a {@code key=value} or {@code key="value"} parameter in a header value
+     */
+    private static String parameter(String value, String key) {
+        int i = 0;
+        int n = value.length();
+        while (i < n) {
+            int eq = value.indexOf('=', i);
+            int semi = value.indexOf(';', i);
+            if (eq < 0)
+                return null;
+            if (semi >= 0 && semi < eq) {
+                i = semi + 1; // a token without a value, e.g. "form-data"
+                continue;
+            }
+
+            String name = value.substring(i, eq).trim();
+            int j = eq + 1;
+            while (j < n && value.charAt(j) == ' ')
+                j++;
+            String v;
+            if (j < n && value.charAt(j) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                for (j++; j < n && value.charAt(j) != '"'; j++) {
+                    if (value.charAt(j) == '\\' && j + 1 < n)
+                        j++;
+                    quoted.append(value.charAt(j));
+                }
+                v = quoted.toString();
+                j++;
+            } else {
+                int end = value.indexOf(';', j);
+                v = value.substring(j, end < 0 ? n : end).trim();
+                j = end < 0 ? n : end;
+            }
+            if (name.equalsIgnoreCase(key))
+                return v;
+            int next = value.indexOf(';', Math.min(j, n));
+            i = next < 0 ? n : next + 1;
+        }
+        return null;
+    }
+}
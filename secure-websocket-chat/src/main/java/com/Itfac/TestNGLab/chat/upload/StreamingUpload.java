@@ -0,0 +1,189 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Receives a multipart upload (one file plus small form fields) by streaming the request body
+ * straight into the destination file: no temp file, no second write.
+ * - The body is read through a pooled direct buffer and written to a FileChannel from it
+ * - The file's SHA-256 digest is computed on the way (see {@link ContentStore})
+ * - The size limit is checked against Content-Length before reading, and again while streaming;
+ *   the whole body (fields and ignored parts included) is capped too, as is the number of parts
+ * - On any failure the partly written file is deleted
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class StreamingUpload {
+    private static final int MAX_FIELD_BYTES = 4096;
+    private static final int MAX_PARTS = 32;
+    private static final long MULTIPART_OVERHEAD = 64 * 1024; // boundaries, part headers, form fields
+
+    /**
+     * An upload that was refused; the status is the HTTP status to answer with
+     */
+    public static class RejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        public RejectedException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Chooses where the file is written, from the client's file name
+     */
+    public interface Destination {
+        /**
+         * @throws RejectedException to refuse the file (e.g. unsupported type)
+         */
+        Path resolve(String filename) throws IOException;
+    }
+
+    private final Map<String, String> fields = new HashMap<>();
+    private String filename;
+    private Path file;
+    private long size;
+    private String digest;
+
+    private StreamingUpload() {
+    }
+
+    /**
+     * Read a multipart request body, storing the first part named {@code fileField}
+     *
+     * @param contentLength Declared body length, or -1 if unknown (chunked)
+     * @param maxBytes      Largest accepted file
+     * @param destination   Maps the client's file name to the (new) file to write
+     * @throws RejectedException 400 for a malformed body or too many parts, 413 for a file or
+     *                           body over the limit
+     * @throws IOException       If reading the request or writing the file fails
+     */
+    public static StreamingUpload receive(InputStream body, String contentType, long contentLength,
+            String fileField, long maxBytes, Destination destination) throws IOException {
+        String boundary = MultipartStream.boundary(contentType);
+        if (boundary == null)
+            throw new RejectedException(400, "Expected a multipart/form-data request");
+        if (contentLength > maxBytes + MULTIPART_OVERHEAD)
+            throw new RejectedException(413, "File too large");
+
+        StreamingUpload upload = new StreamingUpload();
+        ByteBuffer buffer = DirectBuffers.acquire();
+        try {
+            // The file, plus at most the overhead for everything else (skipped parts included)
+            MultipartStream stream = new MultipartStream(body, boundary, buffer, maxBytes + MULTIPART_OVERHEAD);
+            MultipartStream.Part part;
+            int parts = 0;
+            while ((part = stream.next()) != null) {
+                if (++parts > MAX_PARTS)
+                    throw new RejectedException(400, "Too many form parts");
+                if (part.getFilename() != null) {
+                    if (fileField.equals(part.getName()) && upload.file == null)
+                        upload.receiveFile(stream, part, maxBytes, destination);
+                } else if (part.getName() != null) {
+                    upload.fields.put(part.getName(), readField(stream));
+                }
+            }
+            return upload;
+        } catch (IOException | RuntimeException e) {
+            // Malformed bodies and limits are RejectedExceptions; anything else (e.g. a disk
+            // write failing) is the server's fault and goes up as it is
+            upload.discard();
+            throw e;
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+    }
+
+    private void receiveFile(MultipartStream stream, MultipartStream.Part part, long maxBytes,
+            Destination destination) throws IOException {
+        filename = part.getFilename();
+        Path target = destination.resolve(filename);
+        MessageDigest sha256 = ContentStore.newDigest();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            file = target; // ours from here on: deleted if the upload fails
+            stream.readBody(chunk -> {
+                if (size + chunk.remaining() > maxBytes)
+                    throw new RejectedException(413, "File too large");
+                size += chunk.remaining();
+                sha256.update(chunk.duplicate());
+                while (chunk.hasRemaining())
+                    channel.write(chunk);
+            });
+        }
+        digest = ContentStore.hex(sha256.digest());
+    }
+
+    private static String readField(MultipartStream stream) throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        stream.readBody(chunk -> {
+            if (value.size() + chunk.remaining() > MAX_FIELD_BYTES)
+                throw new RejectedException(400, "Form field too large");
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            value.write(bytes, 0, bytes.length);
+        });
+        return value.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Delete the stored file (e.g. when a form field turns out to be invalid)
+     */
+    public void discard() {
+        if (file == null)
+            return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete partial upload " + file + ": " + e.getMessage());
+        }
+        file = null;
+    }
+
+    public String field(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Client-supplied name of the stored file (null if no file was sent)
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * The stored file, or null if no file was sent
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * SHA-256 of the stored file (hex), or null if no file was sent
+     */
+    public String getDigest() {
+        return digest;
+    }
+}
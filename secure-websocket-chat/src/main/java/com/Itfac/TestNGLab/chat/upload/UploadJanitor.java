@@ -0,0 +1,367 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Background cleanup of stored uploads: retention by age, a total disk budget and a per-user quota.
+ * - One in-memory index of all files, sorted by when they were last posted (oldest first), is
+ *   loaded once (metadata journal, plus one listing for files stored by earlier versions) and
+ *   kept current through the store's listener, so a pass never lists directories
+ * - Age counts from the last post: a file posted again is kept as long as a new one, also when
+ *   it is reposted while a pass is deleting it
+ * - A pass picks the oldest files that are expired, or needed to get back under the budget or
+ *   a user's quota, at most {@code batchSize} at a time
+ * - Deletions are rate limited ({@code deletesPerSecond}) so cleanup never competes with
+ *   downloads for the disk; a fully deleted batch is followed by the next one, after the same
+ *   pacing. A file that could not be deleted is skipped until the next run
+ * - Resumable uploads idle for too long are aborted
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class UploadJanitor implements ContentStore.Listener {
+
+    /**
+     * A file in the age index
+     */
+    private static final class Item implements Comparable<Item> {
+        private final String name;
+        private final String username; // "" for files stored by earlier versions (no quota)
+        private final long size;
+        private final long lastPosted;
+        private final boolean legacy;
+
+        Item(String name, String username, long size, long lastPosted, boolean legacy) {
+            this.name = name;
+            this.username = username;
+            this.size = size;
+            this.lastPosted = lastPosted;
+            this.legacy = legacy;
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            int byAge = Long.compare(lastPosted, other.lastPosted);
+            return byAge != 0 ? byAge : name.compareTo(other.name);
+        }
+    }
+
+    private final ContentStore store;
+    private final ChunkedUploads chunkedUploads;
+    private final Path legacyDir;
+    private final long maxAgeMs;
+    private final long maxTotalBytes;
+    private final long userQuotaBytes;
+    private final long resumableIdleMs;
+    private final int batchSize;
+    private final long pauseMs;
+    private final long retryDelayMs;
+    private final Consumer<String> onRemoved;
+
+    // Guarded by this
+    private final TreeSet<Item> byAge = new TreeSet<>();
+    private final Map<String, Item> byName = new HashMap<>();
+    private final Map<String, Long> usage = new HashMap<>();
+    private final Map<String, Long> retryAt = new HashMap<>(); // failed deletions, by name
+    private long trackedBytes;
+    private long legacyBytes;
+
+    private long passes;
+    private long removedByAge;
+    private long removedByBudget;
+    private long removedByQuota;
+    private long freedBytes;
+    private long abortedUploads;
+    private long deleteFailures;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "upload-janitor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * @param legacyDir        Directory of files stored by earlier versions (directly in uploads/)
+     * @param maxAgeMs         Files older than this are deleted (0 = no age limit)
+     * @param maxTotalBytes    Disk budget of all stored files (0 = unlimited)
+     * @param userQuotaBytes   Bytes each user may keep stored (0 = unlimited)
+     * @param resumableIdleMs  Resumable uploads without a chunk for this long are aborted
+     * @param intervalMs       Time between cleanup runs
+     * @param batchSize        Files deleted per pass
+     * @param deletesPerSecond Deletion rate limit
+     * @param onRemoved        Called with the download name of every deleted file
+     */
+    public UploadJanitor(ContentStore store, ChunkedUploads chunkedUploads, Path legacyDir, long maxAgeMs,
+            long maxTotalBytes, long userQuotaBytes, long resumableIdleMs, long intervalMs, int batchSize,
+            int deletesPerSecond, Consumer<String> onRemoved) {
+        this.store = store;
+        this.chunkedUploads = chunkedUploads;
+        this.legacyDir = legacyDir;
+        this.maxAgeMs = maxAgeMs;
+        this.maxTotalBytes = maxTotalBytes;
+        this.userQuotaBytes = userQuotaBytes;
+        this.resumableIdleMs = resumableIdleMs;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMs = 1000L / Math.max(1, deletesPerSecond);
+        this.retryDelayMs = Math.max(1000, intervalMs);
+        this.onRemoved = onRemoved;
+
+        store.addListener(this);
+        scheduler.execute(this::load);
+        scheduler.scheduleWithFixedDelay(this::run, intervalMs, Math.max(1000, intervalMs), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Build the age index: every store entry, plus the files of earlier versions (one listing)
+     */
+    private void load() {
+        List<Item> items = new ArrayList<>();
+        try {
+            store.forEachEntry(entry -> items.add(item(entry)));
+        } catch (IOException e) {
+            System.err.println("Upload cleanup: could not read the metadata index: " + e.getMessage());
+        }
+        if (Files.isDirectory(legacyDir)) {
+            try (Stream<Path> listing = Files.list(legacyDir)) {
+                listing.forEach(file -> {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attributes.isRegularFile())
+                            items.add(new Item(file.getFileName().toString(), "", attributes.size(),
+                                    attributes.lastModifiedTime().toMillis(), true));
+                    } catch (IOException e) {
+                        System.err.println("Upload cleanup: skipping " + file + ": " + e.getMessage());
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("Upload cleanup: could not list " + legacyDir + ": " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            for (Item item : items)
+                track(item);
+            System.out.println("Upload cleanup: tracking " + byName.size() + " files, " + trackedBytes + " bytes");
+        }
+    }
+
+    @Override
+    public void referenced(ContentStore.Entry entry) {
+        synchronized (this) {
+            track(item(entry)); // a repost moves the file to the young end
+        }
+    }
+
+    @Override
+    public void removed(ContentStore.Entry entry) {
+        synchronized (this) {
+            untrack(entry.getId());
+        }
+    }
+
+    private static Item item(ContentStore.Entry entry) {
+        return new Item(entry.getId(), entry.getUsername(), entry.getSize(), entry.getReferencedAt(), false);
+    }
+
+    private void track(Item item) {
+        untrack(item.name);
+        byName.put(item.name, item);
+        byAge.add(item);
+        trackedBytes += item.size;
+        if (item.legacy) {
+            legacyBytes += item.size;
+        } else {
+            usage.merge(item.username, item.size, Long::sum);
+        }
+    }
+
+    private void untrack(String name) {
+        retryAt.remove(name);
+        Item item = byName.remove(name);
+        if (item == null)
+            return;
+        byAge.remove(item);
+        trackedBytes -= item.size;
+        if (item.legacy) {
+            legacyBytes -= item.size;
+        } else if (usage.merge(item.username, -item.size, Long::sum) <= 0) {
+            usage.remove(item.username);
+        }
+    }
+
+    private void run() {
+        try {
+            abortIdleUploads();
+            while (pass() == batchSize) {
+                // the whole batch was deleted, more may be due: continue at the same pace
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Upload cleanup failed: " + e.getMessage());
+        }
+    }
+
+    private void abortIdleUploads() {
+        long idleSince = System.currentTimeMillis() - resumableIdleMs;
+        for (ChunkedUpload upload : chunkedUploads.all()) {
+            if (upload.getLastActivity() < idleSince) {
+                chunkedUploads.abort(upload);
+                synchronized (this) {
+                    abortedUploads++;
+                }
+                System.out.println("Upload cleanup: aborted idle resumable upload " + upload.getId()
+                        + " (" + upload.getFilename() + ")");
+            }
+        }
+    }
+
+    /**
+     * Select and delete one batch
+     *
+     * @return Files deleted or found already gone (failed deletions do not count)
+     */
+    int pass() throws InterruptedException {
+        long stored = store.storedBytes(); // read before locking this: the store calls into us while locked
+        List<Item> victims = new ArrayList<>();
+        List<Boolean> expiredOnly = new ArrayList<>(); // deleted only if not posted since the cutoff
+        long cutoff;
+        int byAgeCount = 0;
+        int byBudgetCount = 0;
+        int byQuotaCount = 0;
+
+        synchronized (this) {
+            passes++;
+            long now = System.currentTimeMillis();
+            cutoff = maxAgeMs > 0 ? now - maxAgeMs : Long.MIN_VALUE;
+            retryAt.values().removeIf(at -> at <= now);
+            long total = stored + legacyBytes;
+            Map<String, Long> overQuota = new HashMap<>();
+            if (userQuotaBytes > 0) {
+                for (Map.Entry<String, Long> user : usage.entrySet()) {
+                    if (user.getValue() > userQuotaBytes)
+                        overQuota.put(user.getKey(), user.getValue());
+                }
+            }
+
+            // Oldest first: stop at the first file kept for every reason
+            for (Item item : byAge) {
+                if (victims.size() >= batchSize)
+                    break;
+                boolean expired = item.lastPosted < cutoff;
+                boolean overBudget = maxTotalBytes > 0 && total > maxTotalBytes;
+                if (!expired && !overBudget && overQuota.isEmpty())
+                    break;
+                Long userBytes = overQuota.get(item.username);
+                if (!expired && !overBudget && userBytes == null)
+                    continue;
+                if (retryAt.containsKey(item.name))
+                    continue; // deletion failed recently
+
+                victims.add(item);
+                expiredOnly.add(expired && !overBudget && userBytes == null);
+                if (expired) {
+                    byAgeCount++;
+                } else if (overBudget) {
+                    byBudgetCount++;
+                } else {
+                    byQuotaCount++;
+                }
+                total -= item.size; // estimate: a shared object is freed with its last name
+                if (userBytes != null) {
+                    if (userBytes - item.size > userQuotaBytes) {
+                        overQuota.put(item.username, userBytes - item.size);
+                    } else {
+                        overQuota.remove(item.username);
+                    }
+                }
+            }
+        }
+        if (victims.isEmpty())
+            return 0;
+
+        long freed = 0;
+        int progress = 0;
+        int kept = 0;
+        for (int i = 0; i < victims.size(); i++) {
+            Item item = victims.get(i);
+            Thread.sleep(pauseMs);
+            try {
+                if (item.legacy) {
+                    Files.deleteIfExists(legacyDir.resolve(item.name));
+                    freed += item.size;
+                    synchronized (this) {
+                        untrack(item.name);
+                    }
+                } else {
+                    // Untracked by the listener; an expired file posted again meanwhile is kept
+                    long bytes = expiredOnly.get(i) ? store.expire(item.name, cutoff) : store.remove(item.name);
+                    if (bytes == ContentStore.KEPT) {
+                        kept++;
+                        progress++; // tracked again under its new time: not selected again
+                        continue;
+                    }
+                    if (bytes < 0) {
+                        synchronized (this) {
+                            untrack(item.name);
+                        }
+                    }
+                    freed += Math.max(0, bytes);
+                }
+                onRemoved.accept(item.name);
+                progress++;
+            } catch (IOException e) {
+                synchronized (this) {
+                    deleteFailures++;
+                    if (byName.containsKey(item.name))
+                        retryAt.put(item.name, System.currentTimeMillis() + retryDelayMs);
+                }
+                System.err.println("Upload cleanup: could not delete " + item.name + ": " + e.getMessage());
+            }
+        }
+
+        synchronized (this) {
+            removedByAge += byAgeCount - kept;
+            removedByBudget += byBudgetCount;
+            removedByQuota += byQuotaCount;
+            freedBytes += freed;
+        }
+        System.out.println("Upload cleanup: removed " + (progress - kept) + " of " + victims.size() + " files ("
+                + (byAgeCount - kept) + " expired, " + byBudgetCount + " over budget, " + byQuotaCount + " over quota"
+                + (kept > 0 ? ", " + kept + " kept, posted again" : "") + "), freed "
+                + freed + " bytes");
+        return progress;
+    }
+
+    /**
+     * Cleanup statistics (for monitoring)
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedFiles", byName.size());
+        stats.put("trackedBytes", trackedBytes);
+        stats.put("users", usage.size());
+        stats.put("passes", passes);
+        stats.put("removedByAge", removedByAge);
+        stats.put("removedByBudget", removedByBudget);
+        stats.put("removedByQuota", removedByQuota);
+        stats.put("freedBytes", freedBytes);
+        stats.put("abortedUploads", abortedUploads);
+        stats.put("deleteFailures", deleteFailures);
+        return stats;
+    }
+}
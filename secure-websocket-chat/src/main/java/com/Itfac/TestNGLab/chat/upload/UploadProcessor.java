@@ -0,0 +1,377 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Post-processing of stored uploads, off the request path: the upload is answered and announced
+ * first, then a worker
+ * - detects the MIME type from the file's signature (the stored type came from the file name)
+ * - measures the real length of WAV, Ogg and WebM audio (the client-sent duration is only a hint)
+ * - makes a JPEG thumbnail of PNG, JPEG and GIF images, stored like any other upload under a
+ *   name made from the image's digest: the same image (posted again, or under another name) gets
+ *   the stored thumbnail back, and the thumbnail goes when the image's last reference does
+ *
+ * Work waits in a bounded queue for a fixed pool of workers; when the queue is full the upload
+ * is simply not processed, so a burst of uploads never slows down uploading.
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class UploadProcessor implements ContentStore.Listener {
+    // Image headers are checked first: a small file may still decode to a huge bitmap
+    private static final long MAX_PIXELS = 50_000_000L;
+    private static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+
+    /**
+     * What processing found out about an upload
+     */
+    public static final class Result {
+        private final ContentStore.Entry entry;
+        private final String mimeType;
+        private final double durationSeconds;
+        private final ContentStore.Entry thumbnail;
+
+        Result(ContentStore.Entry entry, String mimeType, double durationSeconds, ContentStore.Entry thumbnail) {
+            this.entry = entry;
+            this.mimeType = mimeType;
+            this.durationSeconds = durationSeconds;
+            this.thumbnail = thumbnail;
+        }
+
+        /**
+         * The processed entry (with its detected content type)
+         */
+        public ContentStore.Entry getEntry() {
+            return entry;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Measured audio length, or a negative value if not audio or not measurable
+         */
+        public double getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        /**
+         * Stored thumbnail, or null
+         */
+        public ContentStore.Entry getThumbnail() {
+            return thumbnail;
+        }
+    }
+
+    private final ContentStore store;
+    private final long maxImageBytes;
+    private final long maxProbeBytes;
+    private final int thumbnailSize;
+    private final Consumer<String> onRetyped;
+    private final ThreadPoolExecutor workers;
+
+    // Image digest -> thumbnail entry id (a hint: checked against the store before use; filled
+    // again after a restart as images are processed)
+    private final Map<String, String> thumbnailIds = new ConcurrentHashMap<>();
+    // Thumbnails of deleted images, removed on a worker (listeners must not call into the store)
+    private final Queue<String> orphanedThumbnails = new ConcurrentLinkedQueue<>();
+
+    // Guarded by this
+    private long submitted;
+    private long processed;
+    private long dropped;
+    private long failed;
+    private long thumbnails;
+    private long thumbnailsReused;
+    private long measured;
+    private long retyped;
+    private long processingMs;
+
+    /**
+     * @param workers       Worker threads
+     * @param queueCapacity Uploads waiting for a worker; more are not processed
+     * @param maxImageBytes Largest image a thumbnail is made of
+     * @param maxProbeBytes Largest audio file measured (WebM without a duration header is read
+     *                      block by block)
+     * @param thumbnailSize Longest side of a thumbnail, in pixels
+     * @param onRetyped     Called with the download name of every entry whose type changed
+     */
+    public UploadProcessor(ContentStore store, int workers, int queueCapacity, long maxImageBytes,
+            long maxProbeBytes, int thumbnailSize, Consumer<String> onRetyped) {
+        this.store = store;
+        this.maxImageBytes = maxImageBytes;
+        this.maxProbeBytes = maxProbeBytes;
+        this.thumbnailSize = Math.max(16, thumbnailSize);
+        this.onRetyped = onRetyped;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(Math.max(1, workers), Math.max(1, workers), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread thread = new Thread(r, "upload-processor-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        ImageIO.setUseCache(false); // decode in memory, no temp files
+        store.addListener(this);
+    }
+
+    @Override
+    public void removed(ContentStore.Entry entry) {
+        // Another name may still hold the image: only its object going takes the thumbnail along
+        if (Files.exists(store.object(entry.getDigest())))
+            return;
+        String thumbnailId = thumbnailIds.remove(entry.getDigest());
+        if (thumbnailId == null)
+            return;
+        orphanedThumbnails.add(thumbnailId);
+        try {
+            workers.execute(this::removeOrphanedThumbnails);
+        } catch (RejectedExecutionException e) {
+            // queue full: the next upload processed removes it
+        }
+    }
+
+    private void removeOrphanedThumbnails() {
+        String id;
+        while ((id = orphanedThumbnails.poll()) != null) {
+            try {
+                store.remove(id);
+            } catch (IOException e) {
+                System.err.println("Could not remove thumbnail " + id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue an upload for processing (never blocks)
+     *
+     * @param audio True for voice messages (a WebM file is then audio)
+     * @param done  Called on a worker with the result, unless processing failed
+     * @return False if the queue is full and the upload will not be processed
+     */
+    public boolean submit(ContentStore.Entry entry, boolean audio, Consumer<Result> done) {
+        try {
+            workers.execute(() -> run(entry, audio, done));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                dropped++;
+            }
+            System.err.println("Upload processing queue full, skipping " + entry.getId());
+            return false;
+        }
+        synchronized (this) {
+            submitted++;
+        }
+        return true;
+    }
+
+    private void run(ContentStore.Entry entry, boolean audio, Consumer<Result> done) {
+        removeOrphanedThumbnails();
+        long start = System.nanoTime();
+        Result result;
+        try {
+            result = process(entry, audio);
+        } catch (NoSuchFileException e) {
+            return; // removed before its turn came
+        } catch (Exception e) {
+            synchronized (this) {
+                failed++;
+            }
+            System.err.println("Could not process upload " + entry.getId() + ": " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            processed++;
+            processingMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        try {
+            done.accept(result);
+        } catch (Exception e) {
+            System.err.println("Upload processing callback failed for " + entry.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private Result process(ContentStore.Entry entry, boolean audio) throws IOException {
+        Path file = store.object(entry.getDigest());
+
+        // 1. Type from the signature
+        byte[] head = new byte[MediaProbe.HEAD_BYTES];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.readNBytes(head, 0, head.length);
+        }
+        String mimeType = MediaProbe.sniff(head, length);
+        if (audio && "video/webm".equals(mimeType))
+            mimeType = "audio/webm"; // recorders write audio-only WebM
+        if (mimeType != null && !mimeType.equals(entry.getContentType())) {
+            ContentStore.Entry updated = store.setContentType(entry.getId(), mimeType);
+            if (updated == null)
+                throw new NoSuchFileException(entry.getId());
+            entry = updated;
+            onRetyped.accept(entry.getId());
+            synchronized (this) {
+                retyped++;
+            }
+        }
+        String type = entry.getContentType();
+
+        // 2. Audio length from the container headers
+        double duration = -1;
+        if (type.startsWith("audio/")) {
+            if (entry.getSize() <= maxProbeBytes)
+                duration = MediaProbe.duration(file, type);
+            if (duration >= 0) {
+                synchronized (this) {
+                    measured++;
+                }
+            }
+        }
+
+        // 3. Thumbnail of images Java can decode
+        ContentStore.Entry thumbnail = null;
+        if (mimeType != null && mimeType.startsWith("image/") && entry.getSize() <= maxImageBytes) {
+            thumbnail = storedThumbnail(entry);
+            if (thumbnail != null) {
+                synchronized (this) {
+                    thumbnailsReused++;
+                }
+            } else {
+                thumbnail = thumbnail(file, entry);
+                if (thumbnail != null) {
+                    synchronized (this) {
+                        thumbnails++;
+                    }
+                }
+            }
+        }
+        return new Result(entry, type, duration, thumbnail);
+    }
+
+    /**
+     * Thumbnail made earlier of the same image, or null
+     */
+    private ContentStore.Entry storedThumbnail(ContentStore.Entry entry) throws IOException {
+        String id = thumbnailIds.get(entry.getDigest());
+        if (id == null)
+            return null;
+        ContentStore.Entry thumbnail = store.get(id);
+        if (thumbnail == null) {
+            thumbnailIds.remove(entry.getDigest(), id); // expired meanwhile
+            return null;
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Decode (subsampled when much larger than the thumbnail), scale, store as JPEG
+     *
+     * @return The stored thumbnail (the entry itself if it is small enough), or null if the image
+     *         cannot be decoded
+     */
+    private ContentStore.Entry thumbnail(Path file, ContentStore.Entry entry) throws IOException {
+        BufferedImage source;
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext())
+                return null; // e.g. WebP
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS)
+                    return null;
+                if (width <= thumbnailSize && height <= thumbnailSize)
+                    return entry; // already small: the image is its own thumbnail
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (thumbnailSize * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE); // JPEG has no alpha: transparent areas become white
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        if (!ImageIO.write(scaled, "jpg", jpeg))
+            return null;
+        byte[] bytes = jpeg.toByteArray();
+
+        // Stored like an upload by the same user (deduplicated, cleaned up, cached alike), named
+        // after the image; one reference, however often the image is posted or processed
+        String digest = ContentStore.hex(ContentStore.newDigest().digest(bytes));
+        String name = entry.getDigest() + THUMBNAIL_SUFFIX;
+        String id = digest + "_" + ContentStore.safeName(name);
+        synchronized (thumbnailIds) {
+            ContentStore.Entry stored = store.get(id); // made before a restart, or by another worker
+            if (stored == null) {
+                Path temp = store.tempFile();
+                Files.write(temp, bytes);
+                stored = store.add(temp, digest, bytes.length, name, entry.getUsername());
+            }
+            thumbnailIds.put(entry.getDigest(), stored.getId());
+            return stored;
+        }
+    }
+
+    /**
+     * Processing statistics (for monitoring)
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers.getPoolSize());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("submitted", submitted);
+        stats.put("processed", processed);
+        stats.put("dropped", dropped);
+        stats.put("failed", failed);
+        stats.put("retyped", retyped);
+        stats.put("measured", measured);
+        stats.put("thumbnails", thumbnails);
+        stats.put("thumbnailsReused", thumbnailsReused);
+        stats.put("averageMs", processed == 0 ? 0 : processingMs / processed);
+        return stats;
+    }
+}
@@ -0,0 +1,152 @@
+package com.Itfac.TestNGLab.chat.whiteboard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Server-side whiteboard state for one room.
+ * - Every stroke is appended to an op log (records in the {@link StrokeBatcher} batch format)
+ * - The log is compacted into one contiguous snapshot once it holds enough ops or its
+ *   oldest op is old enough; the oldest strokes are trimmed to keep the canvas bounded
+ * - WHITEBOARD_CLEAR truncates snapshot and log
+ *
+ * Late joiners get the whole canvas (snapshot + tail ops) as one binary frame:
+ *   u8  kind = 3 (CANVAS)
+ *   u32 strokeCount
+ *   per stroke: u8 usernameLength, username UTF-8, u32 bodyLength, body
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class Canvas {
+    public static final byte KIND_CANVAS = 3;
+    public static final String TYPE = "WHITEBOARD_CANVAS";
+
+    // Configuration: canvas size cap (bytes) and compaction triggers (ops / milliseconds)
+    static final int MAX_BYTES = Integer.getInteger("whiteboard.canvasMaxBytes", 1024 * 1024);
+    static final int COMPACT_OPS = Integer.getInteger("whiteboard.compactOps", 256);
+    static final long COMPACT_AFTER_MS = Long.getLong("whiteboard.compactAfterMs", 5000L);
+
+    private static final int HEADER_BYTES = 5; // kind + strokeCount
+
+    // Compacted strokes, oldest first
+    private byte[] snapshot = new byte[0];
+    private int snapshotStrokes;
+
+    // Ops appended since the last compaction
+    private final List<byte[]> log = new ArrayList<>();
+    private long logBytes;
+    private long oldestOpAt;
+
+    // Last encoded canvas frame, reused until the canvas changes
+    private ByteBuffer encoded;
+
+    // Counters (exposed on /stats)
+    private long compactions;
+    private long trimmed;
+
+    /**
+     * Append a stroke body to the op log, compacting if a size/age threshold is reached
+     */
+    public synchronized void append(String username, byte[] data, int offset, int bodyLength, long now) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(name.length, 255);
+        byte[] record = new byte[1 + nameLength + 4 + bodyLength];
+        record[0] = (byte) nameLength;
+        System.arraycopy(name, 0, record, 1, nameLength);
+        ByteBuffer.wrap(record, 1 + nameLength, 4).putInt(bodyLength);
+        System.arraycopy(data, offset, record, 1 + nameLength + 4, bodyLength);
+
+        if (log.isEmpty())
+            oldestOpAt = now;
+        log.add(record);
+        logBytes += record.length;
+        encoded = null;
+
+        if (log.size() >= COMPACT_OPS || now - oldestOpAt >= COMPACT_AFTER_MS
+                || snapshot.length + logBytes > MAX_BYTES) {
+            compact();
+        }
+    }
+
+    /**
+     * Truncate the canvas (WHITEBOARD_CLEAR)
+     */
+    public synchronized void clear() {
+        snapshot = new byte[0];
+        snapshotStrokes = 0;
+        log.clear();
+        logBytes = 0;
+        encoded = null;
+    }
+
+    /**
+     * Encode the whole canvas as one frame
+     *
+     * @return The canvas frame, or null if the canvas is empty
+     */
+    public synchronized ByteBuffer encode() {
+        int strokes = snapshotStrokes + log.size();
+        if (strokes == 0)
+            return null;
+        if (encoded != null)
+            return encoded.duplicate();
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + snapshot.length + (int) logBytes);
+        frame.put(KIND_CANVAS).putInt(strokes).put(snapshot);
+        for (byte[] record : log) {
+            frame.put(record);
+        }
+        frame.flip();
+        encoded = frame.asReadOnlyBuffer();
+        return encoded.duplicate();
+    }
+
+    /**
+     * Fold the op log into the snapshot and trim the oldest strokes over the size cap
+     */
+    private void compact() {
+        byte[] merged = Arrays.copyOf(snapshot, snapshot.length + (int) logBytes);
+        int position = snapshot.length;
+        for (byte[] record : log) {
+            System.arraycopy(record, 0, merged, position, record.length);
+            position += record.length;
+        }
+        int strokes = snapshotStrokes + log.size();
+        log.clear();
+        logBytes = 0;
+
+        // Skip whole records from the front until the canvas fits
+        int start = 0;
+        while (merged.length - start > MAX_BYTES && strokes > 0) {
+            int nameLength = merged[start] & 0xFF;
+            int bodyLength = ByteBuffer.wrap(merged, start + 1 + nameLength, 4).getInt();
+            start += 1 + nameLength + 4 + bodyLength;
+            strokes--;
+            trimmed++;
+        }
+
+        snapshot = start == 0 ? merged : Arrays.copyOfRange(merged, start, merged.length);
+        snapshotStrokes = strokes;
+        compactions++;
+    }
+
+    public synchronized int strokeCount() {
+        return snapshotStrokes + log.size();
+    }
+
+    public synchronized long sizeBytes() {
+        return snapshot.length + logBytes;
+    }
+
+    public synchronized long compactionCount() {
+        return compactions;
+    }
+
+    public synchronized long trimmedCount() {
+        return trimmed;
+    }
+}
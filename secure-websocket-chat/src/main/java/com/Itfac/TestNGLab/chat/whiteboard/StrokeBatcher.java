@@ -0,0 +1,142 @@
+package com.Itfac.TestNGLab.chat.whiteboard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary whiteboard stroke protocol and per-room batching.
+ * The server never decodes points: stroke bodies are relayed as opaque bytes,
+ * tagged with the sender, and coalesced into one binary frame per tick.
+ *
+ * Client -> server (binary frame, one stroke):
+ *   u8  kind = 1 (STROKE)
+ *   u8  roomLength, then roomLength bytes of UTF-8 room id (0 = connection's default room)
+ *   ... stroke body, opaque to the server:
+ *       u8 tool (0 = pen, 1 = eraser), u8 lineWidth, u8 r, u8 g, u8 b,
+ *       u16 pointCount, f32 x0, f32 y0, then (pointCount - 1) x (i16 dx, i16 dy) in 1/8 px
+ *
+ * Server -> clients (binary frame, every stroke of one tick):
+ *   u8  kind = 2 (STROKE_BATCH)
+ *   u16 strokeCount
+ *   per stroke: u8 usernameLength, username UTF-8, u32 bodyLength, body
+ *
+ * All integers are big-endian (DataView default).
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class StrokeBatcher {
+    public static final byte KIND_STROKE = 1;
+    public static final byte KIND_STROKE_BATCH = 2;
+    public static final String TYPE = "WHITEBOARD_STROKES";
+
+    // Limits: a single stroke body, and a whole batch frame (flushed early when reached)
+    public static final int MAX_STROKE_BYTES = Integer.getInteger("whiteboard.maxStrokeBytes", 32 * 1024);
+    static final int MAX_BATCH_BYTES = Integer.getInteger("whiteboard.maxBatchBytes", 60 * 1024);
+
+    private static final int HEADER_BYTES = 3; // kind + strokeCount
+
+    private byte[] buffer = new byte[4096];
+    private int length = HEADER_BYTES;
+    private int strokes;
+    private boolean flushScheduled;
+
+    /**
+     * Append a stroke body to the current batch
+     *
+     * @return A full batch that must be sent right away (the stroke starts a new one),
+     *         or null if the stroke fit in the current batch
+     */
+    public synchronized ByteBuffer add(String username, byte[] data, int offset, int bodyLength) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int nameLength = Math.min(name.length, 255);
+        int recordBytes = 1 + nameLength + 4 + bodyLength;
+
+        ByteBuffer full = null;
+        if (strokes > 0 && (length + recordBytes > MAX_BATCH_BYTES || strokes == 0xFFFF)) {
+            full = take();
+        }
+
+        ensureCapacity(length + recordBytes);
+        buffer[length++] = (byte) nameLength;
+        System.arraycopy(name, 0, buffer, length, nameLength);
+        length += nameLength;
+        buffer[length++] = (byte) (bodyLength >>> 24);
+        buffer[length++] = (byte) (bodyLength >>> 16);
+        buffer[length++] = (byte) (bodyLength >>> 8);
+        buffer[length++] = (byte) bodyLength;
+        System.arraycopy(data, offset, buffer, length, bodyLength);
+        length += bodyLength;
+        strokes++;
+        return full;
+    }
+
+    /**
+     * Mark that a flush is pending for this tick
+     *
+     * @return true if the caller must schedule the flush (first stroke of the tick)
+     */
+    public synchronized boolean scheduleFlush() {
+        if (flushScheduled)
+            return false;
+        flushScheduled = true;
+        return true;
+    }
+
+    /**
+     * Take the batch collected during this tick
+     *
+     * @return The batch frame, or null if no strokes arrived
+     */
+    public synchronized ByteBuffer drain() {
+        flushScheduled = false;
+        return strokes == 0 ? null : take();
+    }
+
+    /**
+     * Encode a stroke as a binary stroke body (the layout clients send), e.g. for
+     * strokes that arrived as JSON WHITEBOARD_DRAW
+     *
+     * @return The body, or null if the stroke has fewer than two points
+     */
+    public static byte[] encodeBody(boolean eraser, int lineWidth, int rgb, double[] xs, double[] ys) {
+        int count = Math.min(Math.min(xs.length, ys.length), (MAX_STROKE_BYTES - 15) / 4 + 1);
+        if (count < 2)
+            return null;
+
+        ByteBuffer body = ByteBuffer.allocate(15 + (count - 1) * 4);
+        body.put((byte) (eraser ? 1 : 0))
+                .put((byte) Math.max(0, Math.min(255, lineWidth)))
+                .put((byte) (rgb >>> 16)).put((byte) (rgb >>> 8)).put((byte) rgb)
+                .putShort((short) count)
+                .putFloat((float) xs[0]).putFloat((float) ys[0]);
+
+        // Deltas in 1/8 px from the reconstructed point, so rounding never drifts
+        double x = (float) xs[0];
+        double y = (float) ys[0];
+        for (int i = 1; i < count; i++) {
+            int dx = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round((xs[i] - x) * 8)));
+            int dy = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round((ys[i] - y) * 8)));
+            body.putShort((short) dx).putShort((short) dy);
+            x += dx / 8.0;
+            y += dy / 8.0;
+        }
+        return body.array();
+    }
+
+    private ByteBuffer take() {
+        buffer[0] = KIND_STROKE_BATCH;
+        buffer[1] = (byte) (strokes >>> 8);
+        buffer[2] = (byte) strokes;
+        ByteBuffer batch = ByteBuffer.wrap(Arrays.copyOf(buffer, length)).asReadOnlyBuffer();
+        length = HEADER_BYTES;
+        strokes = 0;
+        return batch;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+    }
+}
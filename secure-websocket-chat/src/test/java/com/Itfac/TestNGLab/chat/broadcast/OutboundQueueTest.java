@@ -0,0 +1,201 @@
+package com.Itfac.TestNGLab.chat.broadcast;
+
+import com.Itfac.TestNGLab.chat.codec.WireFormat;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Tests for {@link OutboundQueue} against a client that stops reading: the writer stalls
+ * until the test completes a write, so frames pile up in the queue
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class OutboundQueueTest {
+    static {
+        // Read once when OutboundQueue is loaded: keeps the timeout test short
+        System.setProperty("outbound.disconnectAfterSeconds", "1");
+    }
+
+    private final List<String> written = new ArrayList<>();
+    private final ArrayDeque<WriteCallback> stalled = new ArrayDeque<>();
+    private Integer closeStatus;
+    private OutboundQueue queue;
+
+    @BeforeMethod
+    public void connect() {
+        written.clear();
+        stalled.clear();
+        closeStatus = null;
+        queue = new OutboundQueue(new WsContext("test", stalledSession()) {
+        }, WireFormat.JSON);
+    }
+
+    /* ---- DROP_OLDEST ---- */
+
+    @Test
+    public void transientFramesDropTheOldestAtTheHighWaterMark() {
+        offer("MESSAGE", null, "in-flight");
+        for (int i = 0; i < OutboundQueue.HIGH_WATER_MARK; i++)
+            offer("TYPING", null, "typing-" + i);
+        assertEquals(queue.depth(), OutboundQueue.HIGH_WATER_MARK);
+
+        offer("TYPING", null, "typing-new");
+
+        assertEquals(queue.depth(), OutboundQueue.HIGH_WATER_MARK);
+        assertEquals(queue.droppedCount(), 1);
+        completeWrite();
+        assertEquals(written.get(written.size() - 1), "typing-1"); // typing-0 was dropped
+        assertNull(closeStatus);
+    }
+
+    @Test
+    public void transientFrameIsDroppedWhenNothingOlderCanBe() {
+        offer("MESSAGE", null, "in-flight");
+        for (int i = 0; i < OutboundQueue.HIGH_WATER_MARK; i++)
+            offer("MESSAGE", null, "message-" + i);
+
+        offer("TYPING", null, "typing");
+
+        assertEquals(queue.depth(), OutboundQueue.HIGH_WATER_MARK);
+        assertEquals(queue.droppedCount(), 1);
+        drain();
+        assertEquals(written.get(written.size() - 1), "message-" + (OutboundQueue.HIGH_WATER_MARK - 1));
+    }
+
+    /* ---- COALESCE ---- */
+
+    @Test
+    public void snapshotReplacesTheQueuedOneForTheSameRoomOnly() {
+        offer("MESSAGE", null, "in-flight");
+        offer("USER_LIST_UPDATE", "lobby", "lobby-v1");
+        offer("USER_LIST_UPDATE", "games", "games-v1");
+        offer("TYPING_USERS", "lobby", "typing-v1");
+        offer("USER_LIST_UPDATE", "lobby", "lobby-v2");
+
+        assertEquals(queue.depth(), 3);
+        assertEquals(queue.coalescedCount(), 1);
+        drain();
+        assertEquals(written, List.of("in-flight", "games-v1", "typing-v1", "lobby-v2"));
+    }
+
+    /* ---- DISCONNECT ---- */
+
+    @Test
+    public void clientIsDisconnectedAtTheHardLimit() {
+        offer("MESSAGE", null, "in-flight");
+        for (int i = 0; i < OutboundQueue.HARD_LIMIT - 1; i++)
+            offer("MESSAGE", null, "message-" + i);
+        assertNull(closeStatus);
+
+        offer("MESSAGE", null, "last");
+
+        assertEquals(closeStatus, Integer.valueOf(StatusCode.TRY_AGAIN_LATER));
+        assertEquals(queue.depth(), 0);
+        assertEquals(queue.droppedCount(), OutboundQueue.HARD_LIMIT);
+
+        offer("MESSAGE", null, "after close");
+        assertEquals(queue.depth(), 0);
+    }
+
+    @Test
+    public void clientOverTheHighWaterMarkIsDisconnectedAfterTheTimeout() throws InterruptedException {
+        assertEquals(OutboundQueue.DISCONNECT_AFTER_MS, 1000);
+        offer("MESSAGE", null, "in-flight");
+        for (int i = 0; i < OutboundQueue.HIGH_WATER_MARK; i++)
+            offer("MESSAGE", null, "message-" + i);
+        assertNull(closeStatus);
+
+        Thread.sleep(OutboundQueue.DISCONNECT_AFTER_MS + 200);
+        offer("MESSAGE", null, "late");
+
+        assertEquals(closeStatus, Integer.valueOf(StatusCode.TRY_AGAIN_LATER));
+        assertEquals(queue.depth(), 0);
+    }
+
+    @Test
+    public void catchingUpResetsTheTimeout() throws InterruptedException {
+        offer("MESSAGE", null, "in-flight");
+        for (int i = 0; i < OutboundQueue.HIGH_WATER_MARK; i++)
+            offer("MESSAGE", null, "message-" + i);
+
+        Thread.sleep(OutboundQueue.DISCONNECT_AFTER_MS + 200);
+        completeWrite(); // back under the high-water mark
+        offer("MESSAGE", null, "late");
+
+        assertNull(closeStatus);
+        assertEquals(queue.depth(), OutboundQueue.HIGH_WATER_MARK);
+    }
+
+    /* ---- Helpers ---- */
+
+    private void offer(String type, String room, String text) {
+        queue.offer(type, room, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    /**
+     * Let the client read the frame being written (the queue then hands over the next one)
+     */
+    private void completeWrite() {
+        stalled.poll().writeSuccess();
+    }
+
+    private void drain() {
+        while (!stalled.isEmpty())
+            completeWrite();
+    }
+
+    /**
+     * A session whose writes only complete when the test says so
+     */
+    private Session stalledSession() {
+        RemoteEndpoint remote = proxy(RemoteEndpoint.class, (method, args) -> {
+            if (method.equals("sendString")) {
+                written.add((String) args[0]);
+                stalled.add((WriteCallback) args[1]);
+            }
+            return null;
+        });
+        return proxy(Session.class, (method, args) -> {
+            switch (method) {
+                case "getRemote":
+                    return remote;
+                case "getRemoteAddress":
+                    return new InetSocketAddress("127.0.0.1", 50000);
+                case "close":
+                    if (args != null && args.length == 2)
+                        closeStatus = (Integer) args[0];
+                    return null;
+                case "isOpen":
+                    return closeStatus == null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (self, method, args) -> handler.invoke(method.getName(), args)));
+    }
+}
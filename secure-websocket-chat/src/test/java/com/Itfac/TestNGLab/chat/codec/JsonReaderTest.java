@@ -0,0 +1,223 @@
+package com.Itfac.TestNGLab.chat.codec;
+
+import com.Itfac.TestNGLab.chat.models.Message;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Tests for {@link JsonReader}, and for messages converted between JSON and MessagePack
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class JsonReaderTest {
+
+    /* ---- Escapes ---- */
+
+    @Test
+    public void decodesEscapes() {
+        JsonReader reader = new JsonReader("\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\\u00e9\\u20AC\"");
+        assertEquals(reader.nextString(), "a\"b\\c/d\b\f\n\r\t\u00e9\u20ac");
+        reader.endDocument();
+    }
+
+    @Test
+    public void decodesSurrogatePairs() {
+        assertEquals(new JsonReader("\"\\ud83d\\ude00\"").nextString(), "\ud83d\ude00");
+    }
+
+    @Test
+    public void matchesEscapedFieldNames() {
+        JsonReader reader = new JsonReader("{\"ty\\u0070e\":\"JOIN\"}");
+        reader.beginObject();
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextName(new String[] { "payload", "type" }), 1);
+        assertEquals(reader.nextString(), "JOIN");
+        assertTrue(!reader.hasNext());
+        reader.endDocument();
+    }
+
+    @Test
+    public void rejectsInvalidEscapes() {
+        expectThrows(IllegalArgumentException.class, () -> new JsonReader("\"\\x\"").nextString());
+        expectThrows(IllegalArgumentException.class, () -> new JsonReader("\"\\u12\"").nextString());
+        expectThrows(IllegalArgumentException.class, () -> new JsonReader("\"\\u12zz\"").nextString());
+        expectThrows(IllegalArgumentException.class, () -> new JsonReader("\"abc\\").nextString());
+    }
+
+    /* ---- Nesting ---- */
+
+    @Test
+    public void readsNestedValues() {
+        Object value = new JsonReader("{\"a\":[1,{\"b\":[true,false,null]},\"x\"],\"c\":{}}").nextValue();
+        Map<?, ?> map = (Map<?, ?>) value;
+        List<?> a = (List<?>) map.get("a");
+        assertEquals(a.get(0), 1.0);
+        assertEquals(((Map<?, ?>) a.get(1)).get("b"), Arrays.asList(true, false, null));
+        assertEquals(a.get(2), "x");
+        assertTrue(((Map<?, ?>) map.get("c")).isEmpty());
+    }
+
+    @Test
+    public void acceptsNestingUpToTheLimit() {
+        String json = "[".repeat(64) + "]".repeat(64);
+        JsonReader reader = new JsonReader(json);
+        reader.skipValue();
+        reader.endDocument();
+    }
+
+    @Test
+    public void rejectsNestingBeyondTheLimit() {
+        String json = "[".repeat(65) + "]".repeat(65);
+        expectThrows(IllegalArgumentException.class, () -> new JsonReader(json).skipValue());
+        expectThrows(IllegalArgumentException.class, () -> new JsonReader(json).nextValue());
+    }
+
+    /* ---- Malformed input ---- */
+
+    @DataProvider
+    public Object[][] malformed() {
+        return new Object[][] {
+                { "{\"a\":[1}" },
+                { "[{\"a\":1]]" },
+                { "{\"a\":1]" },
+                { "[1}" },
+                { "[1,]" },
+                { "{\"a\":1,}" },
+                { "{\"a\" 1}" },
+                { "{\"a\":1" },
+                { "[1 2]" },
+                { "\"abc" },
+                { "tru" },
+                { "-" },
+                { "1.2.3" },
+                { "[01]" },
+                { "1." },
+                { "-.5" },
+                { "1e" },
+                { "+1" },
+                { "@" },
+                { "" },
+        };
+    }
+
+    @Test(dataProvider = "malformed")
+    public void rejectsMalformedInput(String json) {
+        expectThrows(IllegalArgumentException.class, () -> {
+            JsonReader reader = new JsonReader(json);
+            reader.nextValue();
+            reader.endDocument();
+        });
+        expectThrows(IllegalArgumentException.class, () -> {
+            JsonReader reader = new JsonReader(json);
+            reader.skipValue();
+            reader.endDocument();
+        });
+    }
+
+    @Test
+    public void readsNumbers() {
+        List<?> numbers = (List<?>) new JsonReader("[0, -1, 12.5, 1e3, -2.5E-2, 6E+1]").nextValue();
+        assertEquals(numbers, Arrays.asList(0.0, -1.0, 12.5, 1000.0, -0.025, 60.0));
+        assertEquals(new JsonReader("9007199254740993").nextNullableLong(), Long.valueOf(9007199254740993L));
+        assertEquals(new JsonReader("\"42\"").nextNullableLong(), Long.valueOf(42));
+    }
+
+    @Test
+    public void rejectsAStrayCloser() {
+        JsonReader reader = new JsonReader("}");
+        expectThrows(IllegalArgumentException.class, reader::hasNext);
+    }
+
+    @Test
+    public void rejectsTrailingData() {
+        JsonReader reader = new JsonReader("{} {}");
+        reader.skipValue();
+        expectThrows(IllegalArgumentException.class, reader::endDocument);
+    }
+
+    @Test
+    public void rejectsMismatchedClosersInMessages() {
+        expectThrows(IllegalArgumentException.class,
+                () -> MessageCodec.decode("{\"type\":\"CHAT\",\"payload\":{\"users\":[\"a\"}}"));
+        expectThrows(IllegalArgumentException.class,
+                () -> MessageCodec.scanHeader("{\"type\":\"DRAW\",\"payload\":{\"drawData\":{\"x\":[1}}}"));
+    }
+
+    /* ---- Header scan ---- */
+
+    @Test
+    public void scanDecodesInterpretedTypesInTheSamePass() {
+        Set<String> decoded = Set.of("MESSAGE");
+        MessageCodec.Header header = MessageCodec.scanHeader(
+                "{\"type\":\"MESSAGE\",\"payload\":{\"room\":\"r1\",\"text\":\"hi\"},\"sequence\":3}", decoded);
+        assertEquals(header.getRoom(), "r1");
+        assertEquals(header.getMessage().getPayload().getText(), "hi");
+        assertEquals(header.getMessage().getSequence(), Long.valueOf(3));
+
+        // Payload before type: skipped during the scan, so the caller decodes again
+        assertNull(MessageCodec.scanHeader("{\"payload\":{\"room\":\"r1\"},\"type\":\"MESSAGE\"}", decoded)
+                .getMessage());
+        assertNull(MessageCodec.scanHeader("{\"type\":\"TYPING\",\"payload\":{}}", decoded).getMessage());
+    }
+
+    @Test
+    public void scanKeepsTheTextOfDrawData() {
+        MessageCodec.Header header = MessageCodec.scanHeader(
+                "{\"type\":\"WHITEBOARD_DRAW\",\"payload\":{\"drawData\": {\"points\":[{\"x\":1}]} ,\"room\":\"r1\"}}");
+        assertEquals(header.getRoom(), "r1");
+        assertEquals(header.getDrawData(), "{\"points\":[{\"x\":1}]}");
+        assertNull(MessageCodec.scanHeader("{\"type\":\"TYPING\"}").getDrawData());
+    }
+
+    /* ---- JSON <-> MessagePack ---- */
+
+    @Test
+    public void roundTripsMessagesThroughMsgPack() {
+        String json = "{\"type\":\"DRAW\",\"payload\":{\"username\":\"al\\u00efce \\\"a\\\"\",\"room\":\"r1\","
+                + "\"text\":\"line\\nbreak \\ud83d\\ude00\",\"users\":[\"a\",\"b\"],\"filename\":\"f.png\","
+                + "\"filesize\":\"1 KB\",\"url\":\"http://x/y\",\"duration\":\"0:15\",\"since\":42,"
+                + "\"version\":7,\"drawData\":{\"x\":12.5,\"points\":[1,2,3],\"erase\":false,\"color\":null},"
+                + "\"mimeType\":\"image/png\",\"thumbnail\":\"http://x/t\"},\"timestamp\":\"12:00:00\","
+                + "\"sequence\":9007199254740993}";
+        Message fromJson = MessageCodec.decode(json);
+        String canonical = MessageCodec.encodeToString(fromJson);
+
+        ByteBuffer packed = MsgPackCodec.encode(fromJson);
+        byte[] bytes = new byte[packed.remaining()];
+        packed.get(bytes);
+        Message fromMsgPack = MsgPackCodec.decode(bytes, 0, bytes.length);
+
+        assertEquals(MessageCodec.encodeToString(fromMsgPack), canonical);
+        assertEquals(fromMsgPack.getSequence(), Long.valueOf(9007199254740993L));
+        assertEquals(fromMsgPack.getPayload().getText(), "line\nbreak \ud83d\ude00");
+        assertEquals(fromMsgPack.getPayload().getUsers(), new String[] { "a", "b" });
+        assertEquals(MessageCodec.decode(canonical).getPayload().getUsername(), "al\u00efce \"a\"");
+    }
+
+    @Test
+    public void omitsNullFields() {
+        Message message = new Message("PING", null);
+        String json = MessageCodec.encodeToString(message);
+        assertEquals(json, "{\"type\":\"PING\"}");
+
+        ByteBuffer packed = MsgPackCodec.encode(message);
+        byte[] bytes = new byte[packed.remaining()];
+        packed.get(bytes);
+        Message decoded = MsgPackCodec.decode(bytes, 0, bytes.length);
+        assertEquals(decoded.getType(), "PING");
+        assertNull(decoded.getPayload());
+        assertNull(decoded.getTimestamp());
+    }
+}
@@ -0,0 +1,125 @@
+package com.Itfac.TestNGLab.chat.download;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link ByteRanges}: single, suffix, open-ended and multiple ranges, requests that
+ * cannot be satisfied (416), headers that are ignored, and If-Range
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class ByteRangesTest {
+    private static final long SIZE = 1000;
+    private static final int MAX_RANGES = 4;
+    private static final String ETAG = "\"0123abcd\"";
+    private static final String LAST_MODIFIED = "Sat, 17 Oct 2026 10:00:00 GMT";
+
+    /* ---- Satisfiable ranges ---- */
+
+    @DataProvider
+    public Object[][] satisfiable() {
+        return new Object[][] {
+                { "bytes=0-499", "0-499" },
+                { "bytes=500-999", "500-999" },
+                { "bytes=900-5000", "900-999" }, // end clamped to the file
+                { "bytes=900-", "900-999" }, // open-ended
+                { "bytes=-200", "800-999" }, // suffix: the last 200 bytes
+                { "bytes=-5000", "0-999" }, // suffix longer than the file
+                { "BYTES=0-0", "0-0" },
+                { "bytes=0-99, 200-299", "0-99,200-299" },
+                { "bytes=200-299,0-99", "0-99,200-299" }, // served in file order
+                { "bytes=0-99,100-199,150-300", "0-300" }, // adjacent and overlapping: coalesced
+                { "bytes=0-99,-100", "0-99,900-999" },
+                { "bytes=0-99,2000-", "0-99" }, // past the end: dropped
+        };
+    }
+
+    @Test(dataProvider = "satisfiable")
+    public void parsesRanges(String header, String expected) {
+        assertEquals(describe(ByteRanges.parse(header, SIZE, MAX_RANGES)), expected);
+    }
+
+    @Test
+    public void rangeKnowsItsLengthAndContentRange() {
+        ByteRanges.Range range = ByteRanges.parse("bytes=-200", SIZE, MAX_RANGES).get(0);
+        assertEquals(range.length(), 200);
+        assertEquals(range.contentRange(SIZE), "bytes 800-999/1000");
+    }
+
+    /* ---- Unsatisfiable (416) ---- */
+
+    @DataProvider
+    public Object[][] unsatisfiable() {
+        return new Object[][] {
+                { "bytes=1000-", SIZE },
+                { "bytes=1000-1999", SIZE },
+                { "bytes=-0", SIZE },
+                { "bytes=2000-,3000-3999", SIZE },
+                { "bytes=0-", 0L }, // empty file
+                { "bytes=-10", 0L },
+        };
+    }
+
+    @Test(dataProvider = "unsatisfiable")
+    public void rangesPastTheEndAreUnsatisfiable(String header, long size) {
+        List<ByteRanges.Range> ranges = ByteRanges.parse(header, size, MAX_RANGES);
+        assertTrue(ranges != null && ranges.isEmpty(), header + " -> " + ranges);
+    }
+
+    /* ---- Ignored headers (whole file) ---- */
+
+    @DataProvider
+    public Object[][] ignored() {
+        return new Object[][] {
+                { null },
+                { "items=0-99" },
+                { "bytes=" },
+                { "bytes=abc" },
+                { "bytes=0-x" },
+                { "bytes=99-0" }, // end before start
+                { "bytes=0-9,10-19,20-29,30-39,40-49" }, // more than MAX_RANGES
+        };
+    }
+
+    @Test(dataProvider = "ignored")
+    public void invalidHeadersAreIgnored(String header) {
+        assertNull(ByteRanges.parse(header, SIZE, MAX_RANGES));
+    }
+
+    /* ---- If-Range ---- */
+
+    @Test
+    public void rangesApplyWhenIfRangeMatches() {
+        assertEquals(describe(parse("bytes=0-99", null)), "0-99");
+        assertEquals(describe(parse("bytes=0-99", ETAG)), "0-99");
+        assertEquals(describe(parse("bytes=0-99", LAST_MODIFIED)), "0-99");
+    }
+
+    @Test
+    public void wholeFileIsSentWhenIfRangeDoesNotMatch() {
+        assertNull(parse("bytes=0-99", "\"another\""));
+        assertNull(parse("bytes=0-99", "W/" + ETAG)); // weak validators never match
+        assertNull(parse("bytes=0-99", "Fri, 16 Oct 2026 10:00:00 GMT"));
+        assertNull(parse("bytes=2000-", "\"another\"")); // not 416: the file has changed
+    }
+
+    /* ---- Helpers ---- */
+
+    private static List<ByteRanges.Range> parse(String header, String ifRange) {
+        return ByteRanges.parse(header, ifRange, ETAG, LAST_MODIFIED, SIZE, MAX_RANGES);
+    }
+
+    private static String describe(List<ByteRanges.Range> ranges) {
+        return ranges == null ? null
+                : ranges.stream().map(r -> r.getStart() + "-" + r.getEnd()).collect(Collectors.joining(","));
+    }
+}
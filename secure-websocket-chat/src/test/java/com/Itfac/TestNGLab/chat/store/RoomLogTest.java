@@ -0,0 +1,199 @@
+package com.Itfac.TestNGLab.chat.store;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link RoomLog} and {@link Segment}: records survive a restart, and a damaged
+ * tail is cut off on recovery
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class RoomLogTest {
+    private static final int PAYLOAD_BYTES = 8;
+    private static final int RECORD_BYTES = Segment.HEADER_BYTES + PAYLOAD_BYTES;
+    private static final int SEGMENT_BYTES = RECORD_BYTES * 10; // 10 records per segment
+    private static final int INDEX_INTERVAL = RECORD_BYTES * 3; // an index entry every 3 records
+
+    private Path dir;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("roomlog-test");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.deleteIfExists(file);
+        }
+    }
+
+    /* ---- Append, reopen, read ---- */
+
+    @Test
+    public void readsRecordsBackAfterReopening() throws IOException {
+        RoomLog log = open();
+        appendAll(log, 1, 35);
+        log.force();
+
+        RoomLog reopened = open();
+        assertEquals(reopened.lastSequence(), 35);
+        assertEquals(reopened.firstSequence(), 1);
+        assertEquals(reopened.segmentCount(), 4);
+        assertEquals(readSince(reopened, 0, 100), range(1, 35));
+        assertEquals(readSince(reopened, 17, 5), range(18, 22));
+        assertEquals(readSince(reopened, 35, 10), List.of());
+    }
+
+    @Test
+    public void appendsAfterReopening() throws IOException {
+        RoomLog log = open();
+        appendAll(log, 1, 15);
+        log.force();
+
+        RoomLog reopened = open();
+        assertTrue(!reopened.append(15, payload(15)), "a repeated sequence is ignored");
+        appendAll(reopened, 16, 25);
+        reopened.force();
+
+        assertEquals(readSince(open(), 0, 100), range(1, 25));
+    }
+
+    /* ---- Recovery ---- */
+
+    @Test
+    public void dropsATruncatedTail() throws IOException {
+        RoomLog log = open();
+        appendAll(log, 1, 15); // 10 in the first segment, 5 in the active one
+        log.force();
+
+        // A crash in the middle of record 15: keep records 11-14 and part of 15
+        truncate(Segment.fileFor(dir, 11), RECORD_BYTES * 4 + 10);
+
+        RoomLog reopened = open();
+        assertEquals(reopened.lastSequence(), 14);
+        assertEquals(readSince(reopened, 0, 100), range(1, 14));
+
+        appendAll(reopened, 15, 16);
+        reopened.force();
+        assertEquals(readSince(open(), 10, 100), range(11, 16));
+    }
+
+    @Test
+    public void stopsAtAChecksumMismatch() throws IOException {
+        RoomLog log = open();
+        appendAll(log, 1, 8);
+        log.force();
+
+        // Corrupt the payload of record 6 (a torn write): records 6-8 are lost
+        corrupt(Segment.fileFor(dir, 1), RECORD_BYTES * 5 + Segment.HEADER_BYTES + 2);
+
+        RoomLog reopened = open();
+        assertEquals(reopened.lastSequence(), 5);
+        assertEquals(readSince(reopened, 0, 100), range(1, 5));
+
+        // The next append overwrites the damaged record
+        appendAll(reopened, 6, 7);
+        reopened.force();
+        assertEquals(readSince(open(), 0, 100), range(1, 7));
+    }
+
+    /* ---- Sparse index ---- */
+
+    @Test
+    public void findsRecordsThroughTheSavedIndexAfterARestart() throws IOException {
+        RoomLog log = open();
+        for (long sequence = 3; sequence <= 90; sequence += 3) // gaps between sequences
+            assertTrue(log.append(sequence, payload(sequence)));
+        log.force();
+        assertTrue(Files.exists(dir.resolve(String.format("%020d", 3) + Segment.INDEX_SUFFIX)));
+
+        RoomLog reopened = open();
+        assertEquals(readSince(reopened, 0, 3), List.of(3L, 6L, 9L));
+        assertEquals(readSince(reopened, 40, 4), List.of(42L, 45L, 48L, 51L));
+        assertEquals(readSince(reopened, 61, 100), List.of(63L, 66L, 69L, 72L, 75L, 78L, 81L, 84L, 87L, 90L));
+        assertEquals(readSince(reopened, 89, 100), List.of(90L));
+    }
+
+    @Test
+    public void rebuildsADamagedIndex() throws IOException {
+        RoomLog log = open();
+        appendAll(log, 1, 25);
+        log.force();
+
+        Files.write(dir.resolve(String.format("%020d", 1) + Segment.INDEX_SUFFIX), new byte[] { 0, 0, 0, 9, 1 });
+        Files.delete(dir.resolve(String.format("%020d", 11) + Segment.INDEX_SUFFIX));
+
+        RoomLog reopened = open();
+        assertEquals(readSince(reopened, 4, 3), range(5, 7));
+        assertEquals(readSince(reopened, 13, 100), range(14, 25));
+    }
+
+    /* ---- Helpers ---- */
+
+    private RoomLog open() throws IOException {
+        return new RoomLog("test", dir, SEGMENT_BYTES, INDEX_INTERVAL);
+    }
+
+    private static ByteBuffer payload(long sequence) {
+        return ByteBuffer.wrap(String.format("m%07d", sequence).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void appendAll(RoomLog log, long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++)
+            assertTrue(log.append(sequence, payload(sequence)), "append " + sequence);
+    }
+
+    /**
+     * Sequences read after {@code afterSequence}; every payload must match its sequence
+     */
+    private static List<Long> readSince(RoomLog log, long afterSequence, int max) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        int visited = log.readSince(afterSequence, max, (payload, sequence) -> {
+            assertEquals(payload, payload(sequence), "payload of " + sequence);
+            sequences.add(sequence);
+        });
+        assertEquals(visited, sequences.size());
+        return sequences;
+    }
+
+    private static List<Long> range(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void corrupt(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0xFF)).rewind();
+            channel.write(b, offset);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link MetadataIndex} and {@link ContentStore}: entries and reference counts
+ * survive a restart and a compaction, and a damaged journal tail is dropped on recovery
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class MetadataIndexTest {
+    private Path dir;
+    private Path journal;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("metadata-test");
+        journal = dir.resolve("entries.journal");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.deleteIfExists(file);
+        }
+    }
+
+    /* ---- Reopen ---- */
+
+    @Test
+    public void entriesAndReferencesSurviveReopening() throws IOException {
+        MetadataIndex index = open();
+        index.put(entry("a", 1, 1000));
+        index.put(entry("b", 2, 2000));
+        index.put(entry("c", 1, 3000));
+        index.put(entry("b", 3, 4000)); // a newer version wins
+        index.put(entry("c", 0, 5000)); // no references: removed
+        index.setObjectReferences("digest-1", 4);
+        index.setObjectReferences("digest-2", 1);
+        index.setObjectReferences("digest-2", 0);
+
+        MetadataIndex reopened = open();
+        assertEquals(reopened.entryCount(), 2);
+        assertEntry(reopened.get("a"), "a", 1, 1000);
+        assertEntry(reopened.get("b"), "b", 3, 4000);
+        assertNull(reopened.get("c"));
+        assertEquals(reopened.objectReferences("digest-1"), 4);
+        assertEquals(reopened.objectReferences("digest-2"), 0);
+        assertEquals(ids(reopened), Set.of("a", "b"));
+    }
+
+    @Test
+    public void recordsOfEarlierVersionsUseTheCreationTime() throws IOException {
+        // An entry written before the last post time was journaled
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeUTF("old");
+        out.writeUTF("digest-old");
+        out.writeUTF("old.txt");
+        out.writeUTF("alice");
+        out.writeUTF("text/plain");
+        out.writeLong(42);
+        out.writeLong(1234);
+        out.writeInt(2);
+        appendRecord(bytes.toByteArray());
+
+        ContentStore.Entry entry = open().get("old");
+        assertNotNull(entry);
+        assertEquals(entry.getReferences(), 2);
+        assertEquals(entry.getCreatedAt(), 1234);
+        assertEquals(entry.getReferencedAt(), 1234);
+    }
+
+    /* ---- Compaction ---- */
+
+    @Test
+    public void compactionKeepsOnlyTheLatestLiveRecords() throws IOException {
+        MetadataIndex index = open();
+        for (int i = 0; i < 50; i++)
+            index.put(entry("kept-" + i, 1, i));
+        for (int i = 0; i < 20; i++) {
+            index.put(entry("removed-" + i, 1, i));
+            index.put(entry("removed-" + i, 0, i));
+        }
+        index.setObjectReferences("digest-1", 7);
+
+        // Superseded versions of one entry until the journal is mostly garbage and shrinks
+        long size = Files.size(journal);
+        int last = 0;
+        while (true) {
+            index.put(entry("hot", 1 + last % 5, last));
+            long grown = Files.size(journal);
+            if (grown < size)
+                break;
+            assertTrue(grown <= MetadataIndex.COMPACT_MIN_BYTES * 2, "journal was not compacted");
+            size = grown;
+            last++;
+        }
+        assertTrue(size > MetadataIndex.COMPACT_MIN_BYTES - 1024); // compacted as it passed the threshold
+        assertTrue(Files.size(journal) < MetadataIndex.COMPACT_MIN_BYTES / 2);
+
+        for (MetadataIndex current : new MetadataIndex[] { index, open() }) {
+            assertEquals(current.entryCount(), 51);
+            assertEntry(current.get("hot"), "hot", 1 + last % 5, last);
+            for (int i = 0; i < 50; i++)
+                assertEntry(current.get("kept-" + i), "kept-" + i, 1, i);
+            for (int i = 0; i < 20; i++)
+                assertNull(current.get("removed-" + i));
+            assertEquals(current.objectReferences("digest-1"), 7);
+        }
+
+        // Appends after a compaction go to the new journal
+        index.put(entry("after", 1, 1));
+        assertEntry(open().get("after"), "after", 1, 1);
+    }
+
+    /* ---- Recovery ---- */
+
+    @Test
+    public void corruptLastRecordIsDropped() throws IOException {
+        MetadataIndex index = open();
+        index.put(entry("a", 1, 1));
+        long valid = Files.size(journal);
+        index.put(entry("b", 1, 2));
+        flipByte(Files.size(journal) - 3); // inside b's payload: its CRC no longer matches
+
+        MetadataIndex reopened = open();
+        assertEntry(reopened.get("a"), "a", 1, 1);
+        assertNull(reopened.get("b"));
+        assertEquals(Files.size(journal), valid);
+
+        reopened.put(entry("c", 1, 3));
+        MetadataIndex again = open();
+        assertEquals(ids(again), Set.of("a", "c"));
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() throws IOException {
+        MetadataIndex index = open();
+        index.put(entry("a", 1, 1));
+        long valid = Files.size(journal);
+        index.put(entry("b", 1, 2));
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(journal) - 5); // crash in the middle of the append
+        }
+
+        MetadataIndex reopened = open();
+        assertEquals(ids(reopened), Set.of("a"));
+        assertEquals(Files.size(journal), valid);
+    }
+
+    /* ---- Content store ---- */
+
+    @Test
+    public void storeKeepsOneObjectPerContentAcrossRestarts() throws IOException {
+        ContentStore store = new ContentStore(dir, 16, 1000);
+        ContentStore.Entry first = store.addFile(upload(store, "same bytes"), "report.txt", "alice");
+        ContentStore.Entry second = store.addFile(upload(store, "same bytes"), "copy of report.txt", "bob");
+        ContentStore.Entry repost = store.addFile(upload(store, "same bytes"), "report.txt", "carol");
+        assertEquals(first.getDigest(), second.getDigest());
+        assertEquals(repost.getId(), first.getId());
+        assertEquals(repost.getReferences(), 2);
+
+        ContentStore reopened = new ContentStore(dir, 16, 1000);
+        assertEquals(reopened.stats().get("objects"), 1L);
+        assertEquals(reopened.stats().get("entries"), 2);
+        assertEquals(reopened.get(first.getId()).getReferences(), 2);
+        assertEquals(reopened.get(first.getId()).getUsername(), "alice");
+
+        assertEquals(reopened.remove(first.getId()), 0); // still referenced by the copy
+        assertTrue(Files.exists(reopened.object(first.getDigest())));
+        assertEquals(reopened.remove(second.getId()), "same bytes".length());
+        assertFalse(Files.exists(reopened.object(first.getDigest())));
+
+        ContentStore again = new ContentStore(dir, 16, 1000);
+        assertNull(again.get(first.getId()));
+        assertNull(again.get(second.getId()));
+        assertEquals(again.stats().get("objects"), 0L);
+    }
+
+    /* ---- Helpers ---- */
+
+    private MetadataIndex open() {
+        return new MetadataIndex(journal, 4); // a small cache: most reads go to the journal
+    }
+
+    private static ContentStore.Entry entry(String id, int references, long referencedAt) {
+        return new ContentStore.Entry(id, "digest-" + id, id + ".txt", "alice", "text/plain", 100, 0,
+                referencedAt, references);
+    }
+
+    private static void assertEntry(ContentStore.Entry entry, String id, int references, long referencedAt) {
+        assertNotNull(entry, id);
+        assertEquals(entry.getId(), id);
+        assertEquals(entry.getDigest(), "digest-" + id);
+        assertEquals(entry.getOriginalName(), id + ".txt");
+        assertEquals(entry.getReferences(), references);
+        assertEquals(entry.getReferencedAt(), referencedAt);
+    }
+
+    private static Set<String> ids(MetadataIndex index) throws IOException {
+        Set<String> ids = new TreeSet<>();
+        index.forEachEntry(entry -> ids.add(entry.getId()));
+        return ids;
+    }
+
+    private static Path upload(ContentStore store, String contents) throws IOException {
+        Path file = store.tempFile();
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private void appendRecord(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+    }
+
+    private void flipByte(long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0xFF)).rewind();
+            channel.write(b, offset);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.Itfac.TestNGLab.chat.upload;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link UploadJanitor}: which files a pass selects (age, disk budget, user quota),
+ * a file posted again while it is being deleted, and a deletion that fails. Passes are run
+ * directly; the scheduled runs are an hour away
+ *
+ * @author Member 3 - Full Stack Development
+ * @version 1.0
+ */
+public class UploadJanitorTest {
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+    private static final int FILE_BYTES = 10;
+
+    private Path dir;
+    private Path legacyDir;
+    private ContentStore store;
+    private final List<String> removed = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeMethod
+    public void createStore() throws IOException {
+        dir = Files.createTempDirectory("janitor-test");
+        legacyDir = Files.createDirectories(dir.resolve("legacy"));
+        store = new ContentStore(dir.resolve("store"), 64, 1000);
+        removed.clear();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.deleteIfExists(file);
+        }
+    }
+
+    /* ---- Selection ---- */
+
+    @Test
+    public void expiredFilesAreDeletedAndRepostedOnesKept() throws Exception {
+        ContentStore.Entry old = post("old.txt", "alice");
+        ContentStore.Entry reposted = post("reposted.txt", "alice");
+        UploadJanitor janitor = janitor(300, 0, 0, 1000, 2);
+        Thread.sleep(400);
+        post("reposted.txt", "alice"); // the age counts from here
+        ContentStore.Entry young = post("young.txt", "alice");
+
+        assertEquals(janitor.pass(), 1);
+
+        assertEquals(removed, List.of(old.getId()));
+        assertNull(store.get(old.getId()));
+        assertNotNull(store.get(reposted.getId()));
+        assertNotNull(store.get(young.getId()));
+        assertEquals(janitor.stats().get("removedByAge"), 1L);
+        assertEquals(janitor.pass(), 0);
+    }
+
+    @Test
+    public void oldestFilesGoUntilTheStoreIsUnderBudget() throws Exception {
+        ContentStore.Entry first = post("first.txt", "alice");
+        ContentStore.Entry second = post("second.txt", "bob");
+        ContentStore.Entry third = post("third.txt", "carol");
+        UploadJanitor janitor = janitor(0, FILE_BYTES * 2 + 5, 0, 1000, 3);
+
+        assertEquals(janitor.pass(), 1);
+
+        assertEquals(removed, List.of(first.getId()));
+        assertNotNull(store.get(second.getId()));
+        assertNotNull(store.get(third.getId()));
+        assertEquals(janitor.stats().get("removedByBudget"), 1L);
+        assertEquals(janitor.pass(), 0);
+    }
+
+    @Test
+    public void onlyTheUserOverQuotaLosesFiles() throws Exception {
+        ContentStore.Entry bobs = post("bob.txt", "bob"); // oldest, but bob is under quota
+        ContentStore.Entry alicesFirst = post("a1.txt", "alice");
+        ContentStore.Entry alicesSecond = post("a2.txt", "alice");
+        ContentStore.Entry alicesThird = post("a3.txt", "alice");
+        UploadJanitor janitor = janitor(0, 0, FILE_BYTES * 2, 1000, 4);
+
+        assertEquals(janitor.pass(), 1);
+
+        assertEquals(removed, List.of(alicesFirst.getId()));
+        assertNotNull(store.get(bobs.getId()));
+        assertNotNull(store.get(alicesSecond.getId()));
+        assertNotNull(store.get(alicesThird.getId()));
+        assertEquals(janitor.stats().get("removedByQuota"), 1L);
+        assertEquals(janitor.pass(), 0);
+    }
+
+    /* ---- Deletion ---- */
+
+    @Test
+    public void fileRepostedDuringThePassIsKept() throws Exception {
+        ContentStore.Entry reposted = post("reposted.txt", "alice");
+        ContentStore.Entry expired = post("expired.txt", "alice");
+        UploadJanitor janitor = janitor(200, 0, 0, 1, 2); // one deletion per second
+        Thread.sleep(300);
+
+        // Selected while expired, posted again before its turn to be deleted
+        Thread pass = new Thread(() -> {
+            try {
+                janitor.pass();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pass.start();
+        Thread.sleep(300);
+        post("reposted.txt", "bob");
+        pass.join(5000);
+
+        assertNotNull(store.get(reposted.getId()));
+        assertTrue(Files.exists(store.object(reposted.getDigest())));
+        assertNull(store.get(expired.getId()));
+        assertEquals(removed, List.of(expired.getId()));
+        assertEquals(janitor.stats().get("removedByAge"), 1L);
+    }
+
+    @Test
+    public void failedDeletionIsSkippedUntilItsRetryTime() throws Exception {
+        Path stuck = legacy("stuck.txt", 3);
+        Path deletable = legacy("deletable.txt", 2);
+        UploadJanitor janitor = janitor(TimeUnit.DAYS.toMillis(1), 0, 0, 1000, 2);
+
+        // Replaced by a directory that cannot be deleted while it has contents
+        Files.delete(stuck);
+        Files.createFile(Files.createDirectory(stuck).resolve("inside"));
+
+        assertEquals(janitor.pass(), 1);
+        assertEquals(removed, List.of("deletable.txt"));
+        assertFalse(Files.exists(deletable));
+        assertEquals(janitor.stats().get("deleteFailures"), 1L);
+
+        assertEquals(janitor.pass(), 0); // not selected again before its retry time
+        assertEquals(janitor.stats().get("deleteFailures"), 1L);
+        assertEquals(janitor.stats().get("trackedFiles"), 1);
+    }
+
+    /* ---- Helpers ---- */
+
+    /**
+     * A janitor whose initial load has finished
+     */
+    private UploadJanitor janitor(long maxAgeMs, long maxTotalBytes, long userQuotaBytes, int deletesPerSecond,
+            int expectedFiles) throws Exception {
+        ChunkedUploads chunked = new ChunkedUploads(dir.resolve(".partial"), 1024, 1024, 4, 4, 0);
+        UploadJanitor janitor = new UploadJanitor(store, chunked, legacyDir, maxAgeMs, maxTotalBytes,
+                userQuotaBytes, NEVER, NEVER, 100, deletesPerSecond, removed::add);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) janitor.stats().get("trackedFiles") < expectedFiles) {
+            assertTrue(System.currentTimeMillis() < deadline, "files were not loaded");
+            Thread.sleep(10);
+        }
+        return janitor;
+    }
+
+    /**
+     * Post a file whose contents depend on its name only: a repost of a name is the same entry
+     */
+    private ContentStore.Entry post(String name, String username) throws IOException {
+        Path file = store.tempFile();
+        String contents = String.format("%0" + FILE_BYTES + "d", name.hashCode() & 0x7fffffff);
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        ContentStore.Entry entry = store.addFile(file, name, username);
+        try {
+            Thread.sleep(5); // distinct post times
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return entry;
+    }
+
+    private Path legacy(String name, int ageDays) throws IOException {
+        Path file = legacyDir.resolve(name);
+        Files.write(file, new byte[FILE_BYTES]);
+        Files.setLastModifiedTime(file,
+                FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ageDays)));
+        return file;
+    }
+}